@@ -0,0 +1,137 @@
+#include <jni.h>
+#include <cstdint>
+#include <new>
+#include <zstd.h>
+#include <brotli/encode.h>
+
+// 与Java层NativeCompressor.Algorithm的序号一致
+enum Algorithm {
+    ALGORITHM_ZSTD = 0,
+    ALGORITHM_BROTLI = 1,
+};
+
+// 流式压缩器：同一时间只被一个Java线程使用
+struct Compressor {
+    int algorithm;
+    int level;
+    ZSTD_CCtx* zstd;
+    BrotliEncoderState* brotli;
+};
+
+// nativeCompress返回值中的完成标记位（低32位中的最高位）
+static const jlong FINISHED_FLAG = 1LL << 31;
+
+static BrotliEncoderState* createBrotli(int level) {
+    BrotliEncoderState* state = BrotliEncoderCreateInstance(nullptr, nullptr, nullptr);
+    if (state != nullptr) {
+        BrotliEncoderSetParameter(state, BROTLI_PARAM_QUALITY, (uint32_t) level);
+        BrotliEncoderSetParameter(state, BROTLI_PARAM_MODE, BROTLI_MODE_TEXT);
+    }
+    return state;
+}
+
+static void destroy(Compressor* compressor) {
+    if (compressor->zstd != nullptr) {
+        ZSTD_freeCCtx(compressor->zstd);
+    }
+    if (compressor->brotli != nullptr) {
+        BrotliEncoderDestroyInstance(compressor->brotli);
+    }
+    delete compressor;
+}
+
+extern "C" {
+
+JNIEXPORT jlong JNICALL
+Java_com_xxhy_fqhelper_web_codec_NativeCompressor_nativeCreate(JNIEnv*, jclass, jint algorithm, jint level) {
+    Compressor* compressor = new (std::nothrow) Compressor{algorithm, level, nullptr, nullptr};
+    if (compressor == nullptr) {
+        return 0;
+    }
+    if (algorithm == ALGORITHM_ZSTD) {
+        compressor->zstd = ZSTD_createCCtx();
+        if (compressor->zstd != nullptr) {
+            ZSTD_CCtx_setParameter(compressor->zstd, ZSTD_c_compressionLevel, level);
+        }
+    } else if (algorithm == ALGORITHM_BROTLI) {
+        compressor->brotli = createBrotli(level);
+    }
+    if (compressor->zstd == nullptr && compressor->brotli == nullptr) {
+        destroy(compressor);
+        return 0;
+    }
+    return (jlong) (intptr_t) compressor;
+}
+
+/**
+ * 压缩一段输入
+ * 输入、输出均为直接缓冲区，由Java层传入读写起点和可用长度
+ * 返回值：高32位为消耗的输入字节数，低31位为产生的输出字节数，第31位为压缩是否完成；失败返回-1
+ */
+JNIEXPORT jlong JNICALL
+Java_com_xxhy_fqhelper_web_codec_NativeCompressor_nativeCompress(JNIEnv* env, jclass, jlong handle,
+                                                                 jobject in, jint inOffset, jint inLength,
+                                                                 jobject out, jint outOffset, jint outLength,
+                                                                 jboolean finish) {
+    Compressor* compressor = (Compressor*) (intptr_t) handle;
+    uint8_t* inAddress = (uint8_t*) env->GetDirectBufferAddress(in);
+    uint8_t* outAddress = (uint8_t*) env->GetDirectBufferAddress(out);
+    if (compressor == nullptr || inAddress == nullptr || outAddress == nullptr) {
+        return -1;
+    }
+
+    size_t consumed;
+    size_t produced;
+    bool finished;
+    if (compressor->algorithm == ALGORITHM_ZSTD) {
+        ZSTD_inBuffer input = {inAddress + inOffset, (size_t) inLength, 0};
+        ZSTD_outBuffer output = {outAddress + outOffset, (size_t) outLength, 0};
+        size_t remaining = ZSTD_compressStream2(compressor->zstd, &output, &input,
+                                                finish ? ZSTD_e_end : ZSTD_e_continue);
+        if (ZSTD_isError(remaining)) {
+            return -1;
+        }
+        consumed = input.pos;
+        produced = output.pos;
+        finished = finish && remaining == 0;
+    } else {
+        size_t availableIn = (size_t) inLength;
+        const uint8_t* nextIn = inAddress + inOffset;
+        size_t availableOut = (size_t) outLength;
+        uint8_t* nextOut = outAddress + outOffset;
+        if (!BrotliEncoderCompressStream(compressor->brotli,
+                                         finish ? BROTLI_OPERATION_FINISH : BROTLI_OPERATION_PROCESS,
+                                         &availableIn, &nextIn, &availableOut, &nextOut, nullptr)) {
+            return -1;
+        }
+        consumed = (size_t) inLength - availableIn;
+        produced = (size_t) outLength - availableOut;
+        finished = finish && BrotliEncoderIsFinished(compressor->brotli);
+    }
+    return ((jlong) consumed << 32) | (finished ? FINISHED_FLAG : 0) | (jlong) produced;
+}
+
+/**
+ * 重置压缩器以便复用（zstd保留已分配的上下文，brotli没有重置接口，重新创建实例）
+ * 返回是否成功
+ */
+JNIEXPORT jboolean JNICALL
+Java_com_xxhy_fqhelper_web_codec_NativeCompressor_nativeReset(JNIEnv*, jclass, jlong handle) {
+    Compressor* compressor = (Compressor*) (intptr_t) handle;
+    if (compressor->algorithm == ALGORITHM_ZSTD) {
+        return !ZSTD_isError(ZSTD_CCtx_reset(compressor->zstd, ZSTD_reset_session_only));
+    }
+    BrotliEncoderDestroyInstance(compressor->brotli);
+    compressor->brotli = createBrotli(compressor->level);
+    return compressor->brotli != nullptr;
+}
+
+JNIEXPORT void JNICALL
+Java_com_xxhy_fqhelper_web_codec_NativeCompressor_nativeDestroy(JNIEnv*, jclass, jlong handle) {
+    Compressor* compressor = (Compressor*) (intptr_t) handle;
+    if (compressor != nullptr) {
+        destroy(compressor);
+    }
+}
+
+}
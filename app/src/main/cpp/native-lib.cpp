@@ -1,7 +1,12 @@
 #include <jni.h>
-#include <android/log.h>
 
+#ifdef __ANDROID__
+#include <android/log.h>
 #define LOGI(...) __android_log_print(ANDROID_LOG_INFO, "FQHelper", __VA_ARGS__)
+#else
+#include <cstdio>
+#define LOGI(...) (fprintf(stderr, __VA_ARGS__), fputc('\n', stderr))
+#endif
 
 extern "C" {
 
@@ -27,5 +27,29 @@ public class SPConstants {
 
   public static final String LOCAL_VIP = "local_vip";
   public static final boolean DEFAULT_LOCAL_VIP = false;
+
+  public static final String RATE_LIMIT = "rate_limit";
+  public static final String DEFAULT_RATE_LIMIT = "{}";
+
+  public static final String ROUTE_TIMEOUT = "route_timeout";
+  public static final String DEFAULT_ROUTE_TIMEOUT = "{}";
+
+  public static final String DISK_CACHE_TTL = "disk_cache_ttl";
+  public static final String DEFAULT_DISK_CACHE_TTL = "{}";
+
+  public static final String UNIX_SOCKET = "unix_socket";
+  public static final String DEFAULT_UNIX_SOCKET = "";
+
+  public static final String LOCAL_SEARCH_SNAPSHOT = "local_search_snapshot";
+  public static final boolean DEFAULT_LOCAL_SEARCH_SNAPSHOT = true;
+
+  public static final String RPC_CAPTURE_MODE = "rpc_capture_mode";
+  public static final String DEFAULT_RPC_CAPTURE_MODE = "off";
+
+  public static final String RPC_CAPTURE_FILE = "rpc_capture_file";
+  public static final String DEFAULT_RPC_CAPTURE_FILE = "";
+
+  public static final String RPC_REPLAY_LATENCY_SCALE = "rpc_replay_latency_scale";
+  public static final String DEFAULT_RPC_REPLAY_LATENCY_SCALE = "1";
     
 }
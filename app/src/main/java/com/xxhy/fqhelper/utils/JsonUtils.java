@@ -2,7 +2,9 @@ package com.xxhy.fqhelper.utils;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonNull;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 import com.xxhy.fqhelper.constant.SPConstants;
 import com.xxhy.fqhelper.xposed.global.DragonGlobals;
 import java.io.IOException;
@@ -55,6 +57,21 @@ public class JsonUtils {
     DEFAULT_GSON.toJson(src, writer);
   }
 
+  /**
+   * 将对象序列化并写入流式写入器（非格式化，格式由写入器决定） 写入器可以是JsonWriter的子类（如CBOR写入器），从而与JSON共用同一套序列化逻辑
+   *
+   * @param src 待序列化的对象（可为null）
+   * @param writer 接收输出的JsonWriter
+   * @throws IOException 当写入时发生I/O错误
+   */
+  public static void toJson(Object src, JsonWriter writer) throws IOException {
+    if (src == null) {
+      DEFAULT_GSON.toJson(JsonNull.INSTANCE, writer);
+      return;
+    }
+    DEFAULT_GSON.toJson(src, src.getClass(), writer);
+  }
+
   /**
    * 将对象序列化为格式化的JSON字符串（带缩进） 适用于日志打印、调试等需要可读性的场景
    *
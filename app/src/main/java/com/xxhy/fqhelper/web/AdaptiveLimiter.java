@@ -0,0 +1,426 @@
+package com.xxhy.fqhelper.web;
+
+import com.xxhy.fqhelper.utils.LogUtils;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上游方法自适应并发限制器
+ * 每个上游RPC方法（类名#方法名）对应一个限制器，根据调用往返时间（RTT）自动调整允许的并发数（AIMD）：
+ * - 基线RTT：最近一个统计窗口内的最小RTT，近似上游空闲时的耗时
+ * - 加性增：RTT不超过基线的{@link #RTT_TOLERANCE}倍（加固定余量）且并发数接近上限时，每经过约一个上限的调用数上限加1
+ * - 乘性减：RTT超过容忍范围、调用超时或上游失败时上限乘以{@link #DECREASE_FACTOR}，每个RTT内最多减一次
+ *
+ * <p>超出上限的调用按到达顺序排队等待（排队数有上限），排队已满或等待超时时直接返回错误，
+ * 避免上游变慢时请求无限堆积、延迟无限增长
+ */
+public class AdaptiveLimiter {
+
+    // 限制器表：上游方法 -> 限制器
+    private static final ConcurrentHashMap<String, AdaptiveLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    // 并发上限的初始值及范围
+    private static final double INITIAL_LIMIT = 4;
+    private static final double MIN_LIMIT = 2;
+    private static final double MAX_LIMIT = 32;
+    // RTT超过基线的该倍数（再加上固定余量）时视为上游过载；余量避免耗时很短的方法因正常抖动被误判
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final long RTT_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    // 乘性减系数
+    private static final double DECREASE_FACTOR = 0.8;
+    // 基线RTT的统计窗口（纳秒），窗口结束时以该窗口内的最小RTT作为新的基线
+    private static final long BASELINE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(30);
+    // 每个限制器最多排队的调用数
+    private static final int MAX_QUEUED = 16;
+    // 排队期间检查客户端是否断开的间隔（毫秒）
+    private static final long DISCONNECT_CHECK_MILLIS = 200;
+    // 保留的上限变化历史条数
+    private static final int MAX_HISTORY = 32;
+
+    /**
+     * 调用结果（用于调整并发上限）
+     */
+    public enum Outcome {
+        // 正常返回
+        SUCCESS,
+        // 超时或上游失败（视为过载信号）
+        DROPPED,
+        // 客户端断开或被中断（与上游容量无关，不参与调整）
+        IGNORED
+    }
+
+    // 上游方法标识（类名#方法名）
+    private final String target;
+    // 当前并发上限（小数部分用于累积加性增）
+    private double limit = INITIAL_LIMIT;
+    // 进行中的调用数
+    private int inFlight;
+    // 排队中的调用（按到达顺序，许可释放时依次分配给队首）
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    // 基线RTT（纳秒，0表示尚无样本）
+    private long baselineRttNanos;
+    // 当前窗口内的最小RTT（纳秒，0表示尚无样本）
+    private long windowMinRttNanos;
+    // 当前窗口的开始时间
+    private long windowStartNanos = System.nanoTime();
+    // 最近一次RTT的指数移动平均（纳秒）
+    private long smoothedRttNanos;
+    // 最近一次减小上限的时间（同一RTT内的多个过载信号只减一次）
+    private long lastDecreaseNanos;
+    // 上限变化历史（按时间顺序）
+    private final ArrayDeque<Map<String, Object>> history = new ArrayDeque<>();
+
+    // 统计计数
+    private final LongAdder admitted = new LongAdder();  // 放行的调用数
+    private final LongAdder waited = new LongAdder();    // 排队后放行的调用数
+    private final LongAdder shed = new LongAdder();      // 因排队已满或等待超时而拒绝的调用数
+
+    private AdaptiveLimiter(String target) {
+        this.target = target;
+    }
+
+    /**
+     * 获取上游方法对应的限制器
+     * @param target 上游方法标识（类名#方法名）
+     * @return 限制器
+     */
+    public static AdaptiveLimiter forTarget(String target) {
+        return LIMITERS.computeIfAbsent(target, AdaptiveLimiter::new);
+    }
+
+    /**
+     * 获取调用许可：没有排队的调用且未达上限时立即放行，否则排队等待；释放的许可按排队顺序分配，
+     * 后到的调用不会越过排队中的调用
+     * 锁只用于更新计数和等待，检查客户端连接（TCP连接需要读取socket）在锁外进行
+     * @param deadlineNanos 请求截止时间（System.nanoTime()基准）
+     * @param context 请求上下文（可为null，此时不检查客户端连接）
+     * @return true-已获取许可（调用结束后必须调用{@link #release}，或通过{@link #handOff}交给执行线程释放），
+     *     false-排队已满、等待超时或客户端已断开
+     * @throws InterruptedException 等待期间线程被中断
+     */
+    public boolean acquire(long deadlineNanos, RequestContext context) throws InterruptedException {
+        Waiter waiter;
+        synchronized (this) {
+            if (waiters.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                admitted.increment();
+                return true;
+            }
+            if (waiters.size() >= MAX_QUEUED) {
+                shed.increment();
+                return false;
+            }
+            waiter = new Waiter();
+            waiters.addLast(waiter);
+        }
+
+        boolean acquired = false;
+        try {
+            while (true) {
+                synchronized (this) {
+                    long remaining = deadlineNanos - System.nanoTime();
+                    if (!waiter.granted && remaining > 0) {
+                        wait(Math.max(1, Math.min(TimeUnit.NANOSECONDS.toMillis(remaining), DISCONNECT_CHECK_MILLIS)));
+                    }
+                    if (waiter.granted) {
+                        acquired = true;
+                        admitted.increment();
+                        waited.increment();
+                        return true;
+                    }
+                    if (deadlineNanos - System.nanoTime() <= 0) {
+                        break;
+                    }
+                }
+                if (context != null && context.isClientGone()) {
+                    break;
+                }
+            }
+            shed.increment();
+            return false;
+        } finally {
+            if (!acquired) {
+                synchronized (this) {
+                    if (waiter.granted) {
+                        // 放弃等待的同时已分配到许可：转交给下一个排队的调用
+                        inFlight--;
+                        grantWaiters();
+                    } else {
+                        waiters.remove(waiter);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 把空闲的许可按排队顺序分配给等待中的调用（调用方持有锁）
+     */
+    private void grantWaiters() {
+        boolean granted = false;
+        while (!waiters.isEmpty() && inFlight < (int) limit) {
+            waiters.pollFirst().granted = true;
+            inFlight++;
+            granted = true;
+        }
+        if (granted) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * 释放调用许可并根据本次调用的RTT调整并发上限
+     * @param rttNanos 调用耗时（纳秒）
+     * @param outcome 调用结果
+     */
+    public void release(long rttNanos, Outcome outcome) {
+        String decreased = null;
+        synchronized (this) {
+            int inFlightBefore = inFlight;
+            inFlight--;
+            if (outcome != Outcome.IGNORED) {
+                decreased = adjust(rttNanos, outcome, inFlightBefore, System.nanoTime());
+            }
+            grantWaiters();
+        }
+        // 日志在锁外输出（读取SP及Xposed日志较慢）
+        if (decreased != null) {
+            LogUtils.logI("[AdaptiveLimiter] 上游方法并发上限降低：" + target + " -> " + decreased);
+        }
+    }
+
+    /**
+     * 判断是否有富余的并发许可（供预取等可以放弃的后台调用使用，避免与前台请求争用许可）
+     * @param reserve 为前台调用保留的许可数
+     * @return true-没有排队的调用且空闲许可多于reserve个
+     */
+    public synchronized boolean hasHeadroom(int reserve) {
+        return waiters.isEmpty() && inFlight + reserve < (int) limit;
+    }
+
+    /**
+     * 为已获取的许可创建交给执行线程的句柄：许可在上游调用真正结束时释放，
+     * 而不是在等待方因超时或客户端断开而放弃时释放，取消后仍在收尾的调用继续计入进行中的调用数
+     * @return 许可句柄
+     */
+    public Permit handOff() {
+        return new Permit(this);
+    }
+
+    /**
+     * 调整并发上限
+     * @param rttNanos 调用耗时
+     * @param outcome 调用结果（SUCCESS或DROPPED）
+     * @param inFlightBefore 本次调用结束前的并发数
+     * @param now 当前时间
+     * @return 上限降低时返回新上限及原因（用于日志），否则返回null
+     */
+    private String adjust(long rttNanos, Outcome outcome, int inFlightBefore, long now) {
+        if (outcome == Outcome.SUCCESS) {
+            updateBaseline(rttNanos, now);
+            smoothedRttNanos = smoothedRttNanos == 0 ? rttNanos : (smoothedRttNanos * 7 + rttNanos) / 8;
+        }
+
+        int before = (int) limit;
+        boolean overloaded = outcome == Outcome.DROPPED
+            || baselineRttNanos > 0 && rttNanos > baselineRttNanos * RTT_TOLERANCE + RTT_SLACK_NANOS;
+        if (overloaded) {
+            // 同一RTT内完成的调用反映的是同一时刻的拥塞，只减一次
+            if (now - lastDecreaseNanos >= Math.max(rttNanos, smoothedRttNanos)) {
+                limit = Math.max(MIN_LIMIT, limit * DECREASE_FACTOR);
+                lastDecreaseNanos = now;
+            }
+        } else if (inFlightBefore * 2 >= (int) limit) {
+            // 上限确实被使用时才增加，避免低负载时上限虚高
+            limit = Math.min(MAX_LIMIT, limit + 1 / limit);
+        }
+
+        int after = (int) limit;
+        if (after == before) {
+            return null;
+        }
+        String reason = outcome == Outcome.DROPPED ? "dropped" : overloaded ? "latency" : "increase";
+        recordChange(after, rttNanos, reason);
+        return after < before ? after + "（" + reason + "）" : null;
+    }
+
+    /**
+     * 更新基线RTT：窗口内取最小值，窗口结束时以该窗口的最小值替换基线（上游变快或变慢后基线都能跟上）
+     */
+    private void updateBaseline(long rttNanos, long now) {
+        if (windowMinRttNanos == 0 || rttNanos < windowMinRttNanos) {
+            windowMinRttNanos = rttNanos;
+        }
+        if (baselineRttNanos == 0 || rttNanos < baselineRttNanos) {
+            baselineRttNanos = rttNanos;
+        }
+        if (now - windowStartNanos >= BASELINE_WINDOW_NANOS) {
+            baselineRttNanos = windowMinRttNanos;
+            windowMinRttNanos = 0;
+            windowStartNanos = now;
+        }
+    }
+
+    /**
+     * 记录一次上限变化
+     */
+    private void recordChange(int newLimit, long rttNanos, String reason) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("time", System.currentTimeMillis());
+        item.put("limit", newLimit);
+        item.put("rttMillis", TimeUnit.NANOSECONDS.toMillis(rttNanos));
+        item.put("reason", reason);
+        if (history.size() >= MAX_HISTORY) {
+            history.removeFirst();
+        }
+        history.addLast(item);
+    }
+
+    /**
+     * 汇总所有限制器的进行中调用数、并发上限和排队数（用于实时统计面板）
+     * @return 依次为进行中的调用数、并发上限之和、排队中的调用数
+     */
+    static int[] totals() {
+        int[] totals = new int[3];
+        for (AdaptiveLimiter limiter : LIMITERS.values()) {
+            synchronized (limiter) {
+                totals[0] += limiter.inFlight;
+                totals[1] += (int) limiter.limit;
+                totals[2] += limiter.waiters.size();
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * 排队中的调用（granted在持有限制器锁时读写）
+     */
+    private static final class Waiter {
+        // 是否已分配到许可
+        boolean granted;
+    }
+
+    /**
+     * 交给执行线程的调用许可
+     * 执行线程和等待方各自结束后分别调用{@link #run}的收尾和{@link #waiterFinished}，两者都结束时释放许可：
+     * - RTT取调用开始到执行线程结束的时间
+     * - 等待方正常取得结果时以执行结果调整上限；等待方放弃时以其判定为准（如客户端选择的截止时间不算过载）
+     * - 执行线程尚未开始时等待方放弃，调用不再执行，许可立即释放
+     */
+    public static final class Permit {
+        private final AdaptiveLimiter limiter;
+        private final long startNanos = System.nanoTime();
+        // 执行线程是否已开始、已结束
+        private boolean started;
+        private boolean taskDone;
+        // 执行线程结束的时间及调用结果
+        private long taskEndNanos;
+        private Outcome taskOutcome;
+        // 等待方是否已结束及其判定（正常取得结果时为null）
+        private boolean waiterDone;
+        private Outcome verdict;
+
+        private Permit(AdaptiveLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        /**
+         * 在执行线程中执行调用，结束后交还许可
+         * @param call 上游调用
+         * @return 调用结果
+         * @throws Exception 调用失败，或等待方已放弃（CancellationException，调用未执行）
+         */
+        public <T> T run(Callable<T> call) throws Exception {
+            synchronized (this) {
+                if (waiterDone) {
+                    throw new CancellationException("等待方已放弃，不再发起调用");
+                }
+                started = true;
+            }
+            Outcome outcome = Outcome.DROPPED;
+            try {
+                T result = call.call();
+                outcome = Outcome.SUCCESS;
+                return result;
+            } finally {
+                boolean release;
+                synchronized (this) {
+                    taskDone = true;
+                    taskEndNanos = System.nanoTime();
+                    taskOutcome = outcome;
+                    release = waiterDone;
+                }
+                if (release) {
+                    releaseNow();
+                }
+            }
+        }
+
+        /**
+         * 等待方结束
+         * @param verdict 正常取得结果时为null；放弃等待时为对限制器的判定
+         */
+        public void waiterFinished(Outcome verdict) {
+            boolean release;
+            synchronized (this) {
+                waiterDone = true;
+                this.verdict = verdict;
+                if (!started) {
+                    // 调用尚未开始，之后也不会再执行
+                    taskDone = true;
+                    taskEndNanos = System.nanoTime();
+                    taskOutcome = Outcome.IGNORED;
+                }
+                release = taskDone;
+            }
+            if (release) {
+                releaseNow();
+            }
+        }
+
+        /**
+         * 释放许可（执行线程和等待方都结束后调用，恰好调用一次）
+         */
+        private void releaseNow() {
+            Outcome outcome;
+            long rttNanos;
+            synchronized (this) {
+                outcome = verdict != null ? verdict : taskOutcome;
+                rttNanos = taskEndNanos - startNanos;
+            }
+            limiter.release(rttNanos, outcome);
+        }
+    }
+
+    /**
+     * 获取各限制器的状态（用于/stats接口）
+     * @return 上游方法 -> 状态信息
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<String, AdaptiveLimiter> entry : LIMITERS.entrySet()) {
+            AdaptiveLimiter limiter = entry.getValue();
+            Map<String, Object> item = new LinkedHashMap<>();
+            synchronized (limiter) {
+                item.put("limit", (int) limiter.limit);
+                item.put("inFlight", limiter.inFlight);
+                item.put("queued", limiter.waiters.size());
+                item.put("baselineRttMillis", TimeUnit.NANOSECONDS.toMillis(limiter.baselineRttNanos));
+                item.put("smoothedRttMillis", TimeUnit.NANOSECONDS.toMillis(limiter.smoothedRttNanos));
+                item.put("history", new ArrayList<>(limiter.history));
+            }
+            item.put("admitted", limiter.admitted.sum());
+            item.put("waited", limiter.waited.sum());
+            item.put("shed", limiter.shed.sum());
+            result.put(entry.getKey(), item);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,127 @@
+package com.xxhy.fqhelper.web;
+
+import fi.iki.elonen.NanoHTTPD.Response;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 接口错误对象
+ * 服务层和控制层以该对象表示失败（代替直接返回异常对象），序列化后只包含错误码、错误信息和请求ID，
+ * 不会遍历异常堆栈；HttpServer根据错误码返回对应的HTTP状态码
+ */
+public class ApiError {
+
+    /**
+     * 错误码及对应的HTTP状态
+     */
+    public enum Code implements Response.IStatus {
+        // 请求参数错误
+        BAD_REQUEST(400, "Bad Request"),
+        // 资源不存在
+        NOT_FOUND(404, "Not Found"),
+        // 请求过于频繁
+        TOO_MANY_REQUESTS(429, "Too Many Requests"),
+        // 客户端在响应前断开连接
+        CLIENT_CLOSED_REQUEST(499, "Client Closed Request"),
+        // 服务内部错误
+        INTERNAL_ERROR(500, "Internal Server Error"),
+        // 上游调用失败
+        UPSTREAM_ERROR(502, "Bad Gateway"),
+        // 上游方法熔断中
+        UPSTREAM_UNAVAILABLE(503, "Service Unavailable"),
+        // 上游调用超时
+        UPSTREAM_TIMEOUT(504, "Gateway Timeout");
+
+        private final int status;
+        private final String reason;
+
+        Code(int status, String reason) {
+            this.status = status;
+            this.reason = reason;
+        }
+
+        @Override
+        public String getDescription() {
+            return status + " " + reason;
+        }
+
+        @Override
+        public int getRequestStatus() {
+            return status;
+        }
+
+        /**
+         * 是否可被客户端缓存（只有参数错误和资源不存在对相同请求结果不变；限流和客户端断开随时间变化，不可缓存）
+         */
+        public boolean isCacheable() {
+            return this == BAD_REQUEST || this == NOT_FOUND;
+        }
+    }
+
+    // 错误码
+    private final Code code;
+    // 错误信息
+    private final String message;
+    // 请求ID（非HTTP请求线程中产生的错误为null）
+    private final String requestId;
+
+    private ApiError(Code code, String message) {
+        this.code = code;
+        this.message = message;
+        RequestContext context = RequestContext.current();
+        this.requestId = context != null ? context.getRequestId() : null;
+    }
+
+    /**
+     * 创建错误对象
+     * @param code 错误码
+     * @param message 错误信息
+     * @return 错误对象
+     */
+    public static ApiError of(Code code, String message) {
+        return new ApiError(code, message);
+    }
+
+    /**
+     * 创建参数错误
+     * @param message 错误信息
+     * @return 错误对象
+     */
+    public static ApiError badRequest(String message) {
+        return new ApiError(Code.BAD_REQUEST, message);
+    }
+
+    /**
+     * 根据异常类型创建错误对象（只读取异常信息，不保留异常本身）
+     * 未识别的异常一律视为上游失败（502）；参数错误只由调用方校验后通过badRequest产生，
+     * 上游或反射调用抛出的IllegalArgumentException（如NumberFormatException）不代表请求参数有误
+     * @param t 异常
+     * @return 错误对象
+     */
+    public static ApiError fromThrowable(Throwable t) {
+        Code code;
+        if (t instanceof TimeoutException) {
+            code = Code.UPSTREAM_TIMEOUT;
+        } else if (t instanceof CancellationException) {
+            code = Code.CLIENT_CLOSED_REQUEST;
+        } else {
+            code = Code.UPSTREAM_ERROR;
+        }
+        String message = t.getMessage();
+        return new ApiError(code, message != null ? message : t.getClass().getSimpleName());
+    }
+
+    /**
+     * 获取错误码
+     */
+    public Code getCode() {
+        return code;
+    }
+
+    /**
+     * 获取错误信息
+     */
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,129 @@
+package com.xxhy.fqhelper.web;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 书架条目摘要
+ * 从上游书架结果（GetBookShelfInfoResponse的data.bookShelfInfo）中提取每本书的关键状态，
+ * 用于比较两次书架结果之间的变化（新增、移除、最新章节更新）
+ */
+public class BookshelfEntry {
+
+    // Gson实例（只用于把上游结果转换为JSON树，线程安全）
+    private static final Gson GSON = new Gson();
+
+    // 书籍ID
+    final long bookId;
+    // 书名
+    final String bookName;
+    // 最新章节标题（上游未返回时为null）
+    final String lastChapterTitle;
+    // 最新章节ID（上游未返回时为null）
+    final String lastChapterItemId;
+    // 状态指纹：有最新章节信息时只对最新章节计算，否则对整个条目计算
+    final long stateHash;
+    // 上游返回的完整条目
+    final JsonObject item;
+
+    private BookshelfEntry(JsonObject item) {
+        this.item = item;
+        this.bookId = Long.parseLong(item.get("bookId").getAsString());
+        this.bookName = getString(item, "bookName");
+        this.lastChapterTitle = getString(item, "lastChapterTitle");
+        this.lastChapterItemId = getString(item, "lastChapterItemId");
+        this.stateHash = lastChapterTitle != null || lastChapterItemId != null
+            ? fnv(lastChapterItemId + "\u0000" + lastChapterTitle)
+            : fnv(item.toString());
+    }
+
+    /**
+     * 解析上游书架结果
+     * @param shelfResult 上游书架结果
+     * @return 书籍ID -> 书架条目（按书架顺序）；结果无法解析时返回null
+     */
+    public static Map<Long, BookshelfEntry> parse(Object shelfResult) {
+        if (shelfResult == null || shelfResult instanceof ApiError) {
+            return null;
+        }
+        JsonElement root = GSON.toJsonTree(shelfResult);
+        if (!root.isJsonObject()) {
+            return null;
+        }
+        JsonElement data = root.getAsJsonObject().get("data");
+        if (data == null || !data.isJsonObject()) {
+            return null;
+        }
+        JsonElement shelf = data.getAsJsonObject().get("bookShelfInfo");
+        if (shelf == null || !shelf.isJsonArray()) {
+            return null;
+        }
+
+        JsonArray items = shelf.getAsJsonArray();
+        Map<Long, BookshelfEntry> entries = new LinkedHashMap<>(items.size() * 2);
+        for (JsonElement element : items) {
+            if (!element.isJsonObject()) {
+                continue;
+            }
+            JsonObject item = element.getAsJsonObject();
+            JsonElement bookId = item.get("bookId");
+            if (bookId == null || !bookId.isJsonPrimitive()) {
+                continue;
+            }
+            try {
+                BookshelfEntry entry = new BookshelfEntry(item);
+                entries.put(entry.bookId, entry);
+            } catch (NumberFormatException e) {
+                // 书籍ID不是数字，忽略该条目
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 转换为事件数据（只包含有值的字段）
+     * @param withState 是否包含最新章节信息
+     * @return 事件数据
+     */
+    Map<String, Object> toEventData(boolean withState) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("bookId", String.valueOf(bookId));
+        if (withState) {
+            if (bookName != null) {
+                data.put("bookName", bookName);
+            }
+            if (lastChapterTitle != null) {
+                data.put("lastChapterTitle", lastChapterTitle);
+            }
+            if (lastChapterItemId != null) {
+                data.put("lastChapterItemId", lastChapterItemId);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * 读取字符串字段（字段不存在或不是基本类型时返回null）
+     */
+    private static String getString(JsonObject item, String name) {
+        JsonElement value = item.get(name);
+        return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+    }
+
+    /**
+     * FNV-1a 64位哈希
+     */
+    private static long fnv(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
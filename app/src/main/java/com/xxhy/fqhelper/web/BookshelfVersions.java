@@ -0,0 +1,150 @@
+package com.xxhy.fqhelper.web;
+
+import android.util.LongSparseArray;
+import com.google.gson.JsonObject;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 书架版本表
+ * 为书架上的每本书记录最后一次已知状态及其变化时的版本号，书籍移出书架时记录墓碑。
+ * 客户端携带上次同步得到的同步令牌（since），服务端只返回此后有变化的书籍和已移出的书籍ID
+ *
+ * <p>同步令牌格式：纪元.版本号，纪元在服务进程启动时生成，进程重启后旧令牌自动失效并返回完整书架
+ */
+public class BookshelfVersions {
+
+    // 最多保留的墓碑数，超出后淘汰最早的墓碑并提高可增量同步的最低版本
+    private static final int MAX_TOMBSTONES = 256;
+    // 纪元（进程启动时间）
+    private static final long EPOCH = System.currentTimeMillis();
+
+    // 书籍状态：书籍ID -> 状态
+    private static final LongSparseArray<BookState> STATES = new LongSparseArray<>();
+    // 墓碑：书籍ID -> 移出书架时的版本号
+    private static final LongSparseArray<Long> TOMBSTONES = new LongSparseArray<>();
+    // 当前版本号
+    private static long version;
+    // 可增量同步的最低版本号（更早的令牌对应的墓碑可能已被淘汰）
+    private static long minSyncVersion;
+
+    /**
+     * 私有构造方法，禁止实例化（工具类设计）
+     */
+    private BookshelfVersions() {}
+
+    /**
+     * 用最新书架更新版本表，并生成相对客户端令牌的增量结果
+     * @param shelf 最新书架（书籍ID -> 书架条目）
+     * @param since 客户端的同步令牌（为空或无效时返回完整书架）
+     * @return 响应数据（data.bookShelfInfo为有变化的条目，与完整书架结构一致）
+     */
+    public static synchronized Map<String, Object> sync(Map<Long, BookshelfEntry> shelf, String since) {
+        update(shelf);
+
+        long sinceVersion = parseToken(since);
+        boolean full = sinceVersion < 0 || sinceVersion < minSyncVersion || sinceVersion > version;
+
+        List<JsonObject> changed = new ArrayList<>();
+        for (BookshelfEntry entry : shelf.values()) {
+            if (full || STATES.get(entry.bookId).version > sinceVersion) {
+                changed.add(entry.item);
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        if (!full) {
+            for (int i = 0; i < TOMBSTONES.size(); i++) {
+                if (TOMBSTONES.valueAt(i) > sinceVersion) {
+                    removed.add(String.valueOf(TOMBSTONES.keyAt(i)));
+                }
+            }
+        }
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("syncToken", EPOCH + "." + version);
+        data.put("full", full);
+        data.put("bookShelfInfo", changed);
+        data.put("removedBookIds", removed);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("code", "SUCCESS");
+        result.put("data", data);
+        return result;
+    }
+
+    /**
+     * 比较最新书架与已知状态，为新增、变化和移出的书籍分配新版本号
+     * @param shelf 最新书架
+     */
+    private static void update(Map<Long, BookshelfEntry> shelf) {
+        for (BookshelfEntry entry : shelf.values()) {
+            BookState state = STATES.get(entry.bookId);
+            if (state == null) {
+                STATES.put(entry.bookId, new BookState(entry.stateHash, ++version));
+                TOMBSTONES.remove(entry.bookId);
+            } else if (state.stateHash != entry.stateHash) {
+                state.stateHash = entry.stateHash;
+                state.version = ++version;
+            }
+        }
+
+        for (int i = STATES.size() - 1; i >= 0; i--) {
+            long bookId = STATES.keyAt(i);
+            if (!shelf.containsKey(bookId)) {
+                STATES.removeAt(i);
+                TOMBSTONES.put(bookId, ++version);
+            }
+        }
+
+        while (TOMBSTONES.size() > MAX_TOMBSTONES) {
+            int oldest = 0;
+            for (int i = 1; i < TOMBSTONES.size(); i++) {
+                if (TOMBSTONES.valueAt(i) < TOMBSTONES.valueAt(oldest)) {
+                    oldest = i;
+                }
+            }
+            minSyncVersion = Math.max(minSyncVersion, TOMBSTONES.valueAt(oldest));
+            TOMBSTONES.removeAt(oldest);
+        }
+    }
+
+    /**
+     * 解析同步令牌
+     * @param token 同步令牌（纪元.版本号）
+     * @return 版本号（令牌为空、格式错误或纪元不一致时返回-1）
+     */
+    private static long parseToken(String token) {
+        if (token == null) {
+            return -1;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return -1;
+        }
+        try {
+            if (Long.parseLong(token.substring(0, dot)) != EPOCH) {
+                return -1;
+            }
+            return Long.parseLong(token.substring(dot + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 书籍状态
+     */
+    private static class BookState {
+        // 状态指纹
+        long stateHash;
+        // 最后一次变化时的版本号
+        long version;
+
+        BookState(long stateHash, long version) {
+            this.stateHash = stateHash;
+            this.version = version;
+        }
+    }
+}
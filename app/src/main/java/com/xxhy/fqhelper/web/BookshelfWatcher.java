@@ -0,0 +1,202 @@
+package com.xxhy.fqhelper.web;
+
+import com.google.gson.Gson;
+import com.xxhy.fqhelper.utils.LogUtils;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 书架变化监视类
+ * 有订阅者时在后台按自适应间隔轮询上游书架，与上一次结果比较后向所有订阅者（SSE连接）推送变化事件：
+ * - added：书籍加入书架
+ * - removed：书籍移出书架
+ * - updated：书籍最新章节变化
+ * 所有订阅者共享同一个上游轮询；书架有变化时缩短轮询间隔，连续无变化时逐步延长
+ */
+public class BookshelfWatcher {
+
+    // 初始轮询间隔（毫秒）
+    private static final long INITIAL_INTERVAL_MILLIS = 30_000;
+    // 最短轮询间隔（毫秒），书架有变化时使用
+    private static final long MIN_INTERVAL_MILLIS = 15_000;
+    // 最长轮询间隔（毫秒）
+    private static final long MAX_INTERVAL_MILLIS = 300_000;
+    // 无变化或失败时的间隔增长倍数
+    private static final double BACKOFF_FACTOR = 1.5;
+
+    // Gson实例，用于序列化事件数据（单行JSON，线程安全）
+    private static final Gson GSON = new Gson();
+    // 轮询线程
+    private static final ScheduledExecutorService POLLER =
+        Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fqhelper-bookshelf-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+    // 当前订阅者
+    private static final Set<EventStream> SUBSCRIBERS = new CopyOnWriteArraySet<>();
+    // 事件序号
+    private static final AtomicLong EVENT_ID = new AtomicLong();
+
+    // 统计计数
+    private static final LongAdder POLLS = new LongAdder();     // 上游轮询次数
+    private static final LongAdder FAILURES = new LongAdder();  // 轮询失败次数
+    private static final LongAdder EVENTS = new LongAdder();    // 产生的变化事件数
+
+    // 上一次的书架状态（仅在轮询线程中写入）
+    private static volatile Map<Long, BookshelfEntry> lastShelf;
+    // 当前轮询间隔（毫秒）
+    private static volatile long intervalMillis = INITIAL_INTERVAL_MILLIS;
+    // 已安排的轮询任务（无订阅者时为null）
+    private static ScheduledFuture<?> pollTask;
+
+    /**
+     * 私有构造方法，禁止实例化（工具类设计）
+     */
+    private BookshelfWatcher() {}
+
+    /**
+     * 订阅书架变化事件
+     * 新订阅者首先收到一条snapshot事件（当前书架，尚未轮询过时在首次轮询后发送）
+     * @return 事件流（作为SSE响应体）
+     */
+    public static EventStream subscribe() {
+        EventStream stream = new EventStream(MIN_INTERVAL_MILLIS, SUBSCRIBERS::remove);
+        SUBSCRIBERS.add(stream);
+
+        Map<Long, BookshelfEntry> shelf = lastShelf;
+        if (shelf != null) {
+            sendSnapshot(stream, shelf);
+        }
+        ensurePolling();
+        return stream;
+    }
+
+    /**
+     * 确保轮询任务在运行（首个订阅者到达时立即轮询一次）
+     */
+    private static synchronized void ensurePolling() {
+        if (pollTask == null) {
+            pollTask = POLLER.schedule(BookshelfWatcher::poll, 0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 轮询一次上游书架，推送变化并安排下一次轮询
+     */
+    private static void poll() {
+        if (SUBSCRIBERS.isEmpty()) {
+            // 没有订阅者时停止轮询，丢弃旧状态（下次订阅时重新建立基线）
+            synchronized (BookshelfWatcher.class) {
+                if (SUBSCRIBERS.isEmpty()) {
+                    pollTask = null;
+                    lastShelf = null;
+                    intervalMillis = INITIAL_INTERVAL_MILLIS;
+                    return;
+                }
+            }
+        }
+
+        long nextInterval;
+        try {
+            POLLS.increment();
+            Map<Long, BookshelfEntry> shelf = BookshelfEntry.parse(DragonService.getBookShelfInfo());
+            if (shelf == null) {
+                FAILURES.increment();
+                nextInterval = (long) (intervalMillis * BACKOFF_FACTOR);
+            } else {
+                Map<Long, BookshelfEntry> previous = lastShelf;
+                lastShelf = shelf;
+                if (previous == null) {
+                    for (EventStream subscriber : SUBSCRIBERS) {
+                        sendSnapshot(subscriber, shelf);
+                    }
+                    nextInterval = INITIAL_INTERVAL_MILLIS;
+                } else if (broadcastChanges(previous, shelf)) {
+                    nextInterval = MIN_INTERVAL_MILLIS;
+                } else {
+                    nextInterval = (long) (intervalMillis * BACKOFF_FACTOR);
+                }
+            }
+        } catch (Throwable t) {
+            LogUtils.logE("[BookshelfWatcher.poll] 轮询书架失败", t);
+            FAILURES.increment();
+            nextInterval = (long) (intervalMillis * BACKOFF_FACTOR);
+        }
+
+        intervalMillis = Math.max(MIN_INTERVAL_MILLIS, Math.min(nextInterval, MAX_INTERVAL_MILLIS));
+        synchronized (BookshelfWatcher.class) {
+            pollTask = POLLER.schedule(BookshelfWatcher::poll, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 比较两次书架状态并向所有订阅者推送变化
+     * @param previous 上一次的书架状态
+     * @param current 本次的书架状态
+     * @return 是否有变化
+     */
+    private static boolean broadcastChanges(Map<Long, BookshelfEntry> previous, Map<Long, BookshelfEntry> current) {
+        List<String[]> events = new ArrayList<>();
+        for (BookshelfEntry entry : current.values()) {
+            BookshelfEntry old = previous.get(entry.bookId);
+            if (old == null) {
+                events.add(new String[] {"added", GSON.toJson(entry.toEventData(true))});
+            } else if (old.stateHash != entry.stateHash) {
+                events.add(new String[] {"updated", GSON.toJson(entry.toEventData(true))});
+            }
+        }
+        for (BookshelfEntry old : previous.values()) {
+            if (!current.containsKey(old.bookId)) {
+                events.add(new String[] {"removed", GSON.toJson(old.toEventData(false))});
+            }
+        }
+        if (events.isEmpty()) {
+            return false;
+        }
+
+        EVENTS.add(events.size());
+        for (String[] event : events) {
+            long id = EVENT_ID.incrementAndGet();
+            for (EventStream subscriber : SUBSCRIBERS) {
+                subscriber.send(id, event[0], event[1]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 向订阅者发送当前书架快照
+     */
+    private static void sendSnapshot(EventStream subscriber, Map<Long, BookshelfEntry> shelf) {
+        List<Map<String, Object>> books = new ArrayList<>(shelf.size());
+        for (BookshelfEntry entry : shelf.values()) {
+            books.add(entry.toEventData(true));
+        }
+        subscriber.send(EVENT_ID.get(), "snapshot", GSON.toJson(books));
+    }
+
+    /**
+     * 获取监视统计（用于/stats接口）
+     * @return 统计信息
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("subscribers", SUBSCRIBERS.size());
+        result.put("polls", POLLS.sum());
+        result.put("failures", FAILURES.sum());
+        result.put("events", EVENTS.sum());
+        result.put("intervalSeconds", intervalMillis / 1000);
+        return result;
+    }
+}
@@ -0,0 +1,263 @@
+package com.xxhy.fqhelper.web;
+
+import com.xxhy.fqhelper.utils.LogUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.joor.Reflect;
+
+/**
+ * 书籍目录索引类
+ * 为最近访问的书籍保存紧凑的目录索引（章节ID数组、打包存放的章节标题及少量章节字段 + 目录版本指纹），用于：
+ * 1. 游标分页：在目录快照有效期内按游标分段返回章节，翻页无需重复请求上游
+ * 2. 增量更新：客户端提供已知的最后章节ID（since）或目录版本（version），只返回其后新增的章节
+ *
+ * <p>返回结构与完整目录保持一致（章节列表仍位于data.itemDataList），书源规则无需修改；
+ * 分页返回的章节只包含{@link Snapshot}中保存的字段（书源用到的itemId、title、needUnlock、showVipTag，
+ * 以及volumeName、firstPassTime），不持有上游的章节对象
+ */
+public class CatalogIndex {
+
+    // 最多保存的书籍数（LRU淘汰）
+    private static final int MAX_BOOKS = 8;
+    // 目录快照用于游标分页的有效期（纳秒）
+    private static final long SNAPSHOT_TTL_NANOS = TimeUnit.MINUTES.toNanos(5);
+    // 默认分页大小
+    public static final int DEFAULT_PAGE_SIZE = 500;
+    // 最大分页大小
+    private static final int MAX_PAGE_SIZE = 2000;
+
+    // 目录快照表：书籍ID -> 快照（按访问顺序淘汰）
+    private static final Map<String, Snapshot> SNAPSHOTS = Collections.synchronizedMap(
+        new LinkedHashMap<String, Snapshot>(MAX_BOOKS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+                return size() > MAX_BOOKS;
+            }
+        });
+
+    /**
+     * 私有构造方法，禁止实例化（工具类设计）
+     */
+    private CatalogIndex() {}
+
+    /**
+     * 根据上游目录结果更新书籍的目录快照
+     * @param bookId 书籍ID
+     * @param catalogResult 上游目录结果（GetDirectoryForItemIdResponse）
+     * @return 新的目录快照（结果无法解析时返回null）
+     */
+    public static Snapshot update(String bookId, Object catalogResult) {
+        if (catalogResult == null || catalogResult instanceof ApiError) {
+            return null;
+        }
+        try {
+            List<?> items = Reflect.on(catalogResult).field("data").field("itemDataList").get();
+            if (items == null) {
+                return null;
+            }
+            Snapshot snapshot = new Snapshot(items);
+            SNAPSHOTS.put(bookId, snapshot);
+            return snapshot;
+        } catch (Throwable t) {
+            LogUtils.logE("[CatalogIndex.update] 解析目录失败，bookId：" + bookId, t);
+            return null;
+        }
+    }
+
+    /**
+     * 获取仍在有效期内的目录快照
+     * @param bookId 书籍ID
+     * @return 目录快照（不存在或已过期返回null）
+     */
+    public static Snapshot getFresh(String bookId) {
+        Snapshot snapshot = SNAPSHOTS.get(bookId);
+        if (snapshot == null || System.nanoTime() - snapshot.createdNanos > SNAPSHOT_TTL_NANOS) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * 生成分页/增量目录响应
+     * @param bookId 书籍ID
+     * @param snapshot 目录快照
+     * @param afterItemId 从该章节之后开始返回（null表示从第一章开始）
+     * @param knownVersion 客户端已知的目录版本（与当前版本一致时返回空列表，可为null）
+     * @param limit 每页章节数
+     * @return 响应数据（结构与完整目录一致：data.itemDataList）
+     */
+    public static Map<String, Object> page(
+            String bookId, Snapshot snapshot, String afterItemId, String knownVersion, int limit) {
+        int pageSize = limit > 0 ? Math.min(limit, MAX_PAGE_SIZE) : DEFAULT_PAGE_SIZE;
+        int total = snapshot.itemIds.length;
+
+        int start = 0;
+        boolean reset = false;
+        if (snapshot.version.equals(knownVersion)) {
+            // 目录未变化
+            start = total;
+        } else if (afterItemId != null && !afterItemId.isEmpty()) {
+            int position = snapshot.indexOf(afterItemId);
+            if (position >= 0) {
+                start = position + 1;
+            } else {
+                // 已知章节不在当前目录中（章节被删除或调整），从头返回，由客户端整体替换
+                reset = true;
+            }
+        }
+        int end = Math.min(total, start + pageSize);
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("bookId", bookId);
+        data.put("total", total);
+        data.put("version", snapshot.version);
+        data.put("lastItemId", total > 0 ? String.valueOf(snapshot.itemIds[total - 1]) : null);
+        data.put("nextCursor", end < total ? String.valueOf(snapshot.itemIds[end - 1]) : null);
+        data.put("reset", reset);
+        data.put("itemDataList", snapshot.items(start, end));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("code", "SUCCESS");
+        result.put("data", data);
+        return result;
+    }
+
+    /**
+     * 书籍目录快照
+     * 按目录顺序以数组保存各章节字段，不持有上游章节对象（单个章节约占25字节加标题长度）；
+     * version为章节ID及标题的指纹
+     */
+    public static class Snapshot {
+        // 章节标记位
+        private static final byte FLAG_NEED_UNLOCK = 1;
+        private static final byte FLAG_VIP = 1 << 1;
+
+        // 章节ID（按目录顺序）
+        final long[] itemIds;
+        // 章节标题：依次拼接为一个字符串，titleEnds[i]为第i章标题的结束位置
+        private final String titles;
+        private final int[] titleEnds;
+        // 分卷名表及各章节所属分卷的下标（分卷名大量重复，每个只保存一份）
+        private final String[] volumeNames;
+        private final int[] volumeIndexes;
+        // 章节标记（FLAG_NEED_UNLOCK、FLAG_VIP）
+        private final byte[] flags;
+        // 章节首发时间（秒）
+        private final long[] firstPassTimes;
+        // 目录版本指纹
+        final String version;
+        // 创建时间（纳秒）
+        final long createdNanos = System.nanoTime();
+
+        Snapshot(List<?> items) {
+            int count = items.size();
+            this.itemIds = new long[count];
+            this.titleEnds = new int[count];
+            this.volumeIndexes = new int[count];
+            this.flags = new byte[count];
+            this.firstPassTimes = new long[count];
+            StringBuilder titleBuilder = new StringBuilder();
+            Map<String, Integer> volumes = new LinkedHashMap<>();
+            // FNV-1a 64位哈希
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < count; i++) {
+                Object item = items.get(i);
+                String itemId = Reflect.on(item).field("itemId").get();
+                String title = Reflect.on(item).field("title").get();
+                itemIds[i] = Long.parseLong(itemId);
+                hash = fnv(hash, itemIds[i]);
+                hash = fnv(hash, title != null ? title.hashCode() : 0);
+
+                titleBuilder.append(title != null ? title : "");
+                titleEnds[i] = titleBuilder.length();
+                Object volumeName = optionalField(item, "volumeName");
+                String volume = volumeName != null ? volumeName.toString() : "";
+                Integer volumeIndex = volumes.get(volume);
+                if (volumeIndex == null) {
+                    volumeIndex = volumes.size();
+                    volumes.put(volume, volumeIndex);
+                }
+                volumeIndexes[i] = volumeIndex;
+                if (Boolean.TRUE.equals(optionalField(item, "needUnlock"))) {
+                    flags[i] |= FLAG_NEED_UNLOCK;
+                }
+                if (Boolean.TRUE.equals(optionalField(item, "showVipTag"))) {
+                    flags[i] |= FLAG_VIP;
+                }
+                Object firstPassTime = optionalField(item, "firstPassTime");
+                if (firstPassTime instanceof Number) {
+                    firstPassTimes[i] = ((Number) firstPassTime).longValue();
+                }
+            }
+            this.titles = titleBuilder.toString();
+            this.volumeNames = volumes.keySet().toArray(new String[0]);
+            this.version = Long.toHexString(hash) + "-" + itemIds.length;
+        }
+
+        /**
+         * 生成指定范围的章节列表（字段名与上游章节对象一致）
+         * @param start 起始位置（包含）
+         * @param end 结束位置（不包含）
+         * @return 章节列表
+         */
+        List<Map<String, Object>> items(int start, int end) {
+            List<Map<String, Object>> result = new ArrayList<>(Math.max(0, end - start));
+            for (int i = start; i < end; i++) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("itemId", String.valueOf(itemIds[i]));
+                item.put("title", titles.substring(i > 0 ? titleEnds[i - 1] : 0, titleEnds[i]));
+                item.put("volumeName", volumeNames[volumeIndexes[i]]);
+                item.put("needUnlock", (flags[i] & FLAG_NEED_UNLOCK) != 0);
+                item.put("showVipTag", (flags[i] & FLAG_VIP) != 0);
+                item.put("firstPassTime", firstPassTimes[i]);
+                result.add(item);
+            }
+            return result;
+        }
+
+        /**
+         * 读取章节对象的可选字段
+         * @return 字段值（字段不存在时返回null）
+         */
+        private static Object optionalField(Object item, String name) {
+            try {
+                return Reflect.on(item).field(name).get();
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+
+        /**
+         * 查找章节在目录中的位置
+         * 增量更新时已知章节通常位于目录末尾，因此从后向前查找
+         * @param itemId 章节ID
+         * @return 位置（不存在返回-1）
+         */
+        int indexOf(String itemId) {
+            long id;
+            try {
+                id = Long.parseLong(itemId);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+            for (int i = itemIds.length - 1; i >= 0; i--) {
+                if (itemIds[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static long fnv(long hash, long value) {
+            for (int i = 0; i < 8; i++) {
+                hash ^= (value >>> (i * 8)) & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.xxhy.fqhelper.web;
+
+import com.xxhy.fqhelper.utils.LogUtils;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上游方法熔断器
+ * 每个上游RPC方法（类名#方法名）对应一个熔断器：连续失败或超时达到阈值后进入熔断状态，
+ * 熔断期间的请求直接快速失败；同时在后台按退避间隔用最近一次的请求参数探测上游，探测成功后恢复
+ */
+public class CircuitBreaker {
+
+    // 熔断器表：上游方法 -> 熔断器
+    private static final ConcurrentHashMap<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+    // 后台探测线程（单线程即可，探测本身带超时）
+    private static final ScheduledExecutorService PROBE_SCHEDULER =
+        Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fqhelper-breaker-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    // 触发熔断的连续失败次数
+    private static final int FAILURE_THRESHOLD = 5;
+    // 首次探测间隔（毫秒）
+    private static final long INITIAL_PROBE_DELAY_MILLIS = 5_000;
+    // 最大探测间隔（毫秒）
+    private static final long MAX_PROBE_DELAY_MILLIS = 60_000;
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        // 正常放行
+        CLOSED,
+        // 熔断中，等待后台探测
+        OPEN,
+        // 后台探测进行中
+        PROBING
+    }
+
+    // 上游方法标识（类名#方法名）
+    private final String target;
+    // 当前状态
+    private volatile State state = State.CLOSED;
+    // 连续失败次数
+    private int consecutiveFailures;
+    // 下一次探测的间隔（毫秒）
+    private long probeDelayMillis = INITIAL_PROBE_DELAY_MILLIS;
+    // 最近一次调用（用于后台探测）
+    private Callable<?> lastCall;
+    // 累计熔断次数
+    private long openCount;
+
+    private CircuitBreaker(String target) {
+        this.target = target;
+    }
+
+    /**
+     * 获取上游方法对应的熔断器
+     * @param target 上游方法标识（类名#方法名）
+     * @return 熔断器
+     */
+    public static CircuitBreaker forTarget(String target) {
+        return BREAKERS.computeIfAbsent(target, CircuitBreaker::new);
+    }
+
+    /**
+     * 判断是否允许发起调用
+     * @return true-放行，false-熔断中应快速失败
+     */
+    public boolean allowRequest() {
+        return state == State.CLOSED;
+    }
+
+    /**
+     * 记录一次成功调用，清零连续失败次数
+     */
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * 记录一次失败（异常或超时），连续失败达到阈值后进入熔断并安排后台探测
+     * @param call 本次调用（熔断后用于探测上游是否恢复）
+     */
+    public synchronized void onFailure(Callable<?> call) {
+        lastCall = call;
+        consecutiveFailures++;
+        if (state == State.CLOSED && consecutiveFailures >= FAILURE_THRESHOLD) {
+            state = State.OPEN;
+            openCount++;
+            LogUtils.logI("[CircuitBreaker] 上游方法熔断：" + target + "，连续失败" + consecutiveFailures + "次");
+            scheduleProbe();
+        }
+    }
+
+    /**
+     * 按当前退避间隔安排一次后台探测
+     */
+    private void scheduleProbe() {
+        PROBE_SCHEDULER.schedule(this::probe, probeDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 执行后台探测：成功则恢复，失败则加倍退避间隔后重新安排
+     */
+    private void probe() {
+        Callable<?> call;
+        synchronized (this) {
+            state = State.PROBING;
+            call = lastCall;
+        }
+        boolean success;
+        try {
+            call.call();
+            success = true;
+        } catch (Throwable t) {
+            success = false;
+        }
+        synchronized (this) {
+            if (success) {
+                state = State.CLOSED;
+                consecutiveFailures = 0;
+                probeDelayMillis = INITIAL_PROBE_DELAY_MILLIS;
+                LogUtils.logI("[CircuitBreaker] 上游方法恢复：" + target);
+            } else {
+                state = State.OPEN;
+                probeDelayMillis = Math.min(probeDelayMillis * 2, MAX_PROBE_DELAY_MILLIS);
+                scheduleProbe();
+            }
+        }
+    }
+
+    /**
+     * 获取各熔断器的状态（用于/stats接口）
+     * @return 上游方法 -> 状态信息
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<String, CircuitBreaker> entry : BREAKERS.entrySet()) {
+            CircuitBreaker breaker = entry.getValue();
+            Map<String, Object> item = new LinkedHashMap<>();
+            synchronized (breaker) {
+                item.put("state", breaker.state.name());
+                item.put("consecutiveFailures", breaker.consecutiveFailures);
+                item.put("openCount", breaker.openCount);
+            }
+            result.put(entry.getKey(), item);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,147 @@
+package com.xxhy.fqhelper.web;
+
+import android.net.LocalSocket;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructPollfd;
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * 客户端连接探测类
+ * 记录当前处理线程对应的客户端Socket，用于在等待上游RPC时判断客户端是否已断开连接，
+ * 客户端断开后即可取消对应的上游调用，避免无人接收的请求长期占用工作线程
+ */
+public class ClientConnection {
+
+    // 当前处理线程对应的客户端连接（NanoHTTPD每个连接由独立线程处理）
+    private static final ThreadLocal<ClientConnection> CURRENT = new ThreadLocal<>();
+
+    // 客户端Socket（Unix域套接字连接为null）
+    private final Socket socket;
+    // Unix域套接字客户端（TCP连接为null）
+    private final LocalSocket localSocket;
+    // 包装后的输入流，探测时读到的字节可以回退，不影响后续请求解析
+    private final PushbackInputStream inputStream;
+
+    /**
+     * 构造方法
+     * @param socket 客户端Socket
+     * @param inputStream 可回退的Socket输入流（需同时交给NanoHTTPD解析请求）
+     */
+    public ClientConnection(Socket socket, PushbackInputStream inputStream) {
+        this.socket = socket;
+        this.localSocket = null;
+        this.inputStream = inputStream;
+    }
+
+    /**
+     * 构造方法（Unix域套接字连接）
+     * @param localSocket 客户端套接字
+     * @param inputStream 可回退的套接字输入流（需同时交给NanoHTTPD解析请求）
+     */
+    public ClientConnection(LocalSocket localSocket, PushbackInputStream inputStream) {
+        this.socket = null;
+        this.localSocket = localSocket;
+        this.inputStream = inputStream;
+    }
+
+    /**
+     * 将连接绑定到当前处理线程
+     * @param connection 客户端连接
+     */
+    static void attach(ClientConnection connection) {
+        CURRENT.set(connection);
+    }
+
+    /**
+     * 解除当前处理线程绑定的连接
+     */
+    static void detach() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 获取当前处理线程对应的客户端连接
+     * @return 客户端连接（非HTTP处理线程返回null）
+     */
+    public static ClientConnection current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 判断客户端是否已断开连接
+     * 原理：以1ms超时尝试读取1个字节，读到EOF说明对端已关闭；读到数据则回退，读超时说明连接仍然存活
+     * 注意：只能在处理该连接的线程上调用（此时NanoHTTPD不会读取该连接）
+     * @return true-客户端已断开，false-连接正常
+     */
+    public boolean isClosedByPeer() {
+        if (localSocket != null) {
+            return isLocalClosedByPeer();
+        }
+        if (socket.isClosed() || socket.isInputShutdown()) {
+            return true;
+        }
+        try {
+            if (inputStream.available() > 0) {
+                return false;
+            }
+            int originalTimeout = socket.getSoTimeout();
+            socket.setSoTimeout(1);
+            try {
+                int b = inputStream.read();
+                if (b < 0) {
+                    return true;
+                }
+                inputStream.unread(b);
+                return false;
+            } catch (SocketTimeoutException e) {
+                return false;
+            } finally {
+                socket.setSoTimeout(originalTimeout);
+            }
+        } catch (IOException e) {
+            // 读取或设置超时失败，视为连接已断开
+            return true;
+        }
+    }
+
+    /**
+     * 判断Unix域套接字客户端是否已断开连接
+     * LocalSocket读超时不会抛出SocketTimeoutException，因此改用poll（超时为0）检查可读状态：
+     * 不可读说明连接存活；可读时读取1个字节，读到EOF说明对端已关闭，否则回退
+     * @return true-客户端已断开，false-连接正常
+     */
+    private boolean isLocalClosedByPeer() {
+        if (localSocket.isClosed() || localSocket.isInputShutdown()) {
+            return true;
+        }
+        try {
+            if (inputStream.available() > 0) {
+                return false;
+            }
+            StructPollfd pollfd = new StructPollfd();
+            pollfd.fd = localSocket.getFileDescriptor();
+            pollfd.events = (short) OsConstants.POLLIN;
+            if (Os.poll(new StructPollfd[] {pollfd}, 0) == 0) {
+                return false;
+            }
+            if ((pollfd.revents & OsConstants.POLLIN) == 0) {
+                // 只有POLLHUP/POLLERR，连接已断开
+                return true;
+            }
+            int b = inputStream.read();
+            if (b < 0) {
+                return true;
+            }
+            inputStream.unread(b);
+            return false;
+        } catch (ErrnoException | IOException e) {
+            // 检查失败，视为连接已断开
+            return true;
+        }
+    }
+}
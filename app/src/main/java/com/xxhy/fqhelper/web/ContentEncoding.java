@@ -0,0 +1,146 @@
+package com.xxhy.fqhelper.web;
+
+import com.xxhy.fqhelper.utils.LogUtils;
+import com.xxhy.fqhelper.web.codec.NativeCompressor;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 响应内容编码枚举
+ * 根据请求头Accept-Encoding协商zstd或brotli压缩（由native-lib提供），压缩后的响应带Content-Encoding头；
+ * 客户端更偏好gzip、原生库不可用或响应体过小时不在此处压缩，仍由NanoHTTPD按原有逻辑决定是否gzip
+ */
+public enum ContentEncoding {
+
+    ZSTD("zstd", NativeCompressor.Algorithm.ZSTD, 3),
+    BROTLI("br", NativeCompressor.Algorithm.BROTLI, 5),
+    IDENTITY("identity", null, 0);
+
+    // 小于该大小的响应体不压缩（压缩帧开销占比过高）
+    private static final int MIN_COMPRESS_SIZE = 1024;
+    // 每种算法最多缓存的空闲压缩器数（原生上下文创建开销较大，复用以避免每次请求重新分配）
+    private static final int MAX_POOLED_COMPRESSORS = 4;
+
+    // Accept-Encoding中的编码名称
+    private final String token;
+    // 压缩算法（IDENTITY为null）
+    private final NativeCompressor.Algorithm algorithm;
+    // 压缩级别
+    private final int level;
+    // 空闲压缩器池
+    private final ConcurrentLinkedQueue<NativeCompressor> pool = new ConcurrentLinkedQueue<>();
+    // 统计：压缩的响应数、压缩前字节数、压缩后字节数
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder encodedBytes = new LongAdder();
+
+    ContentEncoding(String token, NativeCompressor.Algorithm algorithm, int level) {
+        this.token = token;
+        this.algorithm = algorithm;
+        this.level = level;
+    }
+
+    /**
+     * 获取Content-Encoding响应头的值
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * 根据Accept-Encoding请求头选择内容编码
+     * 规则：只考虑客户端显式声明的zstd和br，取q值较高者（相同时优先zstd）；
+     * 若gzip的q值更高则返回IDENTITY，交由NanoHTTPD进行gzip压缩
+     * @param acceptEncoding Accept-Encoding请求头（可为null）
+     * @param length 响应体长度
+     * @return 内容编码
+     */
+    public static ContentEncoding negotiate(String acceptEncoding, int length) {
+        if (acceptEncoding == null || length < MIN_COMPRESS_SIZE || !NativeCompressor.isAvailable()) {
+            return IDENTITY;
+        }
+
+        float zstdQuality = 0;
+        float brotliQuality = 0;
+        float gzipQuality = 0;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase();
+            float quality = ResponseFormat.parseQuality(parts);
+            if (ZSTD.token.equals(name)) {
+                zstdQuality = Math.max(zstdQuality, quality);
+            } else if (BROTLI.token.equals(name)) {
+                brotliQuality = Math.max(brotliQuality, quality);
+            } else if ("gzip".equals(name)) {
+                gzipQuality = Math.max(gzipQuality, quality);
+            }
+        }
+
+        ContentEncoding best = zstdQuality >= brotliQuality ? ZSTD : BROTLI;
+        float bestQuality = Math.max(zstdQuality, brotliQuality);
+        if (bestQuality <= 0 || gzipQuality > bestQuality) {
+            return IDENTITY;
+        }
+        return best;
+    }
+
+    /**
+     * 压缩响应体
+     * @param body 原始响应体
+     * @return 压缩后的响应体；IDENTITY、压缩失败或压缩后不更小时返回null（调用方按未压缩处理）
+     */
+    public byte[] encode(byte[] body) {
+        if (this == IDENTITY) {
+            return null;
+        }
+
+        NativeCompressor compressor = pool.poll();
+        try {
+            if (compressor == null) {
+                compressor = new NativeCompressor(algorithm, level);
+            }
+            byte[] encoded = compressor.compress(body);
+            if (pool.size() < MAX_POOLED_COMPRESSORS) {
+                pool.offer(compressor);
+            } else {
+                compressor.close();
+            }
+            compressor = null;
+
+            if (encoded.length >= body.length) {
+                return null;
+            }
+            responses.increment();
+            rawBytes.add(body.length);
+            encodedBytes.add(encoded.length);
+            return encoded;
+        } catch (IOException e) {
+            LogUtils.logE("[ContentEncoding.encode] " + token + "压缩失败", e);
+            return null;
+        } finally {
+            if (compressor != null) {
+                compressor.close();
+            }
+        }
+    }
+
+    /**
+     * 汇总压缩统计信息
+     * @return 统计信息（用于/stats接口）
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("nativeAvailable", NativeCompressor.isAvailable());
+        for (ContentEncoding encoding : new ContentEncoding[] {ZSTD, BROTLI}) {
+            Map<String, Long> stats = new LinkedHashMap<>();
+            stats.put("responses", encoding.responses.sum());
+            stats.put("rawBytes", encoding.rawBytes.sum());
+            stats.put("encodedBytes", encoding.encodedBytes.sum());
+            result.put(encoding.token, stats);
+        }
+        return result;
+    }
+}
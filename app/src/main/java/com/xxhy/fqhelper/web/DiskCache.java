@@ -0,0 +1,1169 @@
+package com.xxhy.fqhelper.web;
+
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+import com.xxhy.fqhelper.constant.SPConstants;
+import com.xxhy.fqhelper.utils.JsonUtils;
+import com.xxhy.fqhelper.utils.LogUtils;
+import com.xxhy.fqhelper.utils.SPUtils;
+import com.xxhy.fqhelper.xposed.global.DragonGlobals;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import org.joor.Reflect;
+
+/**
+ * 磁盘元数据缓存类
+ * 将/detail、/catalog、/search的序列化结果保存在应用数据目录中，宿主进程重启后仍可直接命中。
+ *
+ * <p>存储结构：
+ * 1. 数据段（seg-N.dat）：只追加写入的记录文件，每条记录带CRC校验，写满后切换到新的数据段
+ * 2. 索引（index.dat）：内存映射的开放寻址哈希表，键的64位哈希 -> 记录位置及过期时间
+ *
+ * <p>淘汰与整理：
+ * - 总大小超过上限时整段删除最旧的数据段；读取命中旧数据段中的记录时将其复制到当前数据段（近似LRU）
+ * - 失效记录占比过高的数据段会在后台线程中整理：先把有效记录追加到当前数据段并更新索引，再删除旧段，
+ *   任一步骤中断都不会丢失索引引用的数据；索引损坏时通过扫描数据段重建
+ *
+ * <p>并发：锁只保护索引和数据段元数据，记录内容在锁外按位置读取，读取不会等待其他请求的文件读写；
+ * 同一缓存键的并发未命中合并为一次上游调用
+ *
+ * <p>各路由的缓存有效期（秒）可通过SP中的{@link SPConstants#DISK_CACHE_TTL}以JSON覆盖，
+ * 格式：{"/detail":21600, "/search":0}，值为0表示该路由不使用磁盘缓存。
+ * 命中写入超过{@link #REVALIDATE_AFTER_MILLIS}的记录时立即返回缓存内容，同时在后台请求上游并覆盖记录
+ * （stale-while-revalidate）：重启后首个请求仍由磁盘响应，阅读器检查更新（最新章节、目录刷新）最多晚一次请求看到新章节
+ */
+public class DiskCache {
+
+    // 缓存目录名
+    private static final String DIR_NAME = "fqhelper_cache";
+    // 索引文件名
+    private static final String INDEX_FILE = "index.dat";
+    // 数据段文件名前缀/后缀
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    // 缓存总大小上限（字节）
+    private static final long MAX_TOTAL_BYTES = 64L * 1024 * 1024;
+    // 单个数据段大小上限（字节，单条记录超过上限时独占一个数据段）
+    private static final long MAX_SEGMENT_BYTES = 8L * 1024 * 1024;
+    // 有效数据占比低于该值的数据段会被整理
+    private static final double COMPACT_LIVE_RATIO = 0.5;
+
+    // 索引文件布局：头部（魔数、版本、容量）+ 槽位数组
+    private static final int INDEX_MAGIC = 0x46514958;
+    private static final int INDEX_VERSION = 1;
+    private static final int INDEX_HEADER_BYTES = 16;
+    // 槽位布局：键哈希(8) 过期时间(8) 数据段ID(4) 偏移(4) 记录长度(4) 保留(4)
+    private static final int SLOT_BYTES = 32;
+    private static final int INITIAL_CAPACITY = 1024;
+    // 槽位负载上限（含已删除槽位）
+    private static final double MAX_LOAD_FACTOR = 0.7;
+    // 空槽位与已删除槽位的哈希标记
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = 1;
+
+    // 记录布局：魔数(4) CRC(4) 过期时间(8) 键长度(4) 值长度(4) 键 值，CRC覆盖魔数和CRC之后的全部内容
+    private static final int RECORD_MAGIC = 0x46514331;
+    private static final int RECORD_HEADER_BYTES = 24;
+
+    // 命中的记录写入超过该时间后在后台刷新（毫秒）
+    private static final long REVALIDATE_AFTER_MILLIS = 60_000;
+    // 刷新失败后同一缓存键再次刷新的最短间隔（毫秒），避免上游异常时每次命中都请求上游
+    private static final long REFRESH_RETRY_MILLIS = 60_000;
+    // 记录刷新时间的缓存键数上限（超出时清空）
+    private static final int MAX_REFRESH_KEYS = 1024;
+
+    // 默认配置对应的各路由有效期（秒）
+    private static final Map<String, Long> DEFAULT_TTLS = createDefaultTtls();
+
+    // 单例实例（初始化失败时为null，不再重试）
+    private static volatile DiskCache instance;
+    private static volatile boolean initFailed;
+
+    // 有效期配置缓存（SP原始字符串未变化时复用解析结果）
+    private static volatile String cachedConfigJson;
+    private static volatile Map<String, Long> cachedTtls = DEFAULT_TTLS;
+
+    // 统计计数
+    private static final LongAdder HITS = new LongAdder();         // 命中次数
+    private static final LongAdder MISSES = new LongAdder();       // 未命中次数
+    private static final LongAdder WRITES = new LongAdder();       // 写入记录数
+    private static final LongAdder PROMOTIONS = new LongAdder();   // 命中后迁移到当前数据段的记录数
+    private static final LongAdder EVICTIONS = new LongAdder();    // 因总大小超限删除的数据段数
+    private static final LongAdder COMPACTIONS = new LongAdder();  // 整理的数据段数
+    private static final LongAdder COALESCED = new LongAdder();    // 合并到进行中加载的未命中次数
+    private static final LongAdder REFRESHES = new LongAdder();    // 命中后提交的后台刷新次数
+
+    // 进行中的加载：缓存键 -> 加载任务（同一键的并发未命中只调用一次上游）
+    private static final ConcurrentHashMap<String, FutureTask<Object>> LOADING = new ConcurrentHashMap<>();
+    // 后台维护线程（数据段整理）
+    private static final ThreadPoolExecutor MAINTENANCE = new ThreadPoolExecutor(
+        1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "fqhelper-disk-cache");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+    // 后台刷新线程（命中较旧记录时请求上游；队列已满时放弃，下次命中再刷新）
+    private static final ThreadPoolExecutor REFRESHER = new ThreadPoolExecutor(
+        1, 2, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(32), r -> {
+            Thread thread = new Thread(r, "fqhelper-disk-refresh");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+    // 各缓存键最近一次提交刷新的时间（毫秒时间戳）
+    private static final ConcurrentHashMap<String, Long> REFRESHED_AT = new ConcurrentHashMap<>();
+
+    static {
+        MAINTENANCE.allowCoreThreadTimeOut(true);
+        REFRESHER.allowCoreThreadTimeOut(true);
+    }
+
+    // 缓存目录
+    private final File dir;
+    // 数据段：ID -> 数据段（按ID升序，ID越大越新）
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    // 当前写入的数据段
+    private Segment active;
+    // 索引映射
+    private MappedByteBuffer index;
+    // 索引容量（槽位数，2的幂）
+    private int capacity;
+    // 有效槽位数
+    private int count;
+    // 已删除槽位数
+    private int tombstones;
+    // 所有数据段的总大小（字节）
+    private long totalBytes;
+    // 是否已有整理任务等待执行
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
+    /**
+     * 打开缓存目录
+     * @param dir 缓存目录
+     * @throws IOException 目录或文件无法访问
+     */
+    private DiskCache(File dir) throws IOException {
+        this.dir = dir;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建缓存目录：" + dir);
+        }
+        openSegments();
+        if (!openIndex()) {
+            rebuildIndex();
+        }
+        validateIndex();
+    }
+
+    /**
+     * 获取单例实例（首次调用时打开缓存目录）
+     * @return 缓存实例（初始化失败返回null）
+     */
+    public static DiskCache getInstance() {
+        if (instance == null && !initFailed) {
+            synchronized (DiskCache.class) {
+                if (instance == null && !initFailed) {
+                    try {
+                        File dir = new File(DragonGlobals.getDragonApplication().getDataDir(), DIR_NAME);
+                        instance = new DiskCache(dir);
+                    } catch (Throwable t) {
+                        initFailed = true;
+                        LogUtils.logE("[DiskCache.getInstance] 打开磁盘缓存失败", t);
+                    }
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 优先从磁盘缓存读取结果，未命中时调用上游并缓存成功的结果；命中较旧的记录时在后台刷新
+     * @param route 路由路径（决定有效期）
+     * @param key 路由内的缓存键（如书籍ID）
+     * @param loader 上游调用
+     * @return 缓存命中或写入成功时返回{@link SerializedJson}，否则返回上游结果或异常对象
+     */
+    public static Object getOrLoad(String route, String key, Supplier<Object> loader) {
+        long ttlSeconds = resolveTtlSeconds(route);
+        DiskCache cache = ttlSeconds > 0 ? getInstance() : null;
+        if (cache == null) {
+            return loader.get();
+        }
+
+        String cacheKey = route + "\u0000" + key;
+        Record cached = cache.get(cacheKey);
+        if (cached != null) {
+            HITS.increment();
+            long writtenAtMillis = cached.expiresAtMillis - ttlSeconds * 1000;
+            if (System.currentTimeMillis() - writtenAtMillis >= REVALIDATE_AFTER_MILLIS) {
+                refreshAsync(cache, route, cacheKey, ttlSeconds, loader);
+            }
+            return new SerializedJson(cached.value);
+        }
+        MISSES.increment();
+        return load(cache, route, cacheKey, ttlSeconds, loader);
+    }
+
+    /**
+     * 调用上游并缓存成功的结果；同一缓存键的并发加载合并为一次上游调用，其余调用方等待该次结果
+     * @return 写入成功时返回{@link SerializedJson}，否则返回上游结果或错误对象
+     */
+    private static Object load(DiskCache cache, String route, String cacheKey, long ttlSeconds, Supplier<Object> loader) {
+        FutureTask<Object> task = new FutureTask<>(() -> loadAndStore(cache, route, cacheKey, ttlSeconds, loader));
+        FutureTask<Object> running = LOADING.putIfAbsent(cacheKey, task);
+        if (running == null) {
+            try {
+                task.run();
+            } finally {
+                LOADING.remove(cacheKey, task);
+            }
+            running = task;
+        } else {
+            COALESCED.increment();
+        }
+        return awaitLoad(running);
+    }
+
+    /**
+     * 在后台请求上游并覆盖缓存记录（同一缓存键已在加载或最近已刷新过时跳过）
+     */
+    private static void refreshAsync(DiskCache cache, String route, String cacheKey, long ttlSeconds,
+                                     Supplier<Object> loader) {
+        long now = System.currentTimeMillis();
+        Long last = REFRESHED_AT.get(cacheKey);
+        if (last != null && now - last < REFRESH_RETRY_MILLIS || LOADING.containsKey(cacheKey)) {
+            return;
+        }
+        if (REFRESHED_AT.size() >= MAX_REFRESH_KEYS) {
+            REFRESHED_AT.clear();
+        }
+        REFRESHED_AT.put(cacheKey, now);
+        REFRESHES.increment();
+        REFRESHER.execute(() -> load(cache, route, cacheKey, ttlSeconds, loader));
+    }
+
+    /**
+     * 等待加载结果（跟随其他请求的加载时不超过本请求的截止时间）
+     */
+    private static Object awaitLoad(FutureTask<Object> task) {
+        try {
+            if (task.isDone()) {
+                return task.get();
+            }
+            RequestContext context = RequestContext.current();
+            if (context == null) {
+                return task.get();
+            }
+            long remaining = context.getDeadlineNanos() - System.nanoTime();
+            return task.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return ApiError.of(ApiError.Code.UPSTREAM_TIMEOUT, "等待上游调用超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ApiError.of(ApiError.Code.INTERNAL_ERROR, "请求处理被中断");
+        } catch (ExecutionException e) {
+            LogUtils.logE("[DiskCache.awaitLoad] 加载失败", e.getCause());
+            return ApiError.of(ApiError.Code.INTERNAL_ERROR, "加载失败");
+        }
+    }
+
+    /**
+     * 调用上游，结果成功时序列化并写入缓存
+     */
+    private static Object loadAndStore(DiskCache cache, String route, String cacheKey, long ttlSeconds,
+                                       Supplier<Object> loader) {
+        Object result = loader.get();
+        if (!isSuccess(result)) {
+            return result;
+        }
+        try {
+            byte[] json = serialize(result);
+            cache.put(cacheKey, json, System.currentTimeMillis() + ttlSeconds * 1000);
+            return new SerializedJson(json);
+        } catch (IOException e) {
+            LogUtils.logE("[DiskCache.loadAndStore] 序列化结果失败，路由：" + route, e);
+            return result;
+        }
+    }
+
+    /**
+     * 读取缓存
+     * 只在查找索引和更新槽位时持有锁，记录内容在锁外按位置读取（数据段只追加写入，已写入的记录不会改变）
+     * @param key 缓存键
+     * @return 缓存记录（不存在、已过期或读取失败返回null）
+     */
+    private Record get(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(keyBytes);
+        List<Location> candidates;
+        synchronized (this) {
+            candidates = lookup(hash);
+        }
+        for (Location location : candidates) {
+            Record record;
+            try {
+                record = readRecord(location.segment, location.offset, location.length);
+            } catch (IOException e) {
+                // 数据段已被淘汰或整理（通道已关闭），按未命中处理
+                continue;
+            }
+            if (record == null) {
+                // 记录损坏
+                removeIfUnchanged(location);
+                continue;
+            }
+            if (!record.keyEquals(keyBytes)) {
+                continue;
+            }
+            if (record.expiresAtMillis <= System.currentTimeMillis()) {
+                removeIfUnchanged(location);
+                return null;
+            }
+            promoteIfNeeded(location, record.raw);
+            return record;
+        }
+        return null;
+    }
+
+    /**
+     * 查找键哈希相同的所有槽位（调用方持有锁）
+     * @return 槽位及记录位置
+     */
+    private List<Location> lookup(long hash) {
+        List<Location> result = new ArrayList<>(1);
+        for (int i = home(hash), probes = 0; probes < capacity; i = next(i), probes++) {
+            int offset = slotOffset(i);
+            long slotHash = index.getLong(offset);
+            if (slotHash == EMPTY) {
+                break;
+            }
+            if (slotHash != hash) {
+                continue;
+            }
+            Segment segment = segments.get(index.getInt(offset + 16));
+            if (segment != null) {
+                result.add(new Location(i, hash, segment, index.getInt(offset + 20), index.getInt(offset + 24)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 判断槽位是否仍指向查找时的记录（调用方持有锁；期间可能已被覆盖、迁移或因扩容改变位置）
+     */
+    private boolean isUnchanged(Location location) {
+        if (location.slot >= capacity) {
+            return false;
+        }
+        int offset = slotOffset(location.slot);
+        return index.getLong(offset) == location.hash
+            && index.getInt(offset + 16) == location.segment.id
+            && index.getInt(offset + 20) == location.offset
+            && segments.get(location.segment.id) == location.segment;
+    }
+
+    /**
+     * 删除槽位（槽位已变化时忽略）
+     */
+    private synchronized void removeIfUnchanged(Location location) {
+        if (isUnchanged(location)) {
+            removeSlot(location.slot);
+        }
+    }
+
+    /**
+     * 旧数据段中的热点记录迁移到当前数据段，避免随旧段一起被淘汰（槽位已变化时忽略）
+     */
+    private synchronized void promoteIfNeeded(Location location, byte[] raw) {
+        if (!isUnchanged(location) || !shouldPromote(location.segment.id)) {
+            return;
+        }
+        try {
+            relocate(location.slot, raw);
+            PROMOTIONS.increment();
+            evictIfNeeded();
+        } catch (IOException e) {
+            LogUtils.logE("[DiskCache.promoteIfNeeded] 迁移记录失败", e);
+        }
+    }
+
+    /**
+     * 写入缓存（覆盖同键的旧记录）
+     * @param key 缓存键
+     * @param value 缓存值
+     * @param expiresAtMillis 过期时间（毫秒时间戳）
+     */
+    private void put(String key, byte[] value, long expiresAtMillis) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] raw = encodeRecord(keyBytes, value, expiresAtMillis);
+        synchronized (this) {
+            if (!putRecord(hash(keyBytes), keyBytes, raw, expiresAtMillis)) {
+                return;
+            }
+        }
+        scheduleCompaction();
+    }
+
+    /**
+     * 追加记录并更新槽位（调用方持有锁）
+     * @return 写入成功返回true
+     */
+    private boolean putRecord(long hash, byte[] keyBytes, byte[] raw, long expiresAtMillis) {
+        try {
+            if (count + tombstones + 1 > capacity * MAX_LOAD_FACTOR) {
+                resizeIndex();
+            }
+
+            // 先确定槽位再追加记录，避免重试时重复追加
+            int target = findSlotForPut(hash, keyBytes);
+            if (target < 0) {
+                // 正常情况下不会发生（写入前已保证负载不超过上限）
+                resizeIndex();
+                target = findSlotForPut(hash, keyBytes);
+            }
+            if (target < 0) {
+                throw new IOException("索引没有可用槽位");
+            }
+
+            Segment segment = append(raw);
+            int recordOffset = (int) (segment.size - raw.length);
+            writeSlot(target, hash, expiresAtMillis, segment.id, recordOffset, raw.length);
+            WRITES.increment();
+
+            evictIfNeeded();
+            return true;
+        } catch (IOException e) {
+            LogUtils.logE("[DiskCache.putRecord] 写入磁盘缓存失败", e);
+            return false;
+        }
+    }
+
+    /**
+     * 查找写入键的槽位：同键的旧记录所在槽位（先删除旧记录），否则为探测链上第一个空槽位或已删除槽位
+     * @return 槽位下标（没有可用槽位返回-1）
+     */
+    private int findSlotForPut(long hash, byte[] keyBytes) throws IOException {
+        int target = -1;
+        for (int i = home(hash), probes = 0; probes < capacity; i = next(i), probes++) {
+            long slotHash = index.getLong(slotOffset(i));
+            if (slotHash == EMPTY) {
+                return target < 0 ? i : target;
+            }
+            if (slotHash == TOMBSTONE) {
+                if (target < 0) {
+                    target = i;
+                }
+                continue;
+            }
+            if (slotHash == hash && keyMatches(i, keyBytes)) {
+                // 覆盖旧记录
+                removeSlot(i);
+                return i;
+            }
+        }
+        return target;
+    }
+
+    /**
+     * 追加记录到当前数据段（当前数据段写满时切换到新数据段）
+     * @param raw 记录字节
+     * @return 记录所在的数据段
+     */
+    private Segment append(byte[] raw) throws IOException {
+        if (active.size > 0 && active.size + raw.length > MAX_SEGMENT_BYTES) {
+            active.channel.force(false);
+            active = openSegment(active.id + 1);
+            segments.put(active.id, active);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(raw);
+        long position = active.size;
+        while (buffer.hasRemaining()) {
+            position += active.channel.write(buffer, position);
+        }
+        active.size += raw.length;
+        active.liveBytes += raw.length;
+        totalBytes += raw.length;
+        return active;
+    }
+
+    /**
+     * 将槽位对应的记录复制到当前数据段并更新槽位
+     * @param slot 槽位下标
+     * @param raw 记录字节
+     */
+    private void relocate(int slot, byte[] raw) throws IOException {
+        int offset = slotOffset(slot);
+        Segment old = segments.get(index.getInt(offset + 16));
+        Segment segment = append(raw);
+        index.putInt(offset + 16, segment.id);
+        index.putInt(offset + 20, (int) (segment.size - raw.length));
+        if (old != null) {
+            old.liveBytes -= raw.length;
+        }
+    }
+
+    /**
+     * 判断记录是否位于较旧的一半数据段中（需要迁移以免被整段淘汰）
+     */
+    private boolean shouldPromote(int segmentId) {
+        int oldest = segments.firstKey();
+        return segmentId != active.id && segmentId <= oldest + (active.id - oldest) / 2;
+    }
+
+    /**
+     * 总大小超过上限时删除最旧的数据段
+     */
+    private void evictIfNeeded() throws IOException {
+        while (totalBytes > MAX_TOTAL_BYTES && segments.size() > 1) {
+            dropSegment(segments.firstEntry().getValue());
+            EVICTIONS.increment();
+        }
+    }
+
+    /**
+     * 在后台线程中整理数据段（已有整理任务等待执行时不重复提交）
+     */
+    private void scheduleCompaction() {
+        if (!compactionScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            MAINTENANCE.execute(() -> {
+                compactionScheduled.set(false);
+                try {
+                    compactIfNeeded();
+                } catch (IOException e) {
+                    LogUtils.logE("[DiskCache.compactIfNeeded] 整理数据段失败", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            compactionScheduled.set(false);
+        }
+    }
+
+    /**
+     * 整理有效数据占比最低的已封闭数据段（每次最多一个）
+     * 在后台线程中执行：记录在锁外读取，每迁移一条记录只短暂持有锁，不阻塞请求线程的读写
+     */
+    private void compactIfNeeded() throws IOException {
+        Segment candidate = null;
+        List<Location> locations = new ArrayList<>();
+        synchronized (this) {
+            double lowestRatio = COMPACT_LIVE_RATIO;
+            for (Segment segment : segments.values()) {
+                if (segment == active || segment.size == 0) {
+                    continue;
+                }
+                double ratio = (double) segment.liveBytes / segment.size;
+                if (ratio < lowestRatio) {
+                    lowestRatio = ratio;
+                    candidate = segment;
+                }
+            }
+            if (candidate == null) {
+                return;
+            }
+            for (int i = 0; i < capacity; i++) {
+                int offset = slotOffset(i);
+                long slotHash = index.getLong(offset);
+                if (slotHash != EMPTY && slotHash != TOMBSTONE && index.getInt(offset + 16) == candidate.id) {
+                    locations.add(new Location(i, slotHash, candidate, index.getInt(offset + 20), index.getInt(offset + 24)));
+                }
+            }
+        }
+
+        // 1. 有效记录追加到当前数据段并更新索引（槽位已被覆盖或迁移的记录跳过）
+        long now = System.currentTimeMillis();
+        for (Location location : locations) {
+            Record record;
+            try {
+                record = readRecord(candidate, location.offset, location.length);
+            } catch (IOException e) {
+                // 数据段已被淘汰
+                return;
+            }
+            synchronized (this) {
+                if (!isUnchanged(location)) {
+                    continue;
+                }
+                if (record == null || record.expiresAtMillis <= now) {
+                    removeSlot(location.slot);
+                } else {
+                    relocate(location.slot, record.raw);
+                }
+            }
+        }
+        // 2. 新位置落盘后再删除旧数据段（中途中断时旧数据段仍完整，重启后作为无引用数据段清理）；
+        // 整理期间因索引扩容未能迁移的少量记录随旧数据段一起删除
+        synchronized (this) {
+            if (segments.get(candidate.id) != candidate) {
+                return;
+            }
+            active.channel.force(false);
+            index.force();
+            dropSegment(candidate);
+            COMPACTIONS.increment();
+        }
+    }
+
+    /**
+     * 删除数据段，并清除索引中指向该数据段的槽位
+     */
+    private void dropSegment(Segment segment) throws IOException {
+        for (int i = 0; i < capacity; i++) {
+            int offset = slotOffset(i);
+            long slotHash = index.getLong(offset);
+            if (slotHash != EMPTY && slotHash != TOMBSTONE && index.getInt(offset + 16) == segment.id) {
+                removeSlot(i);
+            }
+        }
+        segments.remove(segment.id);
+        totalBytes -= segment.size;
+        segment.channel.close();
+        if (!segment.file.delete()) {
+            LogUtils.logI("[DiskCache.dropSegment] 删除数据段失败：" + segment.file);
+        }
+        if (segment == active) {
+            active = openSegment(segments.isEmpty() ? 0 : segments.lastKey() + 1);
+            segments.put(active.id, active);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 索引
+    // ------------------------------------------------------------------
+
+    /**
+     * 打开已有索引
+     * @return 索引有效返回true，不存在或已损坏返回false
+     */
+    private boolean openIndex() throws IOException {
+        File file = new File(dir, INDEX_FILE);
+        if (!file.isFile() || file.length() < INDEX_HEADER_BYTES) {
+            return false;
+        }
+        MappedByteBuffer mapped = map(file);
+        int slots = mapped.getInt(8);
+        if (mapped.getInt(0) != INDEX_MAGIC
+                || mapped.getInt(4) != INDEX_VERSION
+                || slots <= 0
+                || Integer.bitCount(slots) != 1
+                || file.length() != INDEX_HEADER_BYTES + (long) slots * SLOT_BYTES) {
+            LogUtils.logI("[DiskCache.openIndex] 索引文件无效，重建索引");
+            return false;
+        }
+        index = mapped;
+        capacity = slots;
+        return true;
+    }
+
+    /**
+     * 扫描所有数据段重建索引（同键的记录以较新的为准）
+     * 数据段中遇到无效记录（写入中断）时停止扫描该段，最新数据段截断到最后一条有效记录
+     */
+    private void rebuildIndex() throws IOException {
+        Map<String, long[]> entries = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for (Segment segment : segments.values()) {
+            long position = 0;
+            while (position + RECORD_HEADER_BYTES <= segment.size) {
+                ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+                readFully(segment.channel, header, position);
+                long length = RECORD_HEADER_BYTES + (long) header.getInt(16) + header.getInt(20);
+                if (header.getInt(0) != RECORD_MAGIC || header.getInt(16) < 0 || header.getInt(20) < 0
+                        || position + length > segment.size) {
+                    break;
+                }
+                Record record = readRecord(segment, (int) position, (int) length);
+                if (record == null) {
+                    break;
+                }
+                String key = new String(record.key, StandardCharsets.UTF_8);
+                entries.remove(key);
+                if (record.expiresAtMillis > now) {
+                    entries.put(key, new long[] {hash(record.key), record.expiresAtMillis, segment.id, position, length});
+                }
+                position += length;
+            }
+            if (position < segment.size && segment.id == segments.lastKey()) {
+                segment.channel.truncate(position);
+                totalBytes -= segment.size - position;
+                segment.size = position;
+            }
+        }
+        writeIndex(new ArrayList<>(entries.values()), tableCapacityFor(entries.size()));
+        LogUtils.logI("[DiskCache.rebuildIndex] 已重建索引，记录数：" + entries.size());
+    }
+
+    /**
+     * 扩容或清理已删除槽位：以新容量重写索引文件
+     */
+    private void resizeIndex() throws IOException {
+        List<long[]> entries = new ArrayList<>(count);
+        for (int i = 0; i < capacity; i++) {
+            int offset = slotOffset(i);
+            long slotHash = index.getLong(offset);
+            if (slotHash != EMPTY && slotHash != TOMBSTONE) {
+                entries.add(new long[] {
+                    slotHash, index.getLong(offset + 8), index.getInt(offset + 16),
+                    index.getInt(offset + 20), index.getInt(offset + 24)
+                });
+            }
+        }
+        writeIndex(entries, tableCapacityFor(entries.size()));
+    }
+
+    /**
+     * 写入新的索引文件：先写临时文件并落盘，再原子替换旧索引
+     * @param entries 槽位数据（键哈希、过期时间、数据段ID、偏移、长度）
+     * @param newCapacity 新容量
+     */
+    private void writeIndex(List<long[]> entries, int newCapacity) throws IOException {
+        File tmp = new File(dir, INDEX_FILE + ".tmp");
+        if (tmp.exists() && !tmp.delete()) {
+            throw new IOException("无法删除临时索引：" + tmp);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(tmp, "rw")) {
+            file.setLength(INDEX_HEADER_BYTES + (long) newCapacity * SLOT_BYTES);
+        }
+        index = map(tmp);
+        capacity = newCapacity;
+        count = 0;
+        tombstones = 0;
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, INDEX_VERSION);
+        index.putInt(8, newCapacity);
+        for (long[] entry : entries) {
+            int i = home(entry[0]);
+            while (index.getLong(slotOffset(i)) != EMPTY) {
+                i = next(i);
+            }
+            writeSlot(i, entry[0], entry[1], (int) entry[2], (int) entry[3], (int) entry[4]);
+        }
+        index.force();
+        if (!tmp.renameTo(new File(dir, INDEX_FILE))) {
+            throw new IOException("无法替换索引文件");
+        }
+    }
+
+    /**
+     * 校验索引：清除指向不存在或越界位置的槽位，统计各数据段的有效数据，
+     * 删除没有任何有效记录的旧数据段，并截掉当前数据段末尾未被索引的残留数据
+     */
+    private void validateIndex() throws IOException {
+        count = 0;
+        tombstones = 0;
+        for (Segment segment : segments.values()) {
+            segment.liveBytes = 0;
+        }
+        long activeEnd = 0;
+        int newest = segments.isEmpty() ? -1 : segments.lastKey();
+        for (int i = 0; i < capacity; i++) {
+            int offset = slotOffset(i);
+            long slotHash = index.getLong(offset);
+            if (slotHash == EMPTY) {
+                continue;
+            }
+            if (slotHash == TOMBSTONE) {
+                tombstones++;
+                continue;
+            }
+            Segment segment = segments.get(index.getInt(offset + 16));
+            long end = (long) index.getInt(offset + 20) + index.getInt(offset + 24);
+            if (segment == null || index.getInt(offset + 20) < 0 || end > segment.size) {
+                index.putLong(offset, TOMBSTONE);
+                tombstones++;
+                continue;
+            }
+            count++;
+            segment.liveBytes += index.getInt(offset + 24);
+            if (segment.id == newest) {
+                activeEnd = Math.max(activeEnd, end);
+            }
+        }
+
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment.id != newest && segment.liveBytes == 0) {
+                dropSegment(segment);
+            }
+        }
+        if (segments.isEmpty()) {
+            active = openSegment(0);
+            segments.put(active.id, active);
+        } else {
+            active = segments.lastEntry().getValue();
+            if (active.size > activeEnd) {
+                active.channel.truncate(activeEnd);
+                totalBytes -= active.size - activeEnd;
+                active.size = activeEnd;
+            }
+        }
+    }
+
+    /**
+     * 写入槽位（最后写入键哈希，使槽位在其余字段写完后才生效）
+     */
+    private void writeSlot(int slot, long hash, long expiresAtMillis, int segmentId, int offset, int length) {
+        int base = slotOffset(slot);
+        boolean wasTombstone = index.getLong(base) == TOMBSTONE;
+        index.putLong(base + 8, expiresAtMillis);
+        index.putInt(base + 16, segmentId);
+        index.putInt(base + 20, offset);
+        index.putInt(base + 24, length);
+        index.putLong(base, hash);
+        count++;
+        if (wasTombstone) {
+            tombstones--;
+        }
+    }
+
+    /**
+     * 删除槽位（标记为已删除，保持探测链完整）
+     */
+    private void removeSlot(int slot) {
+        int base = slotOffset(slot);
+        Segment segment = segments.get(index.getInt(base + 16));
+        if (segment != null) {
+            segment.liveBytes -= index.getInt(base + 24);
+        }
+        index.putLong(base, TOMBSTONE);
+        count--;
+        tombstones++;
+    }
+
+    /**
+     * 判断槽位对应记录的键是否与给定键相同（只读取记录头和键）
+     */
+    private boolean keyMatches(int slot, byte[] keyBytes) throws IOException {
+        int base = slotOffset(slot);
+        Segment segment = segments.get(index.getInt(base + 16));
+        if (segment == null) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + keyBytes.length);
+        readFully(segment.channel, buffer, index.getInt(base + 20));
+        if (buffer.getInt(16) != keyBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (buffer.get(RECORD_HEADER_BYTES + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int home(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+    }
+
+    private int next(int slot) {
+        return (slot + 1) & (capacity - 1);
+    }
+
+    private static int slotOffset(int slot) {
+        return INDEX_HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    /**
+     * 计算容纳指定记录数所需的索引容量（负载不超过一半）
+     */
+    private static int tableCapacityFor(int entries) {
+        int slots = INITIAL_CAPACITY;
+        while (slots < entries * 2) {
+            slots <<= 1;
+        }
+        return slots;
+    }
+
+    // ------------------------------------------------------------------
+    // 数据段与记录
+    // ------------------------------------------------------------------
+
+    /**
+     * 打开缓存目录中的所有数据段
+     */
+    private void openSegments() throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            try {
+                int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                Segment segment = openSegment(id);
+                segments.put(id, segment);
+            } catch (NumberFormatException e) {
+                LogUtils.logI("[DiskCache.openSegments] 忽略无法识别的文件：" + name);
+            }
+        }
+    }
+
+    /**
+     * 打开（或创建）数据段
+     */
+    private Segment openSegment(int id) throws IOException {
+        File file = new File(dir, SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        Segment segment = new Segment(id, file, channel, channel.size());
+        totalBytes += segment.size;
+        return segment;
+    }
+
+    /**
+     * 读取并校验记录（按位置读取，可在锁外调用；数据段关闭后抛出异常）
+     * @return 记录（数据段不存在、格式错误或CRC不匹配时返回null）
+     */
+    private static Record readRecord(Segment segment, int offset, int length) throws IOException {
+        if (segment == null || length < RECORD_HEADER_BYTES || (long) offset + length > segment.size) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(segment.channel, buffer, offset);
+        byte[] raw = buffer.array();
+        int keyLength = buffer.getInt(16);
+        int valueLength = buffer.getInt(20);
+        if (buffer.getInt(0) != RECORD_MAGIC || keyLength < 0 || valueLength < 0
+                || (long) RECORD_HEADER_BYTES + keyLength + valueLength != length) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(raw, 8, length - 8);
+        if ((int) crc.getValue() != buffer.getInt(4)) {
+            return null;
+        }
+        byte[] key = new byte[keyLength];
+        System.arraycopy(raw, RECORD_HEADER_BYTES, key, 0, keyLength);
+        byte[] value = new byte[valueLength];
+        System.arraycopy(raw, RECORD_HEADER_BYTES + keyLength, value, 0, valueLength);
+        return new Record(raw, key, value, buffer.getLong(8));
+    }
+
+    /**
+     * 编码记录
+     */
+    private static byte[] encodeRecord(byte[] key, byte[] value, long expiresAtMillis) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + key.length + value.length);
+        buffer.putInt(RECORD_MAGIC);
+        buffer.putInt(0);
+        buffer.putLong(expiresAtMillis);
+        buffer.putInt(key.length);
+        buffer.putInt(value.length);
+        buffer.put(key);
+        buffer.put(value);
+        byte[] raw = buffer.array();
+        CRC32 crc = new CRC32();
+        crc.update(raw, 8, raw.length - 8);
+        buffer.putInt(4, (int) crc.getValue());
+        return raw;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("数据段意外结束");
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        }
+    }
+
+    /**
+     * 计算键的64位哈希（FNV-1a），避开空槽位和已删除槽位的标记值
+     */
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash == EMPTY || hash == TOMBSTONE ? 2 : hash;
+    }
+
+    // ------------------------------------------------------------------
+    // 配置与统计
+    // ------------------------------------------------------------------
+
+    /**
+     * 初始化各路由默认有效期（秒）
+     */
+    private static Map<String, Long> createDefaultTtls() {
+        Map<String, Long> map = new HashMap<>(8);
+        map.put("/detail", 6 * 3600L);
+        map.put("/catalog", 30 * 60L);
+        map.put("/search", 10 * 60L);
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * 获取路由的缓存有效期
+     * @param route 路由路径
+     * @return 有效期（秒，0表示不缓存）
+     */
+    private static long resolveTtlSeconds(String route) {
+        SPUtils sp = SPUtils.getInstance(DragonGlobals.getDragonApplication(), SPConstants.SP_NAME);
+        String json = sp.getString(SPConstants.DISK_CACHE_TTL, SPConstants.DEFAULT_DISK_CACHE_TTL);
+        Map<String, Long> ttls = cachedTtls;
+        if (!json.equals(cachedConfigJson)) {
+            ttls = new HashMap<>(DEFAULT_TTLS);
+            try {
+                Map<String, Long> custom =
+                    JsonUtils.fromJson(json, new TypeToken<Map<String, Long>>() {}.getType());
+                if (custom != null) {
+                    ttls.putAll(custom);
+                }
+            } catch (Exception e) {
+                LogUtils.logE("[DiskCache.resolveTtlSeconds] 解析缓存有效期配置失败，使用默认配置：" + json, e);
+            }
+            cachedTtls = ttls;
+            cachedConfigJson = json;
+        }
+        Long ttl = ttls.get(route);
+        return ttl != null ? Math.max(ttl, 0) : 0;
+    }
+
+    /**
+     * 判断上游结果是否成功（只缓存code为SUCCESS的结果）
+     */
+    private static boolean isSuccess(Object result) {
+        if (result == null || result instanceof ApiError) {
+            return false;
+        }
+        try {
+            Object code = Reflect.on(result).field("code").get();
+            return "SUCCESS".equals(String.valueOf(code));
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    /**
+     * 将结果序列化为非格式化的UTF-8 JSON
+     */
+    private static byte[] serialize(Object result) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(8 * 1024);
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8))) {
+            JsonUtils.toJson(result, writer);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 获取缓存统计（用于/stats接口）
+     * @return 统计信息
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hits", HITS.sum());
+        result.put("misses", MISSES.sum());
+        result.put("writes", WRITES.sum());
+        result.put("promotions", PROMOTIONS.sum());
+        result.put("evictions", EVICTIONS.sum());
+        result.put("compactions", COMPACTIONS.sum());
+        result.put("coalesced", COALESCED.sum());
+        result.put("refreshes", REFRESHES.sum());
+        DiskCache cache = instance;
+        if (cache != null) {
+            synchronized (cache) {
+                result.put("entries", cache.count);
+                result.put("bytes", cache.totalBytes);
+                result.put("segments", cache.segments.size());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 数据段
+     */
+    private static class Segment {
+        final int id;
+        final File file;
+        final FileChannel channel;
+        // 文件大小（字节）
+        long size;
+        // 索引引用的记录总大小（字节）
+        long liveBytes;
+
+        Segment(int id, File file, FileChannel channel, long size) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 槽位及其指向的记录位置（在锁内查找，锁外读取记录，再次持锁时用于确认槽位未变化）
+     */
+    private static class Location {
+        final int slot;
+        final long hash;
+        final Segment segment;
+        final int offset;
+        final int length;
+
+        Location(int slot, long hash, Segment segment, int offset, int length) {
+            this.slot = slot;
+            this.hash = hash;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * 已校验的记录
+     */
+    private static class Record {
+        // 完整记录字节（迁移时原样追加）
+        final byte[] raw;
+        final byte[] key;
+        final byte[] value;
+        final long expiresAtMillis;
+
+        Record(byte[] raw, byte[] key, byte[] value, long expiresAtMillis) {
+            this.raw = raw;
+            this.key = key;
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        boolean keyEquals(byte[] other) {
+            return Arrays.equals(key, other);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.xxhy.fqhelper.web;
 
 import com.xxhy.fqhelper.constant.SPConstants;
-import com.xxhy.fqhelper.utils.JsonUtils;
 import com.xxhy.fqhelper.utils.SPUtils;
 import com.xxhy.fqhelper.xposed.global.DragonGlobals;
 import java.util.List;
@@ -52,14 +51,14 @@ public class DragonController {
     }
 
     /**
-     * 检查参数是否为空，为空则返回异常信息
+     * 检查参数是否为空，为空则返回参数错误
      * @param paramValue 参数值
      * @param paramName 参数名
-     * @return 若为空则返回异常对象，否则返回null
+     * @return 若为空则返回参数错误，否则返回null
      */
-    private static Exception checkParamEmpty(String paramValue, String paramName) {
+    private static ApiError checkParamEmpty(String paramValue, String paramName) {
         if (paramValue == null || paramValue.isEmpty()) {
-            return new Exception("参数 " + paramName + " 不能为空");
+            return ApiError.badRequest("参数 " + paramName + " 不能为空");
         }
         return null;
     }
@@ -69,12 +68,15 @@ public class DragonController {
      * @param parameters 请求参数，包含：
      *                   - query：搜索关键词（必填）
      *                   - page：页码（可选，默认1）
-     * @return 搜索结果的JSON字符串；若参数无效则返回异常对象
+     *                   - pages：页码范围（可选，如1-3，最多5页；指定后忽略page），各页并行请求后合并为一个结果
+     *                   - count：结果数（可选，最多50；从page开始请求所需的页数并行合并，返回不超过该数量的结果）
+     *                   - local：本地索引（可选；1-从第1页开始时把本地命中的书籍合并在上游结果之前，only-只查本地索引、不请求上游）
+     * @return 搜索结果对象（由HttpServer按Accept协商序列化格式）；若参数无效则返回参数错误
      */
     public static Object search(Map<String, List<String>> parameters) {
         // 获取搜索关键词并验证
         String keyword = getParameter(parameters, "query");
-        Exception paramError = checkParamEmpty(keyword, "query");
+        ApiError paramError = checkParamEmpty(keyword, "query");
         if (paramError != null) {
             return paramError;
         }
@@ -82,20 +84,90 @@ public class DragonController {
         // 获取页码（默认第1页）
         int page = getIntParameter(parameters, "page", 1);
 
-        // 调用服务层执行搜索并返回JSON结果
-        return JsonUtils.toJson(DragonService.search(keyword, page));
+        // 只查本地索引
+        String local = getParameter(parameters, "local");
+        if ("only".equals(local)) {
+            return LocalSearchIndex.localResponse(keyword, page);
+        }
+
+        // 多页合并：页码范围或结果数
+        int pageCount = 1;
+        int limit = 0;
+        String pages = getParameter(parameters, "pages");
+        String count = getParameter(parameters, "count");
+        if (pages != null && !pages.isEmpty()) {
+            int[] range = parsePageRange(pages);
+            if (range == null) {
+                return ApiError.badRequest("参数 pages 无效（格式：起始页-结束页，最多" + SearchMerger.MAX_PAGES + "页）：" + pages);
+            }
+            page = range[0];
+            pageCount = range[1] - range[0] + 1;
+        } else if (count != null && !count.isEmpty()) {
+            int maxCount = SearchMerger.MAX_PAGES * DragonService.SEARCH_PAGE_SIZE;
+            limit = getIntParameter(parameters, "count", 0);
+            if (limit < 1 || limit > maxCount) {
+                return ApiError.badRequest("参数 count 无效（1~" + maxCount + "）：" + count);
+            }
+            pageCount = (limit + DragonService.SEARCH_PAGE_SIZE - 1) / DragonService.SEARCH_PAGE_SIZE;
+        }
+
+        // 执行搜索（各页优先使用磁盘缓存，其次使用预取结果；上游结果同时更新本地索引）
+        Object result;
+        if (pageCount == 1 && limit == 0) {
+            result = loadSearchPage(keyword, page, true);
+        } else {
+            result = SearchMerger.search(page, pageCount, limit, (p, last) -> loadSearchPage(keyword, p, last));
+        }
+        if ("1".equals(local) && page == 1) {
+            return LocalSearchIndex.merge(result, keyword);
+        }
+        return result;
+    }
+
+    /**
+     * 获取单页搜索结果（优先使用磁盘缓存，其次使用预取结果；上游结果同时更新本地索引）
+     * @param keyword 搜索关键词
+     * @param page 页码
+     * @param prefetchNext 是否在后台预取下一页
+     * @return 搜索结果或错误对象
+     */
+    private static Object loadSearchPage(String keyword, int page, boolean prefetchNext) {
+        return DiskCache.getOrLoad("/search", page + ":" + keyword, () -> {
+            Object searchResult = SearchPrefetcher.search(keyword, page, prefetchNext);
+            LocalSearchIndex.submit("/search", searchResult);
+            return searchResult;
+        });
+    }
+
+    /**
+     * 解析页码范围
+     * @param value 页码范围（如1-3，单个数字表示只请求该页）
+     * @return [起始页, 结束页]；格式错误、起始页小于1或超过最大页数时返回null
+     */
+    private static int[] parsePageRange(String value) {
+        try {
+            int dash = value.indexOf('-');
+            int first = Integer.parseInt((dash < 0 ? value : value.substring(0, dash)).trim());
+            int last = dash < 0 ? first : Integer.parseInt(value.substring(dash + 1).trim());
+            if (first < 1 || last < first || last - first + 1 > SearchMerger.MAX_PAGES) {
+                return null;
+            }
+            return new int[] {first, last};
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     /**
      * 处理书籍详情请求
      * @param parameters 请求参数，包含：
      *                   - book_id：书籍ID（必填）
-     * @return 书籍详情的JSON字符串；若参数无效则返回异常对象
+     * @return 书籍详情对象（由HttpServer按Accept协商序列化格式）；若参数无效则返回参数错误
      */
     public static Object detail(Map<String, List<String>> parameters) {
         // 获取书籍ID并验证
         String bookId = getParameter(parameters, "book_id");
-        Exception paramError = checkParamEmpty(bookId, "book_id");
+        ApiError paramError = checkParamEmpty(bookId, "book_id");
         if (paramError != null) {
             return paramError;
         }
@@ -107,41 +179,74 @@ public class DragonController {
         }*/
         // - book_type：书籍类型（可选，默认0；0-普通书，1-有声书）
         
-        // 调用服务层获取详情并返回JSON结果
-        return JsonUtils.toJson(DragonService.getDetail(bookId));
+        // 调用服务层获取详情（优先使用磁盘缓存；上游结果同时更新本地索引）并返回结果
+        return DiskCache.getOrLoad("/detail", bookId, () -> {
+            Object detail = DragonService.getDetail(bookId);
+            LocalSearchIndex.submit("/detail", detail);
+            return detail;
+        });
     }
 
     /**
      * 处理书籍目录请求
+     * 不带分页参数时返回完整目录；带分页参数时返回结构相同但只包含部分章节的目录
      * @param parameters 请求参数，包含：
      *                   - book_id：书籍ID（必填）
-     * @return 书籍目录的JSON字符串；若参数无效则返回异常对象
+     *                   - limit：每页章节数（可选，分页模式）
+     *                   - cursor：上一页返回的nextCursor（可选，分页模式，在目录快照有效期内不重复请求上游）
+     *                   - since：客户端已知的最后章节ID（可选，增量模式，只返回其后新增的章节）
+     *                   - version：客户端已知的目录版本（可选，与当前版本一致时返回空列表）
+     * @return 书籍目录对象（由HttpServer按Accept协商序列化格式）；若参数无效则返回参数错误
      */
     public static Object catalog(Map<String, List<String>> parameters) {
         String bookId = getParameter(parameters, "book_id");
-        Exception paramError = checkParamEmpty(bookId, "book_id");
+        ApiError paramError = checkParamEmpty(bookId, "book_id");
         if (paramError != null) {
             return paramError;
         }
 
-        return JsonUtils.toJson(DragonService.getCatalog(bookId));
+        String cursor = getParameter(parameters, "cursor");
+        String since = getParameter(parameters, "since");
+        String version = getParameter(parameters, "version");
+        int limit = getIntParameter(parameters, "limit", 0);
+
+        // 完整目录模式（优先使用磁盘缓存；请求上游时同时刷新目录索引，供后续分页/增量请求使用）
+        if (cursor == null && since == null && version == null && limit <= 0) {
+            return DiskCache.getOrLoad("/catalog", bookId, () -> {
+                Object catalog = DragonService.getCatalog(bookId);
+                CatalogIndex.update(bookId, catalog);
+                return catalog;
+            });
+        }
+
+        // 游标翻页优先使用目录快照；增量检查及快照失效时重新请求上游
+        CatalogIndex.Snapshot snapshot = since == null && version == null ? CatalogIndex.getFresh(bookId) : null;
+        if (snapshot == null) {
+            Object catalog = DragonService.getCatalog(bookId);
+            snapshot = CatalogIndex.update(bookId, catalog);
+            if (snapshot == null) {
+                return catalog;
+            }
+        }
+        String afterItemId = since != null ? since : cursor;
+        return CatalogIndex.page(bookId, snapshot, afterItemId, version, limit);
     }
 
     /**
      * 处理书籍内容请求
      * @param parameters 请求参数，包含：
      *                   - item_id：章节ID（必填）
-     * @return 章节内容的JSON字符串；若参数无效则返回异常对象
+     * @return 章节内容对象（由HttpServer按Accept协商序列化格式）；若参数无效则返回参数错误
      */
     public static Object content(Map<String, List<String>> parameters) {
         String itemId = getParameter(parameters, "item_id");
-        Exception paramError = checkParamEmpty(itemId, "item_id");
+        ApiError paramError = checkParamEmpty(itemId, "item_id");
         if (paramError != null) {
             return paramError;
         }
 
         Object content = DragonService.getContent(itemId);
-        return JsonUtils.toJson(content);
+        return content;
     }
 
     /**
@@ -149,12 +254,12 @@ public class DragonController {
      * @param parameters 请求参数，包含：
      *                   - book_id：书籍ID（必填）
      *                   - item_id：章节ID（必填）
-     * @return 有声书播放地址的JSON字符串；若参数无效则返回异常对象
+     * @return 有声书播放地址对象（由HttpServer按Accept协商序列化格式）；若参数无效则返回参数错误
      */
     public static Object audioPlayURL(Map<String, List<String>> parameters) {
         // 验证书籍ID
         String bookId = getParameter(parameters, "book_id");
-        Exception paramError = checkParamEmpty(bookId, "book_id");
+        ApiError paramError = checkParamEmpty(bookId, "book_id");
         if (paramError != null) {
             return paramError;
         }
@@ -166,35 +271,57 @@ public class DragonController {
             return paramError;
         }
 
-        return JsonUtils.toJson(DragonService.getAudioPlayURL(bookId, itemId));
+        return DragonService.getAudioPlayURL(bookId, itemId);
     }
 
     /**
      * 处理书架信息请求
-     * @param parameters 无实际参数（预留）
-     * @return 书架信息的JSON字符串
+     * 不带since参数时返回完整书架；带since参数时只返回该同步令牌之后有变化的书籍
+     * @param parameters 请求参数，包含：
+     *                   - since：上次响应中的syncToken（可选，增量模式；为空时返回完整书架及首个令牌）
+     * @return 书架信息对象（由HttpServer按Accept协商序列化格式）
      */
     public static Object bookshelf(Map<String, List<String>> parameters) {
         Object result = DragonService.getBookShelfInfo();
-        return JsonUtils.toJson(result);
+        LocalSearchIndex.submit("/bookshelf", result);
+        String since = getParameter(parameters, "since");
+        if (since == null) {
+            return result;
+        }
+
+        Map<Long, BookshelfEntry> shelf = BookshelfEntry.parse(result);
+        if (shelf == null) {
+            return result;
+        }
+        return BookshelfVersions.sync(shelf, since);
+    }
+
+    /**
+     * 处理书架变化订阅请求（Server-Sent Events）
+     * 推送书籍加入/移出书架及最新章节变化，所有订阅者共享同一个后台书架轮询
+     * @param parameters 无实际参数（预留）
+     * @return 事件流
+     */
+    public static Object bookshelfEvents(Map<String, List<String>> parameters) {
+        return BookshelfWatcher.subscribe();
     }
 
     /**
      * 处理书城信息请求
      * @param parameters 书城请求参数（具体参数由服务层定义）
-     * @return 书城信息的JSON字符串
+     * @return 书城信息对象（由HttpServer按Accept协商序列化格式）
      */
     public static Object bookMall(Map<String, List<String>> parameters) {
-        return JsonUtils.toJson(DragonService.bookMall(parameters));
+        return DragonService.bookMall(parameters);
     }
 
     /**
      * 处理新分类信息请求
      * @param parameters 分类请求参数（具体参数由服务层定义）
-     * @return 分类信息的JSON字符串
+     * @return 分类信息对象（由HttpServer按Accept协商序列化格式）
      */
     public static Object newCategory(Map<String, List<String>> parameters) {
-        return JsonUtils.toJson(DragonService.newCategory(parameters));
+        return DragonService.newCategory(parameters);
     }
 
     /**
@@ -6,6 +6,16 @@ import com.xxhy.fqhelper.utils.LogUtils;
 import com.xxhy.fqhelper.xposed.global.DragonGlobals;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.joor.Reflect;
 
 /**
@@ -47,6 +57,34 @@ public class DragonService {
 
   // 字段值常量
   private static final long TONE_ID = 80L; // 多角色对话升级版
+  // 搜索每页数据量（由上游按offset分页，不可调整）
+  static final int SEARCH_PAGE_SIZE = 10;
+  // 搜索对应的上游方法名
+  private static final String SEARCH_METHOD = "h0";
+
+  // 上游调用相关常量
+  // 无请求上下文（如后台任务）时的默认超时时间
+  private static final long DEFAULT_RPC_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(15);
+  // 熔断器后台探测的超时时间
+  private static final long PROBE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+  // 等待期间检查客户端是否断开的间隔
+  private static final long DISCONNECT_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+  // 超时计为上游失败所需的最短等待时间：截止时间由客户端决定，等待不足该时长的超时不能说明上游异常
+  static final long MIN_UPSTREAM_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  // RPC线程池：上游调用在此执行，使等待方可以按截止时间放弃并中断调用
+  private static final ThreadPoolExecutor RPC_EXECUTOR =
+      (ThreadPoolExecutor) Executors.newCachedThreadPool(
+          new ThreadFactory() {
+            private final AtomicInteger index = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+              Thread thread = new Thread(r, "fqhelper-rpc-" + index.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
 
   // ============================= 核心业务方法 =============================
 
@@ -55,7 +93,7 @@ public class DragonService {
    *
    * @param keyword 搜索关键词
    * @param page 页码（从1开始）
-   * @return 搜索结果（Observable的阻塞结果）或异常对象
+   * @return 搜索结果（Observable的阻塞结果）或错误对象（ApiError）
    */
   public static Object search(String keyword, int page) {
     try {
@@ -89,7 +127,7 @@ public class DragonService {
         loginStatus = 1;
       }
 
-      int pageSize = 10; // 每页数据量
+      int pageSize = SEARCH_PAGE_SIZE; // 每页数据量
       // 设置其他搜索参数
       Reflect.on(searchRequest)
           .set("searchSourceId", "clks###")
@@ -100,10 +138,10 @@ public class DragonService {
           .set("passback", String.valueOf((page - 1) * pageSize)); // 新版中int转为String
 
       // 调用搜索接口
-      return callFunction(CLASS_R63_A, searchRequest, "h0");
+      return callFunction(CLASS_R63_A, searchRequest, SEARCH_METHOD);
     } catch (Throwable t) {
       LogUtils.logE("[DragonService.search] 搜索书籍失败，关键词：" + keyword + "，页码：" + page, t);
-      return t;
+      return ApiError.fromThrowable(t);
     }
   }
 
@@ -111,24 +149,33 @@ public class DragonService {
    * 搜索书籍（默认第一页）
    *
    * @param keyword 搜索关键词
-   * @return 搜索结果（Observable的阻塞结果）或异常对象
+   * @return 搜索结果（Observable的阻塞结果）或错误对象（ApiError）
    */
   public static Object search(String keyword) {
     return search(keyword, 1);
   }
 
+  /**
+   * 判断搜索上游方法是否有富余的并发许可（预取前检查，上游繁忙时把许可留给前台请求）
+   *
+   * @param reserve 为前台请求保留的许可数
+   * @return 是否有富余
+   */
+  static boolean searchHasHeadroom(int reserve) {
+    return AdaptiveLimiter.forTarget(CLASS_R63_A + "#" + SEARCH_METHOD).hasHeadroom(reserve);
+  }
+
   /**
    * 获取书籍详情
    *
    * @param bookId 书籍ID（字符串形式的数字）
-   * @return 书籍详情结果或异常对象
+   * @return 书籍详情结果或错误对象（ApiError）
    */
   public static Object getDetail(String bookId) {
     // 参数验证
     if (!isValidNumericId(bookId)) {
-      IllegalArgumentException e = new IllegalArgumentException("无效的bookId：" + bookId);
-      LogUtils.logE("[DragonService.getDetail] 书籍ID无效：" + bookId, e);
-      return e;
+      LogUtils.logI("[DragonService.getDetail] 书籍ID无效：" + bookId);
+      return ApiError.badRequest("无效的bookId：" + bookId);
     }
 
     try {
@@ -142,7 +189,7 @@ public class DragonService {
       return callFunction(CLASS_R63_A, detailRequest, "h");
     } catch (Throwable t) {
       LogUtils.logE("[DragonService.getDetail] 获取书籍详情失败，bookId：" + bookId, t);
-      return t;
+      return ApiError.fromThrowable(t);
     }
   }
 
@@ -151,15 +198,14 @@ public class DragonService {
    *
    * @param bookId 书籍ID（字符串形式的数字）
    * @param itemId 章节/条目ID（字符串形式的数字）
-   * @return 音频播放地址结果或异常对象
+   * @return 音频播放地址结果或错误对象（ApiError）
    */
   public static Object getAudioPlayURL(String bookId, String itemId) {
     // 参数验证
     if (!isValidNumericId(bookId) || !isValidNumericId(itemId)) {
-      IllegalArgumentException e = new IllegalArgumentException("无效的bookId或itemId");
-      LogUtils.logE(
-          "[DragonService.getAudioPlayURL] 书籍ID或条目ID无效：bookId=" + bookId + ", itemId=" + itemId, e);
-      return e;
+      LogUtils.logI(
+          "[DragonService.getAudioPlayURL] 书籍ID或条目ID无效：bookId=" + bookId + ", itemId=" + itemId);
+      return ApiError.badRequest("无效的bookId或itemId");
     }
 
     try {
@@ -194,7 +240,7 @@ public class DragonService {
     } catch (Throwable t) {
       LogUtils.logE(
           "[DragonService.getAudioPlayURL] 获取音频播放地址失败，bookId=" + bookId + ", itemId=" + itemId, t);
-      return t;
+      return ApiError.fromThrowable(t);
     }
   }
 
@@ -202,14 +248,13 @@ public class DragonService {
    * 获取书籍目录
    *
    * @param bookId 书籍ID（字符串形式的数字）
-   * @return 书籍目录结果或异常对象
+   * @return 书籍目录结果或错误对象（ApiError）
    */
   public static Object getCatalog(String bookId) {
     // 参数验证
     if (!isValidNumericId(bookId)) {
-      IllegalArgumentException e = new IllegalArgumentException("无效的bookId：" + bookId);
-      LogUtils.logE("[DragonService.getCatalog] 书籍ID无效：" + bookId, e);
-      return e;
+      LogUtils.logI("[DragonService.getCatalog] 书籍ID无效：" + bookId);
+      return ApiError.badRequest("无效的bookId：" + bookId);
     }
 
     try {
@@ -223,7 +268,7 @@ public class DragonService {
       return callFunction(CLASS_R63_A, directoryRequest, "K");
     } catch (Throwable t) {
       LogUtils.logE("[DragonService.getCatalog] 获取书籍目录失败，bookId：" + bookId, t);
-      return t;
+      return ApiError.fromThrowable(t);
     }
   }
 
@@ -231,7 +276,7 @@ public class DragonService {
    * 获取书籍内容（包含解密逻辑）
    *
    * @param itemId 章节/条目ID
-   * @return 解密后的书籍内容结果或异常对象
+   * @return 解密后的书籍内容结果或错误对象（ApiError）
    */
   public static Object getContent(String itemId) {
     try {
@@ -243,6 +288,9 @@ public class DragonService {
 
       // 调用内容接口获取原始数据
       Object itemObject = callFunction(CLASS_R63_D, fullRequest, "k");
+      if (itemObject instanceof ApiError || itemObject instanceof SerializedJson) {
+        return itemObject;
+      }
 
       // 解密内容字段
       try {
@@ -255,14 +303,14 @@ public class DragonService {
       return itemObject;
     } catch (Throwable t) {
       LogUtils.logE("[DragonService.getContent] 获取书籍内容失败，itemId：" + itemId, t);
-      return t;
+      return ApiError.fromThrowable(t);
     }
   }
 
   /**
    * 获取书架信息
    *
-   * @return 书架信息结果或异常对象
+   * @return 书架信息结果或错误对象（ApiError）
    */
   public static Object getBookShelfInfo() {
     try {
@@ -272,7 +320,7 @@ public class DragonService {
       return callFunction(CLASS_R63_A, shelfRequest, "z");
     } catch (Throwable t) {
       LogUtils.logE("[DragonService.getBookShelfInfo] 获取书架信息失败", t);
-      return t;
+      return ApiError.fromThrowable(t);
     }
   }
 
@@ -280,7 +328,7 @@ public class DragonService {
    * 获取书城信息
    *
    * @param parameters 请求参数映射（键为字段名，值为参数值）
-   * @return 书城信息结果或异常对象
+   * @return 书城信息结果或错误对象（ApiError）
    */
   public static Object bookMall(Map<String, ?> parameters) {
     try {
@@ -294,7 +342,7 @@ public class DragonService {
       return callFunction(CLASS_R63_A, mallRequest, "j");
     } catch (Throwable t) {
       LogUtils.logE("[DragonService.bookMall] 获取书城信息失败", t);
-      return t;
+      return ApiError.fromThrowable(t);
     }
   }
 
@@ -302,7 +350,7 @@ public class DragonService {
    * 获取新分类信息
    *
    * @param parameters 请求参数映射（键为字段名，值为参数值）
-   * @return 新分类信息结果或异常对象
+   * @return 新分类信息结果或错误对象（ApiError）
    */
   public static Object newCategory(Map<String, ?> parameters) {
     try {
@@ -316,7 +364,7 @@ public class DragonService {
       return callFunction(CLASS_R63_A, categoryRequest, "U");
     } catch (Throwable t) {
       LogUtils.logE("[DragonService.newCategory] 获取新分类信息失败", t);
-      return t;
+      return ApiError.fromThrowable(t);
     }
   }
 
@@ -359,27 +407,254 @@ public class DragonService {
   /**
    * 调用目标类的静态方法并阻塞获取第一个结果
    *
+   * <p>调用在RPC线程池中执行，当前线程按请求截止时间等待：超时或客户端断开时取消调用（中断blockingFirst，
+   * 同时释放上游订阅）；同一上游方法连续失败后熔断，熔断期间直接返回错误，由后台探测恢复
+   *
+   * <p>调用前经过{@link AdaptiveLimiter}按上游方法的自适应并发上限放行，超出上限时排队或直接返回错误；
+   * 许可随调用交给RPC线程，在上游调用真正结束时释放（等待方放弃后被取消的调用仍在收尾时继续占用许可）
+   *
+   * <p>录制模式下每次调用的请求、响应和耗时写入捕获文件；回放模式下不调用上游，由{@link RpcCapture}按捕获文件返回
+   *
    * @param className 目标类名
    * @param param 方法参数
    * @param methodName 方法名
-   * @return 方法返回的结果（Observable.blockingFirst()）或异常对象
+   * @return 方法返回的结果（Observable.blockingFirst()）或错误对象（ApiError）
    */
   private static Object callFunction(String className, Object param, String methodName) {
+    String target = className + "#" + methodName;
+    RequestContext context = RequestContext.current();
+    long deadlineNanos =
+        context != null ? context.getDeadlineNanos() : System.nanoTime() + DEFAULT_RPC_TIMEOUT_NANOS;
+    String captureMode = RpcCapture.mode();
+    boolean replaying = RpcCapture.MODE_REPLAY.equals(captureMode);
+
+    CircuitBreaker breaker = CircuitBreaker.forTarget(target);
+    if (!replaying && !breaker.allowRequest()) {
+      ServerStats.recordUpstreamRejected(target);
+      return ApiError.of(ApiError.Code.UPSTREAM_UNAVAILABLE, "上游方法熔断中，请稍后重试：" + target);
+    }
+
+    // 自适应并发限制：超出上游当前可承受的并发时排队，排队已满或等待超时则直接返回
+    AdaptiveLimiter limiter = AdaptiveLimiter.forTarget(target);
     try {
-      // 调用静态方法获取Observable
-      Object observable =
-          Reflect.onClass(className, DragonGlobals.getDragonClassLoader())
-              .call(methodName, param)
-              .get();
-      // 阻塞获取第一个结果
-      return Reflect.on(observable).call("blockingFirst").get();
+      if (!limiter.acquire(deadlineNanos, context)) {
+        ServerStats.recordUpstreamRejected(target);
+        return ApiError.of(ApiError.Code.UPSTREAM_UNAVAILABLE, "上游方法并发已满，请稍后重试：" + target);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return ApiError.of(ApiError.Code.INTERNAL_ERROR, "请求处理被中断");
+    }
+
+    long startNanos = System.nanoTime();
+    Object result = null;
+    try {
+      if (replaying) {
+        // 回放模式：不调用上游，从捕获文件中取出响应
+        result = RpcCapture.replay(target, param, deadlineNanos, context);
+      } else {
+        result =
+            invokeUpstream(
+                target, className, param, methodName, breaker, deadlineNanos, context,
+                RpcCapture.MODE_RECORD.equals(captureMode), limiter.handOff());
+      }
+      return result;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      result = ApiError.of(ApiError.Code.INTERNAL_ERROR, "请求处理被中断");
+      return result;
+    } finally {
+      long rttNanos = System.nanoTime() - startNanos;
+      AdaptiveLimiter.Outcome outcome = limiterOutcome(result, rttNanos);
+      if (replaying) {
+        // 回放在当前线程进行，直接释放许可；上游调用的许可由RPC线程释放
+        limiter.release(rttNanos, outcome);
+      }
+      ServerStats.recordUpstream(target, rttNanos, outcome);
+    }
+  }
+
+  /**
+   * 在RPC线程池中调用上游方法并按截止时间等待结果，更新熔断器状态
+   *
+   * <p>截止时间已过时不发起调用；只有上游抛出异常，或等待超过{@link #MIN_UPSTREAM_TIMEOUT_NANOS}仍未返回时才计入熔断器，
+   * 客户端指定的较短截止时间不会使上游方法熔断
+   *
+   * @param target 调用目标（类名#方法名）
+   * @param className 目标类名
+   * @param param 方法参数
+   * @param methodName 方法名
+   * @param breaker 上游方法对应的熔断器
+   * @param deadlineNanos 截止时间（System.nanoTime()基准）
+   * @param context 请求上下文（可为null）
+   * @param recording 是否录制本次调用
+   * @param permit 并发许可（由RPC线程在调用结束时释放；调用未发出时在返回前释放）
+   * @return 方法返回的结果或错误对象（ApiError）
+   */
+  private static Object invokeUpstream(
+      String target,
+      String className,
+      Object param,
+      String methodName,
+      CircuitBreaker breaker,
+      long deadlineNanos,
+      RequestContext context,
+      boolean recording,
+      AdaptiveLimiter.Permit permit) {
+    long startedAtMillis = System.currentTimeMillis();
+    long startNanos = System.nanoTime();
+    Callable<Object> call = () -> invokeBlocking(className, param, methodName);
+    // 等待方对限制器的判定：正常取得结果时为null（以RPC线程的调用结果为准）；
+    // 截止时间由客户端决定，放弃等待默认不视为过载
+    AdaptiveLimiter.Outcome verdict = AdaptiveLimiter.Outcome.IGNORED;
+    try {
+      if (deadlineNanos - startNanos <= 0) {
+        // 截止时间已过（如排队耗尽了剩余时间），不再发起注定被取消的调用，也不计入上游失败
+        return ApiError.of(ApiError.Code.UPSTREAM_TIMEOUT, "请求已超时，未发起上游调用：" + target);
+      }
+      Future<Object> future = RPC_EXECUTOR.submit(() -> permit.run(call));
+      Object result = awaitResult(future, deadlineNanos, context);
+      verdict = null;
+      breaker.onSuccess();
+      if (recording) {
+        RpcCapture.record(target, param, result, startedAtMillis, System.nanoTime() - startNanos);
+      }
+      return result;
+    } catch (TimeoutException e) {
+      // 等待超过服务端最短时长仍未返回才视为上游异常；更短的截止时间由客户端选择，不影响熔断器
+      long waitedNanos = System.nanoTime() - startNanos;
+      boolean upstreamSlow = waitedNanos >= MIN_UPSTREAM_TIMEOUT_NANOS;
+      if (upstreamSlow) {
+        verdict = AdaptiveLimiter.Outcome.DROPPED;
+        breaker.onFailure(() -> invokeWithTimeout(call, PROBE_TIMEOUT_NANOS));
+      }
+      LogUtils.logI(
+          "[DragonService.callFunction] 上游调用超时：" + target + "，已等待"
+              + TimeUnit.NANOSECONDS.toMillis(waitedNanos) + "ms");
+      ApiError error = ApiError.fromThrowable(e);
+      // 客户端截止时间导致的超时不录制，否则回放时会对上游本可正常返回的请求一直返回超时
+      if (recording && upstreamSlow) {
+        RpcCapture.record(target, param, error, startedAtMillis, waitedNanos);
+      }
+      return error;
+    } catch (CancellationException e) {
+      // 客户端主动断开，不计入上游失败
+      LogUtils.logI("[DragonService.callFunction] 客户端已断开，取消调用：" + target);
+      return ApiError.fromThrowable(e);
+    } catch (InterruptedException e) {
+      // 处理线程被中断（如服务停止），不计入上游失败
+      Thread.currentThread().interrupt();
+      return ApiError.of(ApiError.Code.INTERNAL_ERROR, "请求处理被中断");
     } catch (Throwable t) {
+      verdict = AdaptiveLimiter.Outcome.DROPPED;
+      breaker.onFailure(() -> invokeWithTimeout(call, PROBE_TIMEOUT_NANOS));
+      Throwable cause = t instanceof ExecutionException && t.getCause() != null ? t.getCause() : t;
       LogUtils.logE(
-          "[DragonService.callFunction] 调用目标方法失败，类：" + className + "，方法：" + methodName, t);
-      return t;
+          "[DragonService.callFunction] 调用目标方法失败，类：" + className + "，方法：" + methodName, cause);
+      ApiError error = ApiError.fromThrowable(cause);
+      if (recording) {
+        RpcCapture.record(target, param, error, startedAtMillis, System.nanoTime() - startNanos);
+      }
+      return error;
+    } finally {
+      permit.waiterFinished(verdict);
+    }
+  }
+
+  /**
+   * 获取正在执行上游调用的RPC线程数（用于实时统计面板）
+   *
+   * @return 活动线程数
+   */
+  static int activeRpcThreads() {
+    return RPC_EXECUTOR.getActiveCount();
+  }
+
+  /**
+   * 根据调用结果判断对并发限制器的意义：上游失败，以及等待超过{@link #MIN_UPSTREAM_TIMEOUT_NANOS}的超时视为过载信号；
+   * 更短的超时（截止时间由客户端决定或已过期）、客户端断开、中断、回放未命中等与上游容量无关
+   *
+   * @param result 调用结果
+   * @param waitedNanos 等待结果的时长
+   * @return 限制器调用结果
+   */
+  private static AdaptiveLimiter.Outcome limiterOutcome(Object result, long waitedNanos) {
+    if (!(result instanceof ApiError)) {
+      return result != null ? AdaptiveLimiter.Outcome.SUCCESS : AdaptiveLimiter.Outcome.IGNORED;
+    }
+    ApiError.Code code = ((ApiError) result).getCode();
+    if (code == ApiError.Code.UPSTREAM_ERROR
+        || code == ApiError.Code.UPSTREAM_TIMEOUT && waitedNanos >= MIN_UPSTREAM_TIMEOUT_NANOS) {
+      return AdaptiveLimiter.Outcome.DROPPED;
+    }
+    return AdaptiveLimiter.Outcome.IGNORED;
+  }
+
+  /**
+   * 在当前线程直接调用目标方法并阻塞获取第一个结果
+   *
+   * @param className 目标类名
+   * @param param 方法参数
+   * @param methodName 方法名
+   * @return 方法返回的结果
+   */
+  private static Object invokeBlocking(String className, Object param, String methodName) {
+    // 调用静态方法获取Observable
+    Object observable =
+        Reflect.onClass(className, DragonGlobals.getDragonClassLoader())
+            .call(methodName, param)
+            .get();
+    // 阻塞获取第一个结果
+    return Reflect.on(observable).call("blockingFirst").get();
+  }
+
+  /**
+   * 按截止时间等待调用结果，等待期间定期检查客户端是否已断开
+   *
+   * @param future 调用任务
+   * @param deadlineNanos 截止时间（System.nanoTime()基准）
+   * @param context 请求上下文（可为null，此时不检查客户端连接）
+   * @return 调用结果
+   * @throws TimeoutException 超过截止时间（任务已取消）
+   * @throws CancellationException 客户端已断开（任务已取消）
+   * @throws ExecutionException 调用本身抛出异常
+   * @throws InterruptedException 当前线程被中断（任务已取消）
+   */
+  private static Object awaitResult(Future<Object> future, long deadlineNanos, RequestContext context)
+      throws TimeoutException, ExecutionException, InterruptedException {
+    try {
+      while (true) {
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+          throw new TimeoutException("上游调用超时");
+        }
+        try {
+          return future.get(Math.min(remaining, DISCONNECT_CHECK_NANOS), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+          if (context != null && context.isClientGone()) {
+            throw new CancellationException("客户端已断开");
+          }
+        }
+      }
+    } finally {
+      // 超时、断开或中断时取消调用（已完成的任务不受影响）
+      future.cancel(true);
     }
   }
 
+  /**
+   * 在RPC线程池中执行调用并按固定超时等待（用于熔断器后台探测）
+   *
+   * @param call 调用任务
+   * @param timeoutNanos 超时时间（纳秒）
+   * @return 调用结果
+   * @throws Exception 调用失败或超时
+   */
+  private static Object invokeWithTimeout(Callable<Object> call, long timeoutNanos)
+      throws Exception {
+    return awaitResult(RPC_EXECUTOR.submit(call), System.nanoTime() + timeoutNanos, null);
+  }
+
   /**
    * 创建RPC请求对象
    *
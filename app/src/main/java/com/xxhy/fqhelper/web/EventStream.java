@@ -0,0 +1,119 @@
+package com.xxhy.fqhelper.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Server-Sent Events输出流
+ * NanoHTTPD以分块编码发送响应体，每次read()的结果会立即写入Socket：
+ * read()阻塞等待下一条事件，空闲时返回心跳注释，连接断开后由NanoHTTPD关闭本流并取消订阅
+ */
+public class EventStream extends InputStream {
+
+    // 每个订阅者最多积压的事件数，超过后视为慢客户端并断开
+    private static final int MAX_PENDING_EVENTS = 256;
+    // 心跳间隔（秒），同时用于及时发现已断开的客户端
+    private static final long HEARTBEAT_SECONDS = 15;
+    // 心跳注释
+    private static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+    // 流结束标记
+    private static final byte[] END = new byte[0];
+
+    // 待发送的事件
+    private final LinkedBlockingQueue<byte[]> pending = new LinkedBlockingQueue<>(MAX_PENDING_EVENTS);
+    // 关闭回调（取消订阅）
+    private final Consumer<EventStream> onClose;
+    // 正在发送的事件及发送位置
+    private byte[] current;
+    private int position;
+    // 是否已关闭
+    private volatile boolean closed;
+
+    /**
+     * 构造方法
+     * @param reconnectMillis 建议客户端断线重连的间隔（毫秒）
+     * @param onClose 关闭回调
+     */
+    EventStream(long reconnectMillis, Consumer<EventStream> onClose) {
+        this.onClose = onClose;
+        // 第一条数据即发出，客户端可立即确认连接建立
+        this.current = ("retry: " + reconnectMillis + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 推送一条事件
+     * @param id 事件ID
+     * @param event 事件类型
+     * @param data 事件数据（单行JSON）
+     * @return 是否推送成功（流已关闭或积压过多时返回false）
+     */
+    boolean send(long id, String event, String data) {
+        if (closed) {
+            return false;
+        }
+        byte[] bytes = ("id: " + id + "\nevent: " + event + "\ndata: " + data + "\n\n")
+            .getBytes(StandardCharsets.UTF_8);
+        if (!pending.offer(bytes)) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int count = read(single, 0, 1);
+        return count < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (current == null || position >= current.length) {
+            current = nextChunk();
+            position = 0;
+            if (current == END) {
+                return -1;
+            }
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * 等待下一条事件，超时返回心跳
+     */
+    private byte[] nextChunk() throws IOException {
+        if (closed && pending.isEmpty()) {
+            return END;
+        }
+        try {
+            byte[] next = pending.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+            return next != null ? next : HEARTBEAT;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("事件流被中断", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // 唤醒阻塞中的read()
+        pending.clear();
+        pending.offer(END);
+        onClose.accept(this);
+    }
+}
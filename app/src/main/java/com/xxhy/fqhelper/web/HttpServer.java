@@ -2,6 +2,7 @@ package com.xxhy.fqhelper.web;
 
 import android.graphics.Bitmap;
 import android.graphics.Bitmap.CompressFormat;
+import android.net.LocalSocket;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import com.xxhy.fqhelper.constant.SPConstants;
@@ -15,11 +16,25 @@ import fi.iki.elonen.NanoHTTPD.Method;
 import fi.iki.elonen.NanoHTTPD.Response;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 基于NanoHTTPD的HTTP服务器实现类
@@ -31,8 +46,35 @@ public class HttpServer extends NanoHTTPD {
     private static volatile HttpServer INSTANCE;
     // Gson实例，用于JSON序列化/反序列化（线程安全）
     private static final Gson GSON = new Gson();
+    // 4xx错误响应允许客户端缓存的时间（秒）
+    private static final int CLIENT_ERROR_MAX_AGE_SECONDS = 60;
+    // Server-Sent Events的Content-Type
+    private static final String EVENT_STREAM_MIME = "text/event-stream; charset=UTF-8";
     // 路由映射表：URI路径 -> 对应的处理器
     private static final Map<String, RouteHandler> ROUTE_MAP = createRouteMap();
+    // Unix域套接字连接处理线程序号
+    private static final AtomicLong LOCAL_CLIENT_SEQUENCE = new AtomicLong();
+    // 平滑重启时等待旧实例处理中请求完成的最长时间（毫秒），略长于路由默认超时
+    private static final long DRAIN_TIMEOUT_MILLIS = 20_000;
+    // 等待处理中请求完成时的检查间隔（毫秒）
+    private static final long DRAIN_POLL_MILLIS = 50;
+
+    // 配置的TCP端口
+    private final int port;
+    // TCP监听套接字（由ServerSocketFactory创建时记录，平滑重启时单独关闭以停止接受新连接）
+    private volatile ServerSocket serverSocket;
+    // 处理中的请求数（从进入serve到响应发送完毕）
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    // 打开的客户端连接数（TCP和Unix域套接字，每个连接占用一个处理线程）
+    private final AtomicInteger openConnections = new AtomicInteger();
+    // 是否正在排空（排空期间的响应带Connection: close，客户端收到响应后断开，改连新实例）
+    private volatile boolean draining;
+    // Unix域套接字监听器（未配置时为null）
+    private UnixSocketListener unixSocketListener;
+    // 当前监听的Unix域套接字地址（未监听时为空字符串）
+    private String unixSocketAddress = "";
+    // 当前打开的Unix域套接字连接（停止服务时统一关闭）
+    private final Set<LocalSocket> localClients = ConcurrentHashMap.newKeySet();
 
     /**
      * 获取单例实例（线程安全）
@@ -59,6 +101,211 @@ public class HttpServer extends NanoHTTPD {
      */
     private HttpServer(int port) {
         super(port);
+        this.port = port;
+        setServerSocketFactory(() -> {
+            ServerSocket socket = new ServerSocket();
+            serverSocket = socket;
+            return socket;
+        });
+    }
+
+    /**
+     * 按当前配置平滑重启服务器
+     * - 服务已运行且端口、Unix域套接字配置均未变化：不做任何操作
+     * - 服务未运行：按新配置启动
+     * - 只有Unix域套接字配置变化：在当前实例上切换Unix域套接字监听，TCP连接不受影响
+     * - 端口变化：先在新端口启动新实例，旧实例停止接受新连接，处理中的请求在期限内完成后再关闭
+     * @return 重启后的服务器实例（配置未变化时为当前实例）
+     * @throws IOException 新端口绑定失败（此时旧实例继续服务）
+     */
+    public static HttpServer restart() throws IOException {
+        synchronized (HttpServer.class) {
+            SPUtils sp = SPUtils.getInstance(DragonGlobals.getDragonApplication(), SPConstants.SP_NAME);
+            int port = Integer.parseInt(sp.getString(SPConstants.PORT, SPConstants.DEFAULT_PORT));
+            String unixSocket = readUnixSocketConfig();
+
+            HttpServer current = getInstance();
+            if (!current.isAlive()) {
+                if (current.port != port) {
+                    current.stop(); // 释放可能残留的资源
+                    current = new HttpServer(port);
+                    INSTANCE = current;
+                }
+                current.start();
+                return current;
+            }
+            if (current.port == port) {
+                if (!current.unixSocketAddress.equals(unixSocket)) {
+                    current.stopUnixSocketListener();
+                    current.startUnixSocketListener(unixSocket);
+                }
+                return current;
+            }
+
+            HttpServer next = new HttpServer(port);
+            // Unix域套接字地址需先由旧实例释放，已建立的本地连接不受影响
+            String previousUnixSocket = current.unixSocketAddress;
+            current.stopUnixSocketListener();
+            try {
+                next.start();
+            } catch (IOException e) {
+                current.startUnixSocketListener(previousUnixSocket);
+                throw e;
+            }
+            INSTANCE = next;
+            current.drainAndStop();
+            return next;
+        }
+    }
+
+    /**
+     * 启动服务器
+     * 先启动TCP监听，再按配置启动Unix域套接字监听；Unix域套接字启动失败只记录日志，不影响TCP服务
+     * @param timeout Socket读超时（毫秒）
+     * @param daemon 监听线程是否为守护线程
+     * @throws IOException TCP端口绑定失败
+     */
+    @Override
+    public void start(int timeout, boolean daemon) throws IOException {
+        super.start(timeout, daemon);
+        startUnixSocketListener(readUnixSocketConfig());
+    }
+
+    /**
+     * 停止服务器（同时停止Unix域套接字监听并关闭其连接）
+     */
+    @Override
+    public void stop() {
+        stopUnixSocketListener();
+        for (LocalSocket client : localClients) {
+            closeQuietly(client);
+        }
+        super.stop();
+    }
+
+    /**
+     * 获取打开的客户端连接数（每个连接占用一个处理线程，空闲的keep-alive连接也计入）
+     * @return 连接数
+     */
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    /**
+     * 获取处理中的请求数（从进入serve到响应发送完毕）
+     * @return 请求数
+     */
+    public int getActiveRequests() {
+        return activeRequests.get();
+    }
+
+    /**
+     * 读取Unix域套接字地址配置
+     * @return 地址（未配置时为空字符串）
+     */
+    private static String readUnixSocketConfig() {
+        SPUtils sp = SPUtils.getInstance(DragonGlobals.getDragonApplication(), SPConstants.SP_NAME);
+        return sp.getString(SPConstants.UNIX_SOCKET, SPConstants.DEFAULT_UNIX_SOCKET).trim();
+    }
+
+    /**
+     * 启动Unix域套接字监听，失败只记录日志
+     * @param address 监听地址（为空时不启动）
+     */
+    private void startUnixSocketListener(String address) {
+        if (address.isEmpty()) {
+            return;
+        }
+        UnixSocketListener listener = new UnixSocketListener(address, this::handleLocalClient);
+        try {
+            listener.start();
+            unixSocketListener = listener;
+            unixSocketAddress = address;
+        } catch (IOException e) {
+            LogUtils.logE("[HttpServer.startUnixSocketListener] Unix域套接字监听启动失败：" + address, e);
+        }
+    }
+
+    /**
+     * 停止Unix域套接字监听（已建立的连接继续处理）
+     */
+    private void stopUnixSocketListener() {
+        if (unixSocketListener != null) {
+            unixSocketListener.stop();
+            unixSocketListener = null;
+        }
+        unixSocketAddress = "";
+    }
+
+    /**
+     * 排空并停止服务器
+     * 立即关闭TCP监听套接字（不再接受新连接），之后的响应带Connection: close；
+     * 后台等待处理中的请求完成（最长DRAIN_TIMEOUT_MILLIS）后关闭剩余连接
+     */
+    private void drainAndStop() {
+        draining = true;
+        ServerSocket socket = serverSocket;
+        if (socket != null) {
+            closeQuietly(socket);
+        }
+
+        Thread thread = new Thread(() -> {
+            long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+            try {
+                while (activeRequests.get() > 0 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(DRAIN_POLL_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            int remaining = activeRequests.get();
+            stop();
+            LogUtils.logI("[HttpServer.drainAndStop] 旧服务已停止，端口：" + port
+                + (remaining > 0 ? "，超时中断请求数：" + remaining : ""));
+        }, "fqhelper-http-drain");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 处理Unix域套接字连接
+     * 与TCP连接一样，每个连接由独立线程处理，连接上可以连续处理多个请求（keep-alive）
+     * @param client 客户端套接字
+     */
+    private void handleLocalClient(LocalSocket client) {
+        localClients.add(client);
+        Thread thread = new Thread(new LocalClientHandler(client),
+            "NanoHttpd Local Request Processor (#" + LOCAL_CLIENT_SEQUENCE.incrementAndGet() + ")");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 创建客户端连接处理器
+     * 将输入流包装为可回退流并记录Socket，使请求处理过程中可以探测客户端是否已断开
+     * @param finalAccept 客户端Socket
+     * @param inputStream Socket输入流
+     * @return 连接处理器
+     */
+    @Override
+    protected ClientHandler createClientHandler(Socket finalAccept, InputStream inputStream) {
+        PushbackInputStream pushbackStream = new PushbackInputStream(inputStream, 1);
+        return new TrackedClientHandler(new ClientConnection(finalAccept, pushbackStream), pushbackStream, finalAccept);
+    }
+
+    /**
+     * 判断响应是否使用gzip压缩
+     * 事件流不压缩：gzip会缓冲输出，事件无法及时送达客户端；
+     * 已按Accept-Encoding进行zstd/brotli压缩的响应不再重复压缩
+     * @param response 响应
+     * @return 是否使用gzip
+     */
+    @Override
+    protected boolean useGzipWhenAccepted(Response response) {
+        if (EVENT_STREAM_MIME.equals(response.getMimeType()) || response.getHeader("content-encoding") != null) {
+            return false;
+        }
+        return super.useGzipWhenAccepted(response);
     }
 
     /**
@@ -73,20 +320,65 @@ public class HttpServer extends NanoHTTPD {
         map.put("/content", DragonController::content);        // 内容接口
         map.put("/audio", DragonController::audioPlayURL);     // 音频播放地址接口
         map.put("/bookshelf", DragonController::bookshelf);    // 书架接口
+        map.put("/bookshelf/events", DragonController::bookshelfEvents); // 书架变化事件流（SSE）
         map.put("/booksource", DragonController::importBookSource); // 导入书源接口
         map.put("/reading/bookapi/bookmall/cell/change/v1/", DragonController::bookMall); // 书城接口
         map.put("/reading/bookapi/new_category/landing/v/", DragonController::newCategory); // 新分类接口
+        map.put("/stats", params -> ServerStats.snapshot()); // 服务统计接口
         return map;
     }
 
     /**
-     * 处理HTTP请求的核心方法
-     * 解析请求信息，分发到对应路由处理器，构建并返回响应
+     * 处理HTTP请求
+     * 记录处理中的请求数：响应体在发送完毕后由NanoHTTPD关闭，届时计数减一；
+     * 事件流连接不会主动结束，不计入处理中的请求，排空期限到达时随连接一并关闭
      * @param session HTTP会话对象，包含请求信息
      * @return 处理后的HTTP响应
      */
     @Override
     public Response serve(IHTTPSession session) {
+        activeRequests.incrementAndGet();
+        Response response;
+        try {
+            response = handleRequest(session);
+        } catch (RuntimeException | Error e) {
+            activeRequests.decrementAndGet();
+            throw e;
+        }
+
+        if (draining) {
+            response.closeConnection(true);
+        }
+        InputStream data = response.getData();
+        if (data == null || EVENT_STREAM_MIME.equals(response.getMimeType())) {
+            activeRequests.decrementAndGet();
+        } else {
+            response.setData(new FilterInputStream(data) {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (!closed) {
+                            closed = true;
+                            activeRequests.decrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        return response;
+    }
+
+    /**
+     * 处理HTTP请求的核心方法
+     * 解析请求信息，分发到对应路由处理器，构建并返回响应
+     * @param session HTTP会话对象，包含请求信息
+     * @return 处理后的HTTP响应
+     */
+    private Response handleRequest(IHTTPSession session) {
         try {
             String uri = session.getUri();       // 请求URI
             Method method = session.getMethod(); // 请求方法（GET/POST等）
@@ -103,12 +395,18 @@ public class HttpServer extends NanoHTTPD {
                     return createCorsResponse("text/plain", "Hello World!", headers);
                 }
 
-                // 获取请求参数（GET的query参数或POST的表单参数）
-                Map<String, List<String>> params = session.getParameters();
-                // 路由处理并获取返回数据
-                Object returnData = handleRoute(uri, params);
-                // 构建响应并返回
-                return buildResponse(returnData, headers);
+                // 匹配路由，无匹配路由返回404
+                String route = matchRoute(uri);
+                if (route == null) {
+                    return create404Response();
+                }
+                ServerStats.recordRequest(route);
+                long startNanos = System.nanoTime();
+                try {
+                    return handleRoute(session, route, headers);
+                } finally {
+                    ServerStats.recordLatency(route, System.nanoTime() - startNanos);
+                }
             }
 
             // 不支持的请求方法，返回404
@@ -121,48 +419,95 @@ public class HttpServer extends NanoHTTPD {
     }
 
     /**
-     * 根据请求URI匹配对应的路由处理器
+     * 处理已匹配路由的请求：限流、绑定请求上下文、调用路由处理器并构建响应
+     * @param session HTTP会话对象
+     * @param route 匹配到的路由路径
+     * @param headers 请求头
+     * @return 处理后的HTTP响应
+     * @throws IOException 读取请求参数或构建响应时可能抛出IO异常
+     */
+    private Response handleRoute(IHTTPSession session, String route, Map<String, String> headers) throws IOException {
+        // 按客户端+路由限流：超出份额时在该客户端自己的令牌桶上排队，排队过久则返回429
+        RateLimiter.Decision decision =
+            RateLimiter.getInstance().acquire(session.getRemoteIpAddress(), route);
+        if (!decision.allowed) {
+            ServerStats.recordError(route, ApiError.Code.TOO_MANY_REQUESTS);
+            return createTooManyRequestsResponse(decision.retryAfterSeconds, headers);
+        }
+
+        // 绑定请求上下文（截止时间、客户端连接），供上游RPC调用使用
+        RequestContext context = RequestContext.begin(route, headers.get(RequestContext.TIMEOUT_HEADER));
+        try {
+            // 获取请求参数（GET的query参数或POST的表单参数）
+            Map<String, List<String>> params = session.getParameters();
+            // 路由处理并获取返回数据
+            Object returnData = ROUTE_MAP.get(route).handle(params);
+            if (returnData instanceof ApiError) {
+                ServerStats.recordError(route, ((ApiError) returnData).getCode());
+            }
+            // 构建响应并返回（附带请求ID，便于对照日志）
+            long serializeStartNanos = System.nanoTime();
+            Response response = buildResponse(returnData, headers);
+            ServerStats.recordSerialization(System.nanoTime() - serializeStartNanos);
+            response.addHeader("X-Request-Id", context.getRequestId());
+            return response;
+        } finally {
+            context.end();
+        }
+    }
+
+    /**
+     * 根据请求URI匹配对应的路由
      * 匹配规则：URI以路由表中的路径结尾即视为匹配
      * @param uri 请求URI
-     * @param params 请求参数
-     * @return 处理器返回的结果数据（可能为null）
-     */
-    private Object handleRoute(String uri, Map<String, List<String>> params) {
-        for (Map.Entry<String, RouteHandler> entry : ROUTE_MAP.entrySet()) {
-            if (uri.endsWith(entry.getKey())) {
-                // 匹配到路由，调用对应处理器
-                return entry.getValue().handle(params);
+     * @return 匹配到的路由路径（无匹配路由返回null）
+     */
+    private String matchRoute(String uri) {
+        for (String route : ROUTE_MAP.keySet()) {
+            if (uri.endsWith(route)) {
+                return route;
             }
         }
-        // 无匹配路由，返回null（后续会处理为404）
         return null;
     }
 
     /**
      * 根据返回数据类型构建HTTP响应
-     * 支持Bitmap（图片）和普通数据（文本/JSON）
+     * 支持Bitmap（图片）、错误对象、事件流（SSE）、字符串（文本/JSON）和模型对象（按Accept协商为JSON或CBOR）
      * @param returnData 处理器返回的数据
-     * @param headers 请求头（用于处理CORS）
+     * @param headers 请求头（用于内容协商和处理CORS）
      * @return 构建完成的HTTP响应
-     * @throws IOException 处理Bitmap时可能抛出IO异常
+     * @throws IOException 处理Bitmap或序列化时可能抛出IO异常
      */
     private Response buildResponse(Object returnData, Map<String, String> headers) throws IOException {
         if (returnData == null) {
-            return create404Response(); // 无数据返回404
+            // 无数据返回404错误对象
+            returnData = ApiError.of(ApiError.Code.NOT_FOUND, "未找到数据");
         }
 
         Response response;
         if (returnData instanceof Bitmap) {
             // 处理图片类型响应
             response = createBitmapResponse((Bitmap) returnData);
-        } else {
+        } else if (returnData instanceof ApiError) {
+            // 处理错误响应
+            return createApiErrorResponse((ApiError) returnData, headers);
+        } else if (returnData instanceof EventStream) {
+            // 处理事件流响应（分块编码，连接保持到客户端断开）
+            response = newChunkedResponse(Response.Status.OK, EVENT_STREAM_MIME, (EventStream) returnData);
+            response.addHeader("Cache-Control", "no-cache");
+        } else if (returnData instanceof CharSequence) {
             // 处理文本类型响应
             String dataStr = String.valueOf(returnData);
             // 根据内容判断MIME类型（JSON或普通文本）
             String mimeType = isJsonValid(dataStr) 
                 ? "application/json; charset=UTF-8" 
                 : "text/plain; charset=UTF-8";
-            response = newFixedLengthResponse(Response.Status.OK, mimeType, dataStr);
+            response = newEncodedResponse(Response.Status.OK, mimeType, dataStr.getBytes(StandardCharsets.UTF_8), null, headers);
+        } else {
+            // 处理模型对象响应：直接从对象流式序列化为协商后的格式
+            ResponseFormat format = ResponseFormat.negotiate(headers.get("accept"));
+            response = newEncodedResponse(Response.Status.OK, format.getMimeType(), format.encode(returnData), "Accept", headers);
         }
 
         // 添加CORS头信息
@@ -223,18 +568,74 @@ public class HttpServer extends NanoHTTPD {
 
     /**
      * 构建服务器内部错误响应（500）
-     * 将异常信息序列化为JSON返回
+     * 只返回异常信息，不序列化异常堆栈
      * @param t 触发错误的异常
      * @return 500响应
      */
     private Response createErrorResponse(Throwable t) {
+        String message = t.getMessage() != null ? t.getMessage() : t.getClass().getSimpleName();
         return newFixedLengthResponse(
-            Response.Status.INTERNAL_ERROR, 
-            "application/json", 
-            JsonUtils.toJson(t)
+            ApiError.Code.INTERNAL_ERROR, 
+            "application/json; charset=UTF-8", 
+            JsonUtils.toJson(ApiError.of(ApiError.Code.INTERNAL_ERROR, message))
         );
     }
 
+    /**
+     * 构建错误响应
+     * 状态码由错误码决定，响应体按Accept协商为JSON或CBOR；
+     * 参数错误和资源不存在对相同请求结果不变，允许客户端短时间缓存，其余错误（含429、499）不缓存
+     * @param error 错误对象
+     * @param headers 请求头（用于内容协商和处理CORS）
+     * @return 错误响应
+     * @throws IOException 序列化失败
+     */
+    private Response createApiErrorResponse(ApiError error, Map<String, String> headers) throws IOException {
+        ResponseFormat format = ResponseFormat.negotiate(headers.get("accept"));
+        Response response = newEncodedResponse(error.getCode(), format.getMimeType(), format.encode(error), "Accept", headers);
+        response.addHeader("Cache-Control", error.getCode().isCacheable() ? "max-age=" + CLIENT_ERROR_MAX_AGE_SECONDS : "no-store");
+        return addCorsHeaders(response, headers);
+    }
+
+    /**
+     * 构建定长响应，按Accept-Encoding对响应体进行zstd或brotli压缩
+     * 未压缩时仍可能由NanoHTTPD进行gzip压缩，因此始终声明Vary: Accept-Encoding
+     * @param status 响应状态
+     * @param mimeType 内容类型
+     * @param body 响应体
+     * @param vary 响应还依赖的其他请求头（无则为null）
+     * @param headers 请求头（用于内容编码协商）
+     * @return 响应
+     */
+    private Response newEncodedResponse(Response.IStatus status, String mimeType, byte[] body, String vary, Map<String, String> headers) {
+        ContentEncoding encoding = ContentEncoding.negotiate(headers.get("accept-encoding"), body.length);
+        byte[] encoded = encoding.encode(body);
+        Response response;
+        if (encoded != null) {
+            response = newFixedLengthResponse(status, mimeType, new ByteArrayInputStream(encoded), encoded.length);
+            response.addHeader("Content-Encoding", encoding.getToken());
+        } else {
+            response = newFixedLengthResponse(status, mimeType, new ByteArrayInputStream(body), body.length);
+        }
+        response.addHeader("Vary", vary != null ? vary + ", Accept-Encoding" : "Accept-Encoding");
+        return response;
+    }
+
+    /**
+     * 构建限流响应（429）
+     * 通过Retry-After告知客户端多少秒后可重试
+     * @param retryAfterSeconds 建议重试等待秒数
+     * @param headers 请求头（用于处理CORS）
+     * @return 429响应
+     * @throws IOException 序列化失败
+     */
+    private Response createTooManyRequestsResponse(long retryAfterSeconds, Map<String, String> headers) throws IOException {
+        ApiError error = ApiError.of(ApiError.Code.TOO_MANY_REQUESTS, "请求过于频繁，请" + retryAfterSeconds + "秒后重试");
+        Response response = createApiErrorResponse(error, headers);
+        response.addHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        return response;
+    }
+
     /**
      * 为响应添加CORS（跨域资源共享）头信息
      * 允许跨域请求，支持GET和POST方法
@@ -287,13 +688,80 @@ public class HttpServer extends NanoHTTPD {
     }
 
     /**
-     * 重启服务器（先停止再启动）
-     * @throws IOException 服务器启动/停止异常
+     * 记录客户端连接的处理器
+     * 处理线程运行期间将连接绑定到线程，供{@link RequestContext}探测客户端是否断开
      */
-    public void restart() throws IOException {
-        if (isAlive()) {
-            stop(); // 若服务器已启动，先停止
+    private class TrackedClientHandler extends ClientHandler {
+        private final ClientConnection connection;
+
+        TrackedClientHandler(ClientConnection connection, InputStream inputStream, Socket acceptSocket) {
+            super(inputStream, acceptSocket);
+            this.connection = connection;
+        }
+
+        @Override
+        public void run() {
+            openConnections.incrementAndGet();
+            ClientConnection.attach(connection);
+            try {
+                super.run();
+            } finally {
+                ClientConnection.detach();
+                openConnections.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Unix域套接字连接处理器
+     * 逻辑与NanoHTTPD的ClientHandler一致：循环解析并处理请求，直到客户端关闭连接或读超时；
+     * 远端地址固定为回环地址，限流等按本机客户端处理
+     */
+    private class LocalClientHandler implements Runnable {
+        private final LocalSocket socket;
+
+        LocalClientHandler(LocalSocket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            openConnections.incrementAndGet();
+            try {
+                socket.setSoTimeout(SOCKET_READ_TIMEOUT);
+                PushbackInputStream inputStream = new PushbackInputStream(socket.getInputStream(), 1);
+                ClientConnection.attach(new ClientConnection(socket, inputStream));
+                HTTPSession session = new HTTPSession(
+                    getTempFileManagerFactory().create(),
+                    inputStream,
+                    socket.getOutputStream(),
+                    InetAddress.getLoopbackAddress()
+                );
+                while (!socket.isClosed()) {
+                    session.execute();
+                }
+            } catch (SocketException | SocketTimeoutException e) {
+                // 客户端关闭连接（NanoHTTPD以SocketException表示）或读超时，正常结束
+            } catch (Exception e) {
+                LogUtils.logE("[HttpServer.LocalClientHandler] 处理Unix域套接字连接失败", e);
+            } finally {
+                ClientConnection.detach();
+                localClients.remove(socket);
+                closeQuietly(socket);
+                openConnections.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 关闭资源，忽略异常
+     * @param closeable 待关闭的资源
+     */
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // 忽略
         }
-        start(); // 启动服务器
     }
 }
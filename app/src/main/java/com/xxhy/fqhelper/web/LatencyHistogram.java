@@ -0,0 +1,128 @@
+package com.xxhy.fqhelper.web;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁耗时直方图
+ * 耗时按微秒对数分桶：每个2的幂区间再均分为4个子桶（相对误差约12%），记录一次耗时只做一次桶计数原子加一；
+ * 百分位在读取时由桶计数估算。两次快照的差值即这段时间内的耗时分布，用于计算最近一段时间的百分位
+ */
+final class LatencyHistogram {
+
+    // 子桶位数：每个2的幂区间分为2^SUB_BUCKET_BITS个子桶
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // 可区分的最大耗时为2^MAX_EXPONENT微秒（约38小时），更长的耗时计入最后一个桶
+    private static final int MAX_EXPONENT = 37;
+    // 桶数量：小于SUB_BUCKETS微秒的耗时每微秒一个桶，其余按指数和子桶划分
+    static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    // 各桶的计数
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * 记录一次耗时
+     * @param nanos 耗时（纳秒）
+     */
+    void record(long nanos) {
+        buckets.incrementAndGet(bucketOf(TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos))));
+    }
+
+    /**
+     * 复制当前各桶计数（各桶分别读取，与并发记录之间不保证原子性，对估算百分位没有影响）
+     * @return 各桶计数
+     */
+    long[] counts() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * 计算耗时所在的桶
+     * @param micros 耗时（微秒）
+     * @return 桶下标
+     */
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (micros >>> shift) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * 桶的代表耗时（桶区间的中点）
+     * @param bucket 桶下标
+     * @return 耗时（微秒）
+     */
+    private static double midpointMicros(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + subBucket) << shift;
+        return lower + ((1L << shift) - 1) / 2.0;
+    }
+
+    /**
+     * 计算样本总数
+     * @param counts 各桶计数（快照或两次快照的差值）
+     * @return 样本总数
+     */
+    static long total(long[] counts) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * 估算百分位耗时（最近秩法，取所在桶的中点）
+     * @param counts 各桶计数（快照或两次快照的差值）
+     * @param quantile 分位数（0~1）
+     * @return 耗时（毫秒），没有样本时返回0
+     */
+    static double percentileMillis(long[] counts, double quantile) {
+        long total = total(counts);
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return midpointMicros(i) / 1000.0;
+            }
+        }
+        return midpointMicros(counts.length - 1) / 1000.0;
+    }
+
+    /**
+     * 计算两次快照的差值
+     * @param current 当前快照
+     * @param previous 之前的快照（为null时视为全0）
+     * @return 各桶计数差值
+     */
+    static long[] delta(long[] current, long[] previous) {
+        if (previous == null) {
+            return current;
+        }
+        long[] delta = new long[current.length];
+        for (int i = 0; i < current.length; i++) {
+            delta[i] = Math.max(0, current[i] - previous[i]);
+        }
+        return delta;
+    }
+}
@@ -0,0 +1,170 @@
+package com.xxhy.fqhelper.web;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实时统计面板数据
+ * 由界面定时调用{@link #sample()}：每次读取一次{@link ServerStats}中的累计计数和耗时直方图，
+ * 与滑动窗口起点的快照相减得到最近一段时间的请求速率、各路由p50/p99耗时、上游错误率等；
+ * 连接数、线程及排队等瞬时值在采样时直接读取。所有计算都在采样线程上进行，不增加请求处理路径的开销
+ *
+ * <p>非线程安全，每个面板使用一个实例
+ */
+public class LiveStats {
+
+    // 滑动窗口长度：速率和百分位按最近这段时间计算
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+    // 面板最多显示的路由数（按窗口内请求数排序）
+    private static final int MAX_ROUTES = 6;
+
+    // 窗口内的快照（按时间顺序，第一个为窗口起点）
+    private final List<Sample> samples = new ArrayList<>();
+
+    /**
+     * 采样并生成面板文本
+     * @return 多行文本（等宽字体显示）
+     */
+    public String sample() {
+        long now = System.nanoTime();
+        long since = ServerStats.statsSinceNanos();
+        if (!samples.isEmpty() && samples.get(0).since != since) {
+            // 统计已重置，旧快照作废
+            samples.clear();
+        }
+        if (samples.isEmpty()) {
+            // 以统计开始时刻的全0快照作为起点，面板打开后立即有数据
+            samples.add(Sample.empty(since));
+        }
+        Sample current = Sample.take(now, since);
+        samples.add(current);
+        // 保留不晚于窗口起点的最新快照作为基准
+        while (samples.size() > 2 && now - samples.get(1).timeNanos >= WINDOW_NANOS) {
+            samples.remove(0);
+        }
+        return format(samples.get(0), current);
+    }
+
+    /**
+     * 生成面板文本
+     * @param base 窗口起点快照
+     * @param current 当前快照
+     * @return 多行文本
+     */
+    private static String format(Sample base, Sample current) {
+        double seconds = Math.max(1, current.timeNanos - base.timeNanos) / 1e9;
+        StringBuilder text = new StringBuilder();
+
+        HttpServer server = HttpServer.getInstance();
+        if (!server.isAlive()) {
+            text.append("服务未运行\n");
+        }
+        text.append(String.format(Locale.ROOT, "最近%.0f秒  请求 %.1f/s\n",
+            seconds, (current.totalRequests - base.totalRequests) / seconds));
+        text.append(String.format(Locale.ROOT, "连接 %d（处理中 %d）  RPC线程 %d\n",
+            server.getOpenConnections(), server.getActiveRequests(), current.rpcThreads));
+        text.append(String.format(Locale.ROOT, "上游并发 %d/%d  排队 %d\n",
+            current.limiterTotals[0], current.limiterTotals[1], current.limiterTotals[2]));
+
+        long calls = current.upstreamCalls - base.upstreamCalls;
+        long errors = current.upstreamErrors - base.upstreamErrors;
+        long[] upstream = LatencyHistogram.delta(current.upstream, base.upstream);
+        text.append(String.format(Locale.ROOT, "上游 %.1f/s  错误率 %.1f%%  p50 %s  p99 %s\n",
+            calls / seconds, calls > 0 ? errors * 100.0 / calls : 0.0,
+            formatMillis(LatencyHistogram.percentileMillis(upstream, 0.50)),
+            formatMillis(LatencyHistogram.percentileMillis(upstream, 0.99))));
+
+        long[] serialization = LatencyHistogram.delta(current.serialization, base.serialization);
+        text.append(String.format(Locale.ROOT, "序列化 p50 %s  p99 %s\n",
+            formatMillis(LatencyHistogram.percentileMillis(serialization, 0.50)),
+            formatMillis(LatencyHistogram.percentileMillis(serialization, 0.99))));
+        text.append(String.format(Locale.ROOT, "限流 排队 %d  拒绝 %d\n",
+            current.throttle[0] - base.throttle[0], current.throttle[1] - base.throttle[1]));
+
+        List<Map.Entry<String, long[]>> routes = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : current.routes.entrySet()) {
+            long[] delta = LatencyHistogram.delta(entry.getValue(), base.routes.get(entry.getKey()));
+            if (LatencyHistogram.total(delta) > 0) {
+                routes.add(new AbstractMap.SimpleEntry<>(entry.getKey(), delta));
+            }
+        }
+        if (routes.isEmpty()) {
+            text.append("路由 无请求");
+            return text.toString();
+        }
+        Collections.sort(routes, (a, b) -> Long.compare(LatencyHistogram.total(b.getValue()),
+            LatencyHistogram.total(a.getValue())));
+        // 表头的中文在等宽字体中占两列，少补两个空格与路由列对齐
+        text.append(String.format(Locale.ROOT, "%-12s %6s %8s %8s", "路由", "/s", "p50", "p99"));
+        for (Map.Entry<String, long[]> entry : routes.subList(0, Math.min(MAX_ROUTES, routes.size()))) {
+            long[] counts = entry.getValue();
+            text.append(String.format(Locale.ROOT, "\n%-14s %6.1f %8s %8s",
+                entry.getKey(), LatencyHistogram.total(counts) / seconds,
+                formatMillis(LatencyHistogram.percentileMillis(counts, 0.50)),
+                formatMillis(LatencyHistogram.percentileMillis(counts, 0.99))));
+        }
+        return text.toString();
+    }
+
+    /**
+     * 格式化耗时：10毫秒以下保留一位小数
+     */
+    private static String formatMillis(double millis) {
+        return String.format(Locale.ROOT, millis < 10 ? "%.1fms" : "%.0fms", millis);
+    }
+
+    /**
+     * 一次采样的累计计数及瞬时值
+     */
+    private static class Sample {
+        // 采样时间（System.nanoTime()基准）
+        long timeNanos;
+        // 采样时的统计开始时间（用于识别统计重置）
+        long since;
+        long totalRequests;
+        Map<String, long[]> routes = Collections.emptyMap();
+        long[] serialization = new long[LatencyHistogram.BUCKET_COUNT];
+        long[] upstream = new long[LatencyHistogram.BUCKET_COUNT];
+        long upstreamCalls;
+        long upstreamErrors;
+        long[] throttle = new long[2];
+        // 瞬时值：RPC活动线程数；上游进行中调用数、并发上限之和、排队数
+        int rpcThreads;
+        int[] limiterTotals = new int[3];
+
+        /**
+         * 统计开始时刻的全0快照
+         */
+        static Sample empty(long since) {
+            Sample sample = new Sample();
+            sample.timeNanos = since;
+            sample.since = since;
+            return sample;
+        }
+
+        /**
+         * 读取当前的累计计数及瞬时值
+         */
+        static Sample take(long now, long since) {
+            Sample sample = new Sample();
+            sample.timeNanos = now;
+            sample.since = since;
+            sample.totalRequests = ServerStats.totalRequests();
+            sample.routes = ServerStats.routeLatencyCounts();
+            sample.serialization = ServerStats.serializationCounts();
+            long[] callsAndErrors = new long[2];
+            sample.upstream = ServerStats.upstreamCounts(callsAndErrors);
+            sample.upstreamCalls = callsAndErrors[0];
+            sample.upstreamErrors = callsAndErrors[1];
+            sample.throttle = ServerStats.throttleCounts();
+            sample.rpcThreads = DragonService.activeRpcThreads();
+            sample.limiterTotals = AdaptiveLimiter.totals();
+            return sample;
+        }
+    }
+}
@@ -0,0 +1,902 @@
+package com.xxhy.fqhelper.web;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.xxhy.fqhelper.constant.SPConstants;
+import com.xxhy.fqhelper.utils.LogUtils;
+import com.xxhy.fqhelper.utils.SPUtils;
+import com.xxhy.fqhelper.xposed.global.DragonGlobals;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 本地书籍搜索索引
+ * 从经过/detail、/search、/bookshelf的上游结果中提取书籍元数据（书名、原名/别名、作者、主角、标签/分类），
+ * 建立进程内倒排索引：/search?local=1时把本地命中的书籍合并在上游结果之前，local=only时只查本地索引、不请求上游
+ *
+ * <p>分词：按字母数字连续片段切分，片段内每个字符（单字）和相邻两个字符（二元组）各作为一个词项，适合没有空格分隔的中文；
+ * 词项编码为int（二元组为两个UTF-16字符拼接，单字为字符本身），倒排表为有序int数组（文档号）。
+ * 查询时对查询词各二元组的倒排表求交集，再校验字段中是否连续包含查询词并按字段打分
+ *
+ * <p>索引在后台线程中增量更新（同一本书的元数据没有变化时跳过），变化后延时写入压缩快照，进程重启后从快照恢复
+ */
+public class LocalSearchIndex {
+
+    // 最多索引的书籍数，超出后淘汰最久未出现且不在书架上的书籍
+    private static final int MAX_DOCUMENTS = 5000;
+    // 单次查询最多返回的书籍数
+    private static final int MAX_RESULTS = 20;
+    // 待处理的索引任务上限（超出时放弃，不影响请求处理）
+    private static final int MAX_PENDING = 64;
+    // 索引变化后写入快照的延时（秒）
+    private static final long SNAPSHOT_DELAY_SECONDS = 30;
+    // 快照文件名（位于应用数据目录）
+    private static final String SNAPSHOT_FILE = "fqhelper_search.idx";
+    // 快照文件魔数（"FQSI"）及格式版本
+    private static final int SNAPSHOT_MAGIC = 0x46515349;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    // 索引字段：字段序号 -> 来源属性
+    private static final int FIELD_TITLE = 0;
+    private static final String[][] FIELD_SOURCES = {
+        {"bookName"},                                                     // 书名
+        {"originalBookName", "rawBookName", "bookShortName", "aliasName"}, // 原名、别名
+        {"author"},                                                       // 作者
+        {"role"},                                                         // 主角
+        {"tags", "category", "pureCategoryTags"}                          // 标签、分类
+    };
+    // 字段权重（与FIELD_SOURCES对应）
+    private static final int[] FIELD_WEIGHTS = {60, 50, 40, 20, 10};
+    // 完全匹配、前缀匹配、书架上的书籍的额外得分
+    private static final int EXACT_BONUS = 40;
+    private static final int PREFIX_BONUS = 20;
+    private static final int SHELF_BONUS = 15;
+    // 保存的属性（用于构造搜索结果，与书源搜索规则使用的属性一致）
+    private static final String[] STORED_FIELDS = {
+        "bookId", "bookName", "originalBookName", "rawBookName", "bookShortName", "aliasName", "author",
+        "role", "tags", "category", "pureCategoryTags", "thumbUrl", "bookAbstract", "lastChapterTitle",
+        "wordNumber", "score", "creationStatus", "source"
+    };
+    // 多值字段的分隔符（字段文本只保留字母数字，不会与之冲突）
+    private static final char VALUE_SEPARATOR = '\u0000';
+
+    // Gson实例（只用于把上游结果转换为JSON树，线程安全）
+    private static final Gson GSON = new Gson();
+    // 索引线程（索引更新、快照读写都在此线程执行）
+    private static final ScheduledExecutorService WORKER =
+        Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fqhelper-search-index");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    // 读写锁：查询持读锁，更新持写锁
+    private static final ReentrantReadWriteLock LOCK = new ReentrantReadWriteLock();
+    // 倒排表：词项 -> 有序文档号列表
+    private static final HashMap<Integer, Postings> POSTINGS = new HashMap<>();
+    // 书籍ID -> 文档
+    private static final HashMap<Long, Document> BY_BOOK_ID = new HashMap<>();
+    // 文档号 -> 文档（空位为null）
+    private static Document[] documents = new Document[64];
+    // 空闲文档号
+    private static int[] freeIds = new int[16];
+    private static int freeCount;
+    // 下一个未使用过的文档号
+    private static int nextId;
+
+    // 待处理的索引任务数
+    private static final AtomicInteger PENDING = new AtomicInteger();
+    // 是否已安排快照写入
+    private static final AtomicBoolean SNAPSHOT_SCHEDULED = new AtomicBoolean();
+
+    // 统计计数
+    private static final LongAdder UPDATES = new LongAdder();      // 内容有变化的索引更新数
+    private static final LongAdder DROPPED = new LongAdder();      // 因任务过多而放弃的索引任务数
+    private static final LongAdder QUERIES = new LongAdder();      // 查询数
+    private static final LongAdder QUERY_NANOS = new LongAdder();  // 查询总耗时（纳秒）
+
+    static {
+        WORKER.execute(LocalSearchIndex::loadSnapshot);
+    }
+
+    /**
+     * 私有构造方法，禁止实例化（工具类设计）
+     */
+    private LocalSearchIndex() {}
+
+    /**
+     * 提交上游结果，在后台提取其中的书籍元数据并更新索引
+     * @param route 结果来源路由（/detail、/search、/bookshelf）
+     * @param result 上游结果（错误对象及null忽略）
+     */
+    public static void submit(String route, Object result) {
+        if (result == null || result instanceof ApiError) {
+            return;
+        }
+        if (PENDING.incrementAndGet() > MAX_PENDING) {
+            PENDING.decrementAndGet();
+            DROPPED.increment();
+            return;
+        }
+        WORKER.execute(() -> {
+            try {
+                JsonElement root = GSON.toJsonTree(result);
+                if (root.isJsonObject()) {
+                    indexResult(route, root.getAsJsonObject());
+                }
+            } catch (Throwable t) {
+                LogUtils.logE("[LocalSearchIndex.submit] 更新本地索引失败：" + route, t);
+            } finally {
+                PENDING.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * 按来源路由从结果中提取书籍并更新索引
+     * @param route 来源路由
+     * @param root 上游结果的JSON树
+     */
+    private static void indexResult(String route, JsonObject root) {
+        long now = System.currentTimeMillis();
+        LOCK.writeLock().lock();
+        try {
+            switch (route) {
+                case "/detail":
+                    JsonObject data = getObject(root, "data");
+                    if (data != null) {
+                        index(data, null, now);
+                    }
+                    break;
+                case "/search":
+                    for (JsonObject cell : getObjects(root, "searchTabs", "data")) {
+                        JsonElement books = cell.get("bookData");
+                        if (books != null && books.isJsonArray()) {
+                            for (JsonElement book : books.getAsJsonArray()) {
+                                if (book.isJsonObject()) {
+                                    index(book.getAsJsonObject(), null, now);
+                                }
+                            }
+                        }
+                    }
+                    break;
+                case "/bookshelf":
+                    JsonObject shelfData = getObject(root, "data");
+                    JsonElement shelf = shelfData != null ? shelfData.get("bookShelfInfo") : null;
+                    if (shelf == null || !shelf.isJsonArray()) {
+                        break;
+                    }
+                    Set<Long> onShelf = new HashSet<>();
+                    for (JsonElement item : shelf.getAsJsonArray()) {
+                        if (item.isJsonObject()) {
+                            Document document = index(item.getAsJsonObject(), Boolean.TRUE, now);
+                            if (document != null) {
+                                onShelf.add(document.bookId);
+                            }
+                        }
+                    }
+                    // 已移出书架的书籍取消书架加分
+                    for (Document document : BY_BOOK_ID.values()) {
+                        if (document.onShelf && !onShelf.contains(document.bookId)) {
+                            document.onShelf = false;
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+        scheduleSnapshot();
+    }
+
+    /**
+     * 索引一本书（调用方需持有写锁）
+     * 新元数据合并到已保存的属性中（上游不同接口返回的属性不完全相同），索引字段有变化时只增删差异词项
+     * @param book 书籍元数据
+     * @param onShelf 是否在书架上（null表示不变）
+     * @param updatedAt 更新时间（毫秒）
+     * @return 对应的文档（无法解析书籍ID时返回null）
+     */
+    private static Document index(JsonObject book, Boolean onShelf, long updatedAt) {
+        long bookId = parseBookId(book.get("bookId"));
+        if (bookId <= 0) {
+            return null;
+        }
+
+        Document document = BY_BOOK_ID.get(bookId);
+        JsonObject stored = document != null ? document.stored : new JsonObject();
+        boolean changed = mergeStored(stored, book);
+        if (document != null) {
+            document.updatedAt = Math.max(document.updatedAt, updatedAt);
+            if (onShelf != null) {
+                document.onShelf = onShelf;
+            }
+            if (!changed) {
+                return document;
+            }
+        }
+
+        String[] fields = extractFields(stored);
+        int[] terms = tokenize(fields);
+        if (document == null) {
+            if (terms.length == 0) {
+                // 没有可检索的文本（如只有书籍ID的书架条目）
+                return null;
+            }
+            document = new Document(allocateId(), bookId, stored);
+            document.updatedAt = updatedAt;
+            document.onShelf = Boolean.TRUE.equals(onShelf);
+            documents[document.id] = document;
+            BY_BOOK_ID.put(bookId, document);
+        }
+
+        updatePostings(document.id, document.terms, terms);
+        document.fields = fields;
+        document.terms = terms;
+        UPDATES.increment();
+
+        if (BY_BOOK_ID.size() > MAX_DOCUMENTS) {
+            evictOldest();
+        }
+        return document;
+    }
+
+    /**
+     * 把书籍元数据中非空的保存属性合并到已保存属性中
+     * @param stored 已保存属性
+     * @param book 新元数据
+     * @return 是否有变化
+     */
+    private static boolean mergeStored(JsonObject stored, JsonObject book) {
+        boolean changed = false;
+        for (String name : STORED_FIELDS) {
+            JsonElement value = book.get(name);
+            if (value == null || !value.isJsonPrimitive() || value.getAsString().isEmpty()) {
+                continue;
+            }
+            if (!value.equals(stored.get(name))) {
+                stored.add(name, value);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 从已保存属性中提取各索引字段的文本
+     * @param stored 已保存属性
+     * @return 各字段文本（多值以VALUE_SEPARATOR分隔）
+     */
+    private static String[] extractFields(JsonObject stored) {
+        String[] fields = new String[FIELD_SOURCES.length];
+        for (int i = 0; i < FIELD_SOURCES.length; i++) {
+            StringBuilder builder = new StringBuilder();
+            for (String name : FIELD_SOURCES[i]) {
+                JsonElement value = stored.get(name);
+                if (value == null) {
+                    continue;
+                }
+                // 标签、主角等以逗号分隔的多值属性拆开，避免跨值匹配
+                for (String part : value.getAsString().split("[,，、]")) {
+                    String compact = compact(part);
+                    if (!compact.isEmpty()) {
+                        if (builder.length() > 0) {
+                            builder.append(VALUE_SEPARATOR);
+                        }
+                        builder.append(compact);
+                    }
+                }
+            }
+            fields[i] = builder.toString();
+        }
+        return fields;
+    }
+
+    /**
+     * 规范化文本：兼容字符转换（全角转半角等）、转小写，只保留字母和数字
+     * @param text 原始文本
+     * @return 规范化后的文本
+     */
+    static String compact(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        StringBuilder builder = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 对各字段文本分词
+     * @param fields 字段文本
+     * @return 有序去重的词项（单字及二元组）
+     */
+    private static int[] tokenize(String[] fields) {
+        int[] terms = new int[64];
+        int count = 0;
+        for (String field : fields) {
+            for (int i = 0; i < field.length(); i++) {
+                char c = field.charAt(i);
+                if (c == VALUE_SEPARATOR) {
+                    continue;
+                }
+                if (count + 2 > terms.length) {
+                    terms = Arrays.copyOf(terms, terms.length * 2);
+                }
+                terms[count++] = c;
+                if (i + 1 < field.length() && field.charAt(i + 1) != VALUE_SEPARATOR) {
+                    terms[count++] = bigram(c, field.charAt(i + 1));
+                }
+            }
+        }
+        return sortedUnique(terms, count);
+    }
+
+    /**
+     * 查询词的词项：单字查询使用单字词项，否则使用全部二元组
+     * @param query 规范化后的查询词
+     * @return 有序去重的词项
+     */
+    private static int[] queryTerms(String query) {
+        if (query.length() == 1) {
+            return new int[] {query.charAt(0)};
+        }
+        int[] terms = new int[query.length() - 1];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = bigram(query.charAt(i), query.charAt(i + 1));
+        }
+        return sortedUnique(terms, terms.length);
+    }
+
+    private static int bigram(char first, char second) {
+        return (first << 16) | second;
+    }
+
+    private static int[] sortedUnique(int[] values, int count) {
+        Arrays.sort(values, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || values[i] != values[unique - 1]) {
+                values[unique++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, unique);
+    }
+
+    /**
+     * 按新旧词项的差异更新倒排表（两个数组均有序）
+     * @param id 文档号
+     * @param oldTerms 旧词项（新文档为null）
+     * @param newTerms 新词项
+     */
+    private static void updatePostings(int id, int[] oldTerms, int[] newTerms) {
+        int[] previous = oldTerms != null ? oldTerms : new int[0];
+        int i = 0;
+        int j = 0;
+        while (i < previous.length || j < newTerms.length) {
+            if (j >= newTerms.length || (i < previous.length && previous[i] < newTerms[j])) {
+                removePosting(previous[i++], id);
+            } else if (i >= previous.length || newTerms[j] < previous[i]) {
+                POSTINGS.computeIfAbsent(newTerms[j++], k -> new Postings()).add(id);
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+
+    private static void removePosting(int term, int id) {
+        Postings postings = POSTINGS.get(term);
+        if (postings != null) {
+            postings.remove(id);
+            if (postings.size == 0) {
+                POSTINGS.remove(term);
+            }
+        }
+    }
+
+    private static int allocateId() {
+        if (freeCount > 0) {
+            return freeIds[--freeCount];
+        }
+        if (nextId == documents.length) {
+            documents = Arrays.copyOf(documents, documents.length * 2);
+        }
+        return nextId++;
+    }
+
+    /**
+     * 淘汰最久未出现且不在书架上的书籍（调用方需持有写锁）
+     */
+    private static void evictOldest() {
+        Document oldest = null;
+        for (Document document : BY_BOOK_ID.values()) {
+            if (!document.onShelf && (oldest == null || document.updatedAt < oldest.updatedAt)) {
+                oldest = document;
+            }
+        }
+        if (oldest == null) {
+            return;
+        }
+        for (int term : oldest.terms) {
+            removePosting(term, oldest.id);
+        }
+        BY_BOOK_ID.remove(oldest.bookId);
+        documents[oldest.id] = null;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[freeCount++] = oldest.id;
+    }
+
+    /**
+     * 查询本地索引
+     * @param keyword 查询词
+     * @return 命中的书籍属性（按得分从高到低，最多MAX_RESULTS本）
+     */
+    public static List<JsonObject> search(String keyword) {
+        long start = System.nanoTime();
+        String query = compact(keyword);
+        List<JsonObject> books = new ArrayList<>();
+        if (query.isEmpty()) {
+            return books;
+        }
+
+        LOCK.readLock().lock();
+        try {
+            int[] candidates = intersect(queryTerms(query));
+            List<Hit> hits = new ArrayList<>();
+            for (int id : candidates) {
+                Document document = documents[id];
+                int score = score(document, query);
+                if (score > 0) {
+                    hits.add(new Hit(document, score));
+                }
+            }
+            hits.sort((a, b) -> a.score != b.score
+                ? Integer.compare(b.score, a.score)
+                : Long.compare(b.document.updatedAt, a.document.updatedAt));
+            for (int i = 0; i < hits.size() && i < MAX_RESULTS; i++) {
+                books.add(hits.get(i).document.stored.deepCopy());
+            }
+        } finally {
+            LOCK.readLock().unlock();
+        }
+        QUERIES.increment();
+        QUERY_NANOS.add(System.nanoTime() - start);
+        return books;
+    }
+
+    /**
+     * 求各词项倒排表的交集（调用方需持有读锁）
+     * @param terms 查询词项
+     * @return 候选文档号
+     */
+    private static int[] intersect(int[] terms) {
+        Postings[] lists = new Postings[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            lists[i] = POSTINGS.get(terms[i]);
+            if (lists[i] == null) {
+                return new int[0];
+            }
+        }
+        // 从最短的倒排表开始，逐个在其余倒排表中二分查找
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        int[] result = Arrays.copyOf(lists[0].docs, lists[0].size);
+        int count = result.length;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            int kept = 0;
+            for (int k = 0; k < count; k++) {
+                if (Arrays.binarySearch(lists[i].docs, 0, lists[i].size, result[k]) >= 0) {
+                    result[kept++] = result[k];
+                }
+            }
+            count = kept;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * 计算文档得分：查询词需连续出现在某个字段值中，取得分最高的字段
+     * @param document 文档
+     * @param query 规范化后的查询词
+     * @return 得分（不匹配返回0）
+     */
+    private static int score(Document document, String query) {
+        int best = 0;
+        for (int i = 0; i < document.fields.length; i++) {
+            for (String value : document.fields[i].split(String.valueOf(VALUE_SEPARATOR))) {
+                if (!value.contains(query)) {
+                    continue;
+                }
+                int score = FIELD_WEIGHTS[i];
+                if (value.equals(query)) {
+                    score += EXACT_BONUS;
+                } else if (value.startsWith(query) && i == FIELD_TITLE) {
+                    score += PREFIX_BONUS;
+                }
+                best = Math.max(best, score);
+            }
+        }
+        if (best > 0 && document.onShelf) {
+            best += SHELF_BONUS;
+        }
+        return best;
+    }
+
+    /**
+     * 构造只包含本地结果的搜索响应（结构与上游搜索结果一致，书源规则无需修改）
+     * @param keyword 查询词
+     * @param page 页码（本地结果只有一页）
+     * @return 搜索响应
+     */
+    public static JsonObject localResponse(String keyword, int page) {
+        JsonArray cells = new JsonArray();
+        if (page <= 1) {
+            for (JsonObject book : search(keyword)) {
+                cells.add(toCell(book));
+            }
+        }
+        JsonObject tab = new JsonObject();
+        tab.add("data", cells);
+        tab.addProperty("hasMore", false);
+        tab.addProperty("query", keyword);
+        tab.addProperty("title", "本地");
+        JsonArray tabs = new JsonArray();
+        tabs.add(tab);
+
+        JsonObject response = new JsonObject();
+        response.addProperty("code", "SUCCESS");
+        response.addProperty("message", "SUCCESS");
+        response.add("searchTabs", tabs);
+        response.addProperty("selectedTabIdx", 0);
+        return response;
+    }
+
+    /**
+     * 把本地结果合并到上游搜索结果的第一个标签页之前（按书籍ID去重）
+     * 上游失败时只返回本地结果（本地也没有命中时返回上游错误）
+     * @param remote 上游搜索结果（磁盘缓存的已序列化JSON、模型对象或错误对象）
+     * @param keyword 查询词
+     * @return 合并后的搜索响应
+     */
+    public static Object merge(Object remote, String keyword) {
+        List<JsonObject> books = search(keyword);
+        if (books.isEmpty()) {
+            return remote;
+        }
+
+        JsonObject root = toJsonObject(remote);
+        JsonArray tabs = root != null && root.get("searchTabs") != null && root.get("searchTabs").isJsonArray()
+            ? root.getAsJsonArray("searchTabs") : null;
+        if (tabs == null || tabs.size() == 0 || !tabs.get(0).isJsonObject()) {
+            return localResponse(keyword, 1);
+        }
+
+        JsonObject tab = tabs.get(0).getAsJsonObject();
+        Set<String> localIds = new HashSet<>();
+        JsonArray cells = new JsonArray();
+        for (JsonObject book : books) {
+            localIds.add(book.get("bookId").getAsString());
+            cells.add(toCell(book));
+        }
+        JsonElement remoteCells = tab.get("data");
+        if (remoteCells != null && remoteCells.isJsonArray()) {
+            for (JsonElement cell : remoteCells.getAsJsonArray()) {
+                String bookId = SearchMerger.bookIdOf(cell);
+                if (bookId == null || !localIds.contains(bookId)) {
+                    cells.add(cell);
+                }
+            }
+        }
+        tab.add("data", cells);
+        return root;
+    }
+
+    /**
+     * 构造搜索结果单元（与上游SearchOneBook单元的结构一致）
+     */
+    private static JsonObject toCell(JsonObject book) {
+        JsonArray bookData = new JsonArray();
+        bookData.add(book);
+        JsonObject cell = new JsonObject();
+        cell.add("bookData", bookData);
+        cell.add("bookId", book.get("bookId"));
+        cell.addProperty("cellSource", "Local");
+        cell.addProperty("showType", "SearchOneBook");
+        return cell;
+    }
+
+    /**
+     * 把上游结果转换为JSON对象
+     * @param result 上游结果
+     * @return JSON对象（错误对象或无法转换时返回null）
+     */
+    static JsonObject toJsonObject(Object result) {
+        if (result == null || result instanceof ApiError) {
+            return null;
+        }
+        JsonElement element;
+        if (result instanceof SerializedJson) {
+            element = JsonParser.parseReader(new InputStreamReader(
+                new ByteArrayInputStream(((SerializedJson) result).bytes), StandardCharsets.UTF_8));
+        } else {
+            element = GSON.toJsonTree(result);
+        }
+        return element.isJsonObject() ? element.getAsJsonObject() : null;
+    }
+
+    /**
+     * 索引变化后延时写入快照（延时内的多次变化合并为一次写入）
+     */
+    private static void scheduleSnapshot() {
+        if (SNAPSHOT_SCHEDULED.compareAndSet(false, true)) {
+            WORKER.schedule(() -> {
+                SNAPSHOT_SCHEDULED.set(false);
+                saveSnapshot();
+            }, SNAPSHOT_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 是否启用快照（SP配置）
+     */
+    private static boolean isSnapshotEnabled() {
+        SPUtils sp = SPUtils.getInstance(DragonGlobals.getDragonApplication(), SPConstants.SP_NAME);
+        return sp.getBoolean(SPConstants.LOCAL_SEARCH_SNAPSHOT, SPConstants.DEFAULT_LOCAL_SEARCH_SNAPSHOT);
+    }
+
+    private static File snapshotFile() {
+        return new File(DragonGlobals.getDragonApplication().getDataDir(), SNAPSHOT_FILE);
+    }
+
+    /**
+     * 写入快照
+     * 只保存各书籍的属性（gzip压缩），索引在加载时重建；先写临时文件再重命名，避免写入中断导致快照损坏
+     */
+    private static void saveSnapshot() {
+        try {
+            if (!isSnapshotEnabled()) {
+                return;
+            }
+            List<Document> snapshot;
+            List<byte[]> payloads = new ArrayList<>();
+            LOCK.readLock().lock();
+            try {
+                snapshot = new ArrayList<>(BY_BOOK_ID.values());
+                for (Document document : snapshot) {
+                    payloads.add(document.stored.toString().getBytes(StandardCharsets.UTF_8));
+                }
+            } finally {
+                LOCK.readLock().unlock();
+            }
+
+            File file = snapshotFile();
+            File tmp = new File(file.getPath() + ".tmp");
+            try (DataOutputStream output = new DataOutputStream(
+                    new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))) {
+                output.writeInt(SNAPSHOT_MAGIC);
+                output.writeInt(SNAPSHOT_VERSION);
+                output.writeInt(snapshot.size());
+                for (int i = 0; i < snapshot.size(); i++) {
+                    Document document = snapshot.get(i);
+                    output.writeLong(document.updatedAt);
+                    output.writeBoolean(document.onShelf);
+                    output.writeInt(payloads.get(i).length);
+                    output.write(payloads.get(i));
+                }
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("重命名快照文件失败");
+            }
+        } catch (Throwable t) {
+            LogUtils.logE("[LocalSearchIndex.saveSnapshot] 写入本地索引快照失败", t);
+        }
+    }
+
+    /**
+     * 加载快照并重建索引（在索引线程中首先执行，先于所有索引任务）
+     */
+    private static void loadSnapshot() {
+        try {
+            File file = snapshotFile();
+            if (!isSnapshotEnabled()) {
+                file.delete();
+                return;
+            }
+            if (!file.isFile()) {
+                return;
+            }
+            try (DataInputStream input = new DataInputStream(
+                    new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+                if (input.readInt() != SNAPSHOT_MAGIC || input.readInt() != SNAPSHOT_VERSION) {
+                    file.delete();
+                    return;
+                }
+                int count = input.readInt();
+                LOCK.writeLock().lock();
+                try {
+                    for (int i = 0; i < count; i++) {
+                        long updatedAt = input.readLong();
+                        boolean onShelf = input.readBoolean();
+                        byte[] payload = new byte[input.readInt()];
+                        input.readFully(payload);
+                        JsonObject stored = JsonParser.parseString(new String(payload, StandardCharsets.UTF_8)).getAsJsonObject();
+                        index(stored, onShelf, updatedAt);
+                    }
+                } finally {
+                    LOCK.writeLock().unlock();
+                }
+            }
+            LogUtils.logI("[LocalSearchIndex.loadSnapshot] 已从快照恢复本地索引，书籍数：" + BY_BOOK_ID.size());
+        } catch (Throwable t) {
+            LogUtils.logE("[LocalSearchIndex.loadSnapshot] 读取本地索引快照失败", t);
+        }
+    }
+
+    private static JsonObject getObject(JsonObject parent, String name) {
+        JsonElement element = parent.get(name);
+        return element != null && element.isJsonObject() ? element.getAsJsonObject() : null;
+    }
+
+    /**
+     * 获取两层数组中的对象（如searchTabs[*].data[*]）
+     */
+    private static List<JsonObject> getObjects(JsonObject root, String outer, String inner) {
+        List<JsonObject> objects = new ArrayList<>();
+        JsonElement outerArray = root.get(outer);
+        if (outerArray == null || !outerArray.isJsonArray()) {
+            return objects;
+        }
+        for (JsonElement element : outerArray.getAsJsonArray()) {
+            JsonElement innerArray = element.isJsonObject() ? element.getAsJsonObject().get(inner) : null;
+            if (innerArray == null || !innerArray.isJsonArray()) {
+                continue;
+            }
+            for (JsonElement item : innerArray.getAsJsonArray()) {
+                if (item.isJsonObject()) {
+                    objects.add(item.getAsJsonObject());
+                }
+            }
+        }
+        return objects;
+    }
+
+    private static long parseBookId(JsonElement bookId) {
+        if (bookId == null || !bookId.isJsonPrimitive()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(bookId.getAsString());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 获取索引统计（用于/stats接口）
+     * @return 统计信息
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        LOCK.readLock().lock();
+        try {
+            result.put("documents", BY_BOOK_ID.size());
+            result.put("terms", POSTINGS.size());
+        } finally {
+            LOCK.readLock().unlock();
+        }
+        long queries = QUERIES.sum();
+        result.put("updates", UPDATES.sum());
+        result.put("dropped", DROPPED.sum());
+        result.put("pending", PENDING.get());
+        result.put("queries", queries);
+        result.put("avgQueryMicros", queries == 0 ? 0 : QUERY_NANOS.sum() / queries / 1000);
+        return result;
+    }
+
+    /**
+     * 倒排表（有序文档号数组）
+     */
+    private static class Postings {
+        int[] docs = new int[4];
+        int size;
+
+        void add(int id) {
+            int index = Arrays.binarySearch(docs, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            System.arraycopy(docs, index, docs, index + 1, size - index);
+            docs[index] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int index = Arrays.binarySearch(docs, 0, size, id);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(docs, index + 1, docs, index, size - index - 1);
+            size--;
+        }
+    }
+
+    /**
+     * 索引文档（一本书）
+     */
+    private static class Document {
+        // 文档号
+        final int id;
+        // 书籍ID
+        final long bookId;
+        // 保存的属性
+        final JsonObject stored;
+        // 各索引字段的规范化文本
+        String[] fields;
+        // 已写入倒排表的词项（有序）
+        int[] terms;
+        // 最后一次出现在上游结果中的时间（毫秒）
+        long updatedAt;
+        // 是否在书架上
+        boolean onShelf;
+
+        Document(int id, long bookId, JsonObject stored) {
+            this.id = id;
+            this.bookId = bookId;
+            this.stored = stored;
+        }
+    }
+
+    /**
+     * 查询命中
+     */
+    private static class Hit {
+        final Document document;
+        final int score;
+
+        Hit(Document document, int score) {
+            this.document = document;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.xxhy.fqhelper.web;
+
+import com.google.gson.reflect.TypeToken;
+import com.xxhy.fqhelper.constant.SPConstants;
+import com.xxhy.fqhelper.utils.JsonUtils;
+import com.xxhy.fqhelper.utils.LogUtils;
+import com.xxhy.fqhelper.utils.SPUtils;
+import com.xxhy.fqhelper.xposed.global.DragonGlobals;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按客户端限流器
+ * 以“客户端地址 + 路由”为单位维护令牌桶（GCRA实现，单个AtomicLong即可表示桶状态，无锁），
+ * 单个客户端超出自己的份额时只会在自己的桶上排队等待，不会挤占其他客户端的配额；
+ * 排队时间超过上限或排队数过多时直接拒绝，由HttpServer返回429及Retry-After
+ *
+ * <p>路由限额可通过SP中的{@link SPConstants#RATE_LIMIT}以JSON覆盖，格式：
+ * {"/search":{"rate":2,"burst":6,"maxWaitMs":2000}, "*":{...}}，其中"*"为默认限额，rate小于等于0表示不限流
+ */
+public class RateLimiter {
+
+    // 单例实例
+    private static final RateLimiter INSTANCE = new RateLimiter();
+
+    // 默认路由限额（key为路由路径，"*"为未单独配置路由的默认值）
+    private static final Map<String, Limit> DEFAULT_LIMITS = createDefaultLimits();
+    // 默认限额对应的key
+    private static final String DEFAULT_ROUTE = "*";
+
+    // 单个客户端同时排队等待的请求数上限，超过后直接拒绝
+    private static final int MAX_QUEUED_PER_CLIENT = 4;
+    // 客户端空闲多久后被清理（纳秒）
+    private static final long CLIENT_IDLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+    // 清理空闲客户端的最小间隔（纳秒）
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    // 客户端状态表：客户端地址 -> 状态
+    private final ConcurrentHashMap<String, ClientState> clients = new ConcurrentHashMap<>();
+    // 上次清理时间
+    private final AtomicLong lastSweepNanos = new AtomicLong(System.nanoTime());
+
+    // 限流配置缓存（SP原始字符串未变化时复用解析结果）
+    private volatile String cachedConfigJson;
+    private volatile Map<String, Limit> cachedLimits = DEFAULT_LIMITS;
+
+    private RateLimiter() {}
+
+    /**
+     * 获取单例实例
+     */
+    public static RateLimiter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 初始化默认路由限额
+     * 搜索、书城、分类等接口会触发较重的上游RPC，限额较低；内容接口需支持批量缓存章节，限额较高
+     */
+    private static Map<String, Limit> createDefaultLimits() {
+        Map<String, Limit> map = new HashMap<>(8);
+        map.put("/search", new Limit(2, 6, 2000));
+        map.put("/reading/bookapi/bookmall/cell/change/v1/", new Limit(2, 6, 2000));
+        map.put("/reading/bookapi/new_category/landing/v/", new Limit(2, 6, 2000));
+        map.put("/content", new Limit(20, 40, 3000));
+        map.put(DEFAULT_ROUTE, new Limit(10, 20, 1000));
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * 为一次请求申请令牌
+     * 若桶内有令牌则立即放行；若在最大等待时间内可获得令牌则在当前线程排队等待；否则拒绝
+     * @param client 客户端标识（远端IP）
+     * @param route 匹配到的路由路径
+     * @return 限流结果
+     */
+    public Decision acquire(String client, String route) {
+        Limit limit = getLimit(route);
+        if (limit.rate <= 0) {
+            return Decision.ALLOWED;
+        }
+
+        long now = System.nanoTime();
+        sweepIdleClients(now);
+
+        // 取得状态与更新最近请求时间在同一次compute中完成（与清理时的computeIfPresent互斥），
+        // 清理线程不会移除刚被取得的状态，请求不会落在已被移除的桶上
+        ClientState state = clients.compute(client, (k, existing) -> {
+            ClientState result = existing != null ? existing : new ClientState();
+            result.lastSeenNanos = System.nanoTime();
+            return result;
+        });
+        Bucket bucket = state.buckets.computeIfAbsent(route, k -> new Bucket());
+
+        long interval = limit.intervalNanos();
+        long tolerance = interval * (limit.burst - 1L);
+        long maxWait = TimeUnit.MILLISECONDS.toNanos(limit.maxWaitMs);
+
+        while (true) {
+            long tat = bucket.tat.get();
+            // 理论到达时间（TAT）不早于当前时间
+            long base = Math.max(tat, now);
+            long wait = base - tolerance - now;
+            if (wait <= 0) {
+                if (bucket.tat.compareAndSet(tat, base + interval)) {
+                    state.allowed.increment();
+                    return Decision.ALLOWED;
+                }
+            } else if (wait > maxWait || state.waiting.get() >= MAX_QUEUED_PER_CLIENT) {
+                // 超出排队上限，拒绝并告知客户端多久后可重试
+                state.rejected.increment();
+                ServerStats.recordThrottled(false);
+                return Decision.rejected(wait);
+            } else if (bucket.tat.compareAndSet(tat, base + interval)) {
+                // 预占令牌后在自己的桶上排队，不影响其他客户端
+                state.queued.increment();
+                ServerStats.recordThrottled(true);
+                return waitForTurn(state, wait);
+            }
+            now = System.nanoTime();
+        }
+    }
+
+    /**
+     * 在当前线程等待预占的令牌生效
+     * @param state 客户端状态
+     * @param waitNanos 需要等待的时长（纳秒）
+     * @return 等待结束后放行；若线程被中断则拒绝
+     */
+    private Decision waitForTurn(ClientState state, long waitNanos) {
+        state.waiting.incrementAndGet();
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+            return Decision.ALLOWED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Decision.rejected(waitNanos);
+        } finally {
+            state.waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * 清理长时间空闲的客户端状态，避免客户端表无限增长
+     * 通过CAS保证同一时刻只有一个线程执行清理；是否空闲在computeIfPresent中重新判断，
+     * 与acquire中取得状态的compute互斥，正在使用的状态不会被移除
+     * @param now 当前时间（纳秒）
+     */
+    private void sweepIdleClients(long now) {
+        long last = lastSweepNanos.get();
+        if (now - last < SWEEP_INTERVAL_NANOS || !lastSweepNanos.compareAndSet(last, now)) {
+            return;
+        }
+        for (String client : clients.keySet()) {
+            clients.computeIfPresent(client, (k, state) ->
+                System.nanoTime() - state.lastSeenNanos > CLIENT_IDLE_NANOS && state.waiting.get() == 0
+                    ? null
+                    : state);
+        }
+    }
+
+    /**
+     * 获取路由对应的限额（SP配置优先，其次默认配置）
+     * @param route 路由路径
+     * @return 限额配置
+     */
+    private Limit getLimit(String route) {
+        Map<String, Limit> limits = loadLimits();
+        Limit limit = limits.get(route);
+        if (limit == null) {
+            limit = limits.get(DEFAULT_ROUTE);
+        }
+        return limit != null ? limit : DEFAULT_LIMITS.get(DEFAULT_ROUTE);
+    }
+
+    /**
+     * 读取SP中的限流配置，与默认配置合并
+     * SP原始字符串未变化时直接复用上次的解析结果
+     */
+    private Map<String, Limit> loadLimits() {
+        SPUtils sp = SPUtils.getInstance(DragonGlobals.getDragonApplication(), SPConstants.SP_NAME);
+        String json = sp.getString(SPConstants.RATE_LIMIT, SPConstants.DEFAULT_RATE_LIMIT);
+        if (json.equals(cachedConfigJson)) {
+            return cachedLimits;
+        }
+
+        Map<String, Limit> limits = new HashMap<>(DEFAULT_LIMITS);
+        try {
+            Map<String, Limit> custom =
+                JsonUtils.fromJson(json, new TypeToken<Map<String, Limit>>() {}.getType());
+            if (custom != null) {
+                for (Map.Entry<String, Limit> entry : custom.entrySet()) {
+                    Limit fallback = limits.getOrDefault(entry.getKey(), DEFAULT_LIMITS.get(DEFAULT_ROUTE));
+                    limits.put(entry.getKey(), entry.getValue().withDefaults(fallback));
+                }
+            }
+        } catch (Exception e) {
+            LogUtils.logE("[RateLimiter.loadLimits] 解析限流配置失败，使用默认配置：" + json, e);
+        }
+        cachedLimits = limits;
+        cachedConfigJson = json;
+        return limits;
+    }
+
+    /**
+     * 获取各客户端的限流统计（用于/stats接口）
+     * @return 客户端地址 -> 统计信息
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        for (Map.Entry<String, ClientState> entry : clients.entrySet()) {
+            ClientState state = entry.getValue();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("allowed", state.allowed.sum());
+            item.put("queued", state.queued.sum());
+            item.put("rejected", state.rejected.sum());
+            item.put("waiting", state.waiting.get());
+            item.put("idleSeconds", TimeUnit.NANOSECONDS.toSeconds(now - state.lastSeenNanos));
+            result.put(entry.getKey(), item);
+        }
+        return result;
+    }
+
+    /**
+     * 路由限额配置
+     * rate：每秒补充的令牌数；burst：桶容量（允许的突发请求数）；maxWaitMs：最大排队时间
+     */
+    private static class Limit {
+        double rate;
+        int burst;
+        long maxWaitMs = -1;
+
+        /** 供Gson反序列化使用，保证字段默认值生效 */
+        Limit() {}
+
+        Limit(double rate, int burst, long maxWaitMs) {
+            this.rate = rate;
+            this.burst = burst;
+            this.maxWaitMs = maxWaitMs;
+        }
+
+        /** 单个令牌的补充间隔（纳秒） */
+        long intervalNanos() {
+            return (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        }
+
+        /** 用默认值补全SP配置中缺省的字段 */
+        Limit withDefaults(Limit fallback) {
+            int fixedBurst = burst > 0 ? burst : Math.max(1, (int) Math.ceil(rate));
+            long fixedWait = maxWaitMs >= 0 ? maxWaitMs : fallback.maxWaitMs;
+            return new Limit(rate, fixedBurst, fixedWait);
+        }
+    }
+
+    /**
+     * 令牌桶（GCRA），tat为下一个请求的理论到达时间（纳秒）
+     */
+    private static class Bucket {
+        final AtomicLong tat = new AtomicLong(Long.MIN_VALUE / 2);
+    }
+
+    /**
+     * 单个客户端的限流状态
+     */
+    private static class ClientState {
+        // 路由 -> 令牌桶
+        final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>(4);
+        // 正在排队等待的请求数
+        final AtomicInteger waiting = new AtomicInteger();
+        // 统计计数
+        final LongAdder allowed = new LongAdder();
+        final LongAdder queued = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        // 最近一次请求时间（纳秒）
+        volatile long lastSeenNanos;
+    }
+
+    /**
+     * 限流结果
+     */
+    public static class Decision {
+        static final Decision ALLOWED = new Decision(true, 0);
+
+        // 是否放行
+        public final boolean allowed;
+        // 建议客户端重试的等待秒数（仅拒绝时有效）
+        public final long retryAfterSeconds;
+
+        private Decision(boolean allowed, long retryAfterSeconds) {
+            this.allowed = allowed;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        static Decision rejected(long waitNanos) {
+            long seconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            return new Decision(false, seconds);
+        }
+    }
+}
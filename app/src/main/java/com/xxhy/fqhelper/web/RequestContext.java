@@ -0,0 +1,219 @@
+package com.xxhy.fqhelper.web;
+
+import com.google.gson.reflect.TypeToken;
+import com.xxhy.fqhelper.constant.SPConstants;
+import com.xxhy.fqhelper.utils.JsonUtils;
+import com.xxhy.fqhelper.utils.LogUtils;
+import com.xxhy.fqhelper.utils.SPUtils;
+import com.xxhy.fqhelper.xposed.global.DragonGlobals;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 请求上下文类
+ * 保存当前HTTP请求的路由、截止时间及客户端连接，供DragonService在调用上游RPC时确定等待时长、
+ * 在客户端断开时取消调用。上下文通过ThreadLocal绑定到处理线程
+ *
+ * <p>截止时间来源：请求头{@link #TIMEOUT_HEADER}（毫秒）优先，其次为路由默认值；
+ * 路由默认值可通过SP中的{@link SPConstants#ROUTE_TIMEOUT}以JSON覆盖，格式：{"/catalog":20000, "*":15000}
+ */
+public class RequestContext {
+
+    // 客户端指定请求超时时间的请求头（毫秒，NanoHTTPD会将请求头名转为小写）
+    public static final String TIMEOUT_HEADER = "x-request-timeout";
+    // 客户端可指定的最大超时时间（毫秒）
+    private static final long MAX_TIMEOUT_MILLIS = 60_000;
+    // 客户端可指定的最小超时时间（毫秒）：过短的超时只会让上游调用刚发出就被取消
+    private static final long MIN_TIMEOUT_MILLIS = 1_000;
+    // 默认超时配置对应的key
+    private static final String DEFAULT_ROUTE = "*";
+    // 各路由默认超时时间（毫秒）
+    private static final Map<String, Long> DEFAULT_TIMEOUTS = createDefaultTimeouts();
+
+    // 当前处理线程对应的请求上下文
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+    // 请求ID前缀（服务启动时间）与序号，组合后在进程内唯一
+    private static final String REQUEST_ID_PREFIX = Long.toString(System.currentTimeMillis(), 36);
+    private static final AtomicLong REQUEST_SEQUENCE = new AtomicLong();
+
+    // 超时配置缓存（SP原始字符串未变化时复用解析结果）
+    private static volatile String cachedConfigJson;
+    private static volatile Map<String, Long> cachedTimeouts = DEFAULT_TIMEOUTS;
+
+    // 请求ID
+    private final String requestId;
+    // 匹配到的路由路径
+    private final String route;
+    // 截止时间（System.nanoTime()基准）
+    private final long deadlineNanos;
+    // 客户端连接（可能为null）
+    private final ClientConnection connection;
+    // 是否已被取消（派生上下文的任务不再需要时设置）
+    private volatile boolean cancelled;
+
+    private RequestContext(String route, long deadlineNanos, ClientConnection connection) {
+        this(REQUEST_ID_PREFIX + "-" + Long.toString(REQUEST_SEQUENCE.incrementAndGet(), 36), route, deadlineNanos, connection);
+    }
+
+    private RequestContext(String requestId, String route, long deadlineNanos, ClientConnection connection) {
+        this.requestId = requestId;
+        this.route = route;
+        this.deadlineNanos = deadlineNanos;
+        this.connection = connection;
+    }
+
+    /**
+     * 初始化各路由默认超时时间
+     */
+    private static Map<String, Long> createDefaultTimeouts() {
+        Map<String, Long> map = new HashMap<>(16);
+        map.put("/search", 10_000L);
+        map.put("/detail", 8_000L);
+        map.put("/catalog", 15_000L);
+        map.put("/content", 15_000L);
+        map.put("/audio", 8_000L);
+        map.put("/bookshelf", 10_000L);
+        map.put(DEFAULT_ROUTE, 15_000L);
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * 为当前处理线程创建并绑定请求上下文
+     * @param route 匹配到的路由路径
+     * @param timeoutHeader 请求头中的超时时间（毫秒，可为null）
+     * @return 请求上下文（处理结束后需调用{@link #end()}）
+     */
+    public static RequestContext begin(String route, String timeoutHeader) {
+        long timeoutMillis = resolveTimeoutMillis(route, timeoutHeader);
+        RequestContext context = new RequestContext(
+            route,
+            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis),
+            ClientConnection.current()
+        );
+        CURRENT.set(context);
+        return context;
+    }
+
+    /**
+     * 获取当前处理线程的请求上下文
+     * @return 请求上下文（非HTTP请求线程，如后台任务，返回null）
+     */
+    public static RequestContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 派生供工作线程使用的上下文（如并行请求多页上游结果）
+     * 请求ID、路由和截止时间与原请求相同，不持有客户端连接：连接状态只能由HTTP处理线程检查，
+     * 客户端断开或任务不再需要时由其调用{@link #cancel()}，工作线程中的上游调用随之取消
+     * @return 派生的上下文（在工作线程中调用{@link #bind()}绑定，结束后调用{@link #end()}）
+     */
+    public RequestContext detach() {
+        return new RequestContext(requestId, route, deadlineNanos, null);
+    }
+
+    /**
+     * 把上下文绑定到当前线程
+     */
+    public void bind() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * 取消请求：之后{@link #isClientGone()}返回true，等待中的上游调用按客户端断开处理
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 结束请求，解除线程绑定
+     */
+    public void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 获取请求ID（随响应头X-Request-Id及错误信息返回，便于对照日志）
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * 获取路由路径
+     */
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * 获取截止时间（System.nanoTime()基准）
+     */
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    /**
+     * 判断客户端是否已断开连接（或请求已被取消）
+     * 只能在HTTP处理线程或绑定了派生上下文的工作线程上调用
+     * @return true-已断开或已取消，false-连接正常或无法判断
+     */
+    public boolean isClientGone() {
+        return cancelled || connection != null && connection.isClosedByPeer();
+    }
+
+    /**
+     * 计算请求的超时时间
+     * 请求头中的有效值优先（限制在{@link #MIN_TIMEOUT_MILLIS}到{@link #MAX_TIMEOUT_MILLIS}之间），否则使用路由默认值
+     * @param route 路由路径
+     * @param timeoutHeader 请求头中的超时时间（毫秒）
+     * @return 超时时间（毫秒）
+     */
+    private static long resolveTimeoutMillis(String route, String timeoutHeader) {
+        if (timeoutHeader != null) {
+            try {
+                long value = Long.parseLong(timeoutHeader.trim());
+                if (value > 0) {
+                    return Math.max(MIN_TIMEOUT_MILLIS, Math.min(value, MAX_TIMEOUT_MILLIS));
+                }
+            } catch (NumberFormatException e) {
+                // 格式错误时使用路由默认值
+            }
+        }
+        Map<String, Long> timeouts = loadTimeouts();
+        Long timeout = timeouts.get(route);
+        if (timeout == null) {
+            timeout = timeouts.get(DEFAULT_ROUTE);
+        }
+        return timeout != null ? timeout : DEFAULT_TIMEOUTS.get(DEFAULT_ROUTE);
+    }
+
+    /**
+     * 读取SP中的路由超时配置，与默认配置合并
+     */
+    private static Map<String, Long> loadTimeouts() {
+        SPUtils sp = SPUtils.getInstance(DragonGlobals.getDragonApplication(), SPConstants.SP_NAME);
+        String json = sp.getString(SPConstants.ROUTE_TIMEOUT, SPConstants.DEFAULT_ROUTE_TIMEOUT);
+        if (json.equals(cachedConfigJson)) {
+            return cachedTimeouts;
+        }
+
+        Map<String, Long> timeouts = new HashMap<>(DEFAULT_TIMEOUTS);
+        try {
+            Map<String, Long> custom =
+                JsonUtils.fromJson(json, new TypeToken<Map<String, Long>>() {}.getType());
+            if (custom != null) {
+                timeouts.putAll(custom);
+            }
+        } catch (Exception e) {
+            LogUtils.logE("[RequestContext.loadTimeouts] 解析超时配置失败，使用默认配置：" + json, e);
+        }
+        cachedTimeouts = timeouts;
+        cachedConfigJson = json;
+        return timeouts;
+    }
+}
@@ -0,0 +1,150 @@
+package com.xxhy.fqhelper.web;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.xxhy.fqhelper.constant.SPConstants;
+import com.xxhy.fqhelper.utils.JsonUtils;
+import com.xxhy.fqhelper.utils.SPUtils;
+import com.xxhy.fqhelper.web.codec.CborWriter;
+import com.xxhy.fqhelper.web.codec.JsonTranscoder;
+import com.xxhy.fqhelper.xposed.global.DragonGlobals;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 响应格式枚举
+ * 根据请求头Accept协商响应编码：默认JSON，客户端声明接受application/cbor时使用CBOR。
+ * 两种格式都通过Gson的流式写入器直接从模型对象序列化，不生成中间字符串或JSON树
+ */
+public enum ResponseFormat {
+
+    JSON("application/json; charset=UTF-8"),
+    CBOR("application/cbor");
+
+    // CBOR的MIME类型（不含参数）
+    private static final String CBOR_MIME = "application/cbor";
+    // 序列化缓冲区初始大小
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    // 响应Content-Type
+    private final String mimeType;
+
+    ResponseFormat(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    /**
+     * 获取响应Content-Type
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * 根据Accept请求头选择响应格式
+     * 规则：比较application/cbor与JSON（application/json或通配符）的q值，CBOR的q值更高，
+     * 或q值相同但客户端没有显式以同等q值接受application/json时使用CBOR，其余情况使用JSON
+     * @param accept Accept请求头（可为null）
+     * @return 响应格式
+     */
+    public static ResponseFormat negotiate(String accept) {
+        if (accept == null || !accept.contains(CBOR_MIME)) {
+            return JSON;
+        }
+
+        float cborQuality = 0;
+        float jsonQuality = 0;
+        float wildcardQuality = 0;
+        for (String range : accept.split(",")) {
+            String[] parts = range.split(";");
+            String type = parts[0].trim().toLowerCase();
+            float quality = parseQuality(parts);
+            if (CBOR_MIME.equals(type)) {
+                cborQuality = Math.max(cborQuality, quality);
+            } else if ("application/json".equals(type)) {
+                jsonQuality = Math.max(jsonQuality, quality);
+            } else if ("*/*".equals(type) || "application/*".equals(type)) {
+                wildcardQuality = Math.max(wildcardQuality, quality);
+            }
+        }
+
+        if (cborQuality > 0 && cborQuality > jsonQuality && cborQuality >= wildcardQuality) {
+            return CBOR;
+        }
+        return JSON;
+    }
+
+    /**
+     * 解析媒体范围中的q参数
+     * @param parts 按分号拆分后的媒体范围
+     * @return q值（缺省为1）
+     */
+    static float parseQuality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Float.parseFloat(param.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * 将模型对象序列化为当前格式
+     * JSON格式在调试模式下输出带缩进的格式化JSON（与JsonUtils.toJson行为一致）；
+     * 已序列化的JSON（磁盘缓存命中）在非调试模式下原样输出，其余情况转写为目标格式
+     * @param data 模型对象
+     * @return 序列化后的字节
+     * @throws IOException 序列化失败
+     */
+    public byte[] encode(Object data) throws IOException {
+        boolean debugMode = this == JSON && isDebugMode();
+        if (data instanceof SerializedJson && this == JSON && !debugMode) {
+            // 已序列化的JSON直接输出
+            return ((SerializedJson) data).bytes;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        try (JsonWriter writer = this == CBOR
+                ? new CborWriter(new BufferedOutputStream(buffer))
+                : new JsonWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8))) {
+            if (debugMode) {
+                writer.setIndent("  ");
+            }
+            if (data instanceof SerializedJson) {
+                transcode(((SerializedJson) data).bytes, writer);
+            } else {
+                JsonUtils.toJson(data, writer);
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 将已序列化的JSON逐个记号转写到目标写入器（不构建JSON树）
+     * @param json UTF-8 JSON
+     * @param writer 目标写入器
+     * @throws IOException 读写失败
+     */
+    private static void transcode(byte[] json, JsonWriter writer) throws IOException {
+        JsonTranscoder.transcode(new JsonReader(
+            new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8)), writer);
+    }
+
+    /**
+     * 读取调试模式开关
+     */
+    private static boolean isDebugMode() {
+        SPUtils sp = SPUtils.getInstance(DragonGlobals.getDragonApplication(), SPConstants.SP_NAME);
+        return sp.getBoolean(SPConstants.DEBUG_MODE, SPConstants.DEFAULT_DEBUG_MODE);
+    }
+}
@@ -0,0 +1,697 @@
+package com.xxhy.fqhelper.web;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.xxhy.fqhelper.constant.SPConstants;
+import com.xxhy.fqhelper.utils.LogUtils;
+import com.xxhy.fqhelper.utils.SPUtils;
+import com.xxhy.fqhelper.xposed.global.DragonGlobals;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 上游RPC录制与回放
+ * 录制模式下把DragonService发出的每次上游调用（目标类#方法、规范化的请求字段）连同序列化后的响应和耗时追加写入捕获文件；
+ * 回放模式下不再调用上游，按请求从捕获文件中取出响应，并按录制时的耗时（可按比例缩放）延迟返回，
+ * 使HttpServer及其上层的缓存、限流、预取等逻辑在真实的请求分布和上游延迟下运行，便于离线复现性能问题
+ *
+ * <p>文件格式：头部（魔数、版本）后为连续的记录，每条记录：
+ * 开始时间(8) 耗时微秒(4) 状态(1) 目标(UTF) 响应类名或错误码(UTF) 请求长度(4) 请求JSON 原始长度(4) 压缩长度(4) 响应JSON（deflate）；
+ * 文件只追加写入，末尾的不完整记录在读取时忽略
+ *
+ * <p>同一请求录制了多次时，回放按录制顺序轮流返回各次的响应和耗时
+ *
+ * <p>回放只在设备上的宿主进程中进行：响应需要还原为宿主的模型类（由宿主ClassLoader加载），
+ * 目录索引、预取、磁盘缓存等按字段读取这些对象，配置和日志也依赖宿主的Context，普通JVM上没有这些类；
+ * 主机上只对取出的捕获文件做离线分析（test/rpc_capture.sh）
+ */
+public class RpcCapture {
+
+    // 运行模式（SP配置值）
+    public static final String MODE_OFF = "off";
+    public static final String MODE_RECORD = "record";
+    public static final String MODE_REPLAY = "replay";
+
+    // 默认捕获文件名（位于应用数据目录）
+    private static final String DEFAULT_FILE = "fqhelper_rpc.cap";
+    // 文件魔数（"FQRC"）及格式版本
+    private static final int FILE_MAGIC = 0x46515243;
+    private static final int FILE_VERSION = 1;
+    // 记录状态
+    private static final byte STATUS_SUCCESS = 0;
+    private static final byte STATUS_ERROR = 1;
+    // 捕获文件大小上限（字节），超出后停止录制
+    private static final long MAX_FILE_BYTES = 256L * 1024 * 1024;
+    // 待写入的记录数上限（超出时放弃，不阻塞请求处理）
+    private static final int MAX_PENDING = 256;
+
+    // Gson实例（固定为非格式化输出，不受调试模式影响；线程安全）
+    private static final Gson GSON = new Gson();
+    // 回放等待时检查客户端是否断开的间隔
+    private static final long DISCONNECT_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    // 写入线程：记录按提交顺序追加到文件
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "fqhelper-rpc-capture");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    // 待写入的记录数
+    private static final AtomicInteger PENDING = new AtomicInteger();
+
+    // 当前写入的文件及输出流（只在写入线程中访问）
+    private static File writingFile;
+    private static DataOutputStream output;
+
+    // 已加载的回放数据（文件路径或修改时间变化时重新加载）
+    private static volatile Replay replay;
+    // SP配置的重新读取间隔
+    private static final long CONFIG_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // 最近一次读取的配置
+    private static volatile Config config;
+
+    // 统计计数
+    private static final LongAdder RECORDED = new LongAdder();        // 已写入的记录数
+    private static final LongAdder RECORD_DROPPED = new LongAdder();  // 因任务过多、文件超限或写入失败而放弃的记录数
+    private static final LongAdder REPLAY_HITS = new LongAdder();     // 回放命中数
+    private static final LongAdder REPLAY_MISSES = new LongAdder();   // 回放未命中数
+
+    /**
+     * 私有构造方法，禁止实例化（工具类设计）
+     */
+    private RpcCapture() {}
+
+    /**
+     * 获取当前运行模式（SP配置）
+     * @return MODE_OFF、MODE_RECORD或MODE_REPLAY
+     */
+    public static String mode() {
+        return config().mode;
+    }
+
+    // ============================= 录制 =============================
+
+    /**
+     * 录制一次上游调用
+     * 请求和响应在当前线程中序列化（调用方随后可能修改响应对象，如章节内容解密），压缩和写入在后台线程进行
+     * @param target 调用目标（类名#方法名）
+     * @param request 请求对象
+     * @param result 调用结果（上游响应或错误对象）
+     * @param startedAtMillis 调用开始时间（毫秒时间戳）
+     * @param elapsedNanos 调用耗时（纳秒）
+     */
+    public static void record(String target, Object request, Object result, long startedAtMillis, long elapsedNanos) {
+        if (result == null) {
+            return;
+        }
+        if (PENDING.incrementAndGet() > MAX_PENDING) {
+            PENDING.decrementAndGet();
+            RECORD_DROPPED.increment();
+            return;
+        }
+
+        Entry entry;
+        try {
+            boolean error = result instanceof ApiError;
+            byte[] response = error
+                ? String.valueOf(((ApiError) result).getMessage()).getBytes(StandardCharsets.UTF_8)
+                : GSON.toJson(result).getBytes(StandardCharsets.UTF_8);
+            entry = new Entry(
+                startedAtMillis,
+                (int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMicros(elapsedNanos)),
+                error ? STATUS_ERROR : STATUS_SUCCESS,
+                target,
+                error ? ((ApiError) result).getCode().name() : result.getClass().getName(),
+                normalizeRequest(request),
+                response);
+        } catch (Throwable t) {
+            PENDING.decrementAndGet();
+            RECORD_DROPPED.increment();
+            LogUtils.logE("[RpcCapture.record] 序列化上游调用失败：" + target, t);
+            return;
+        }
+
+        File file = config().file;
+        WRITER.execute(() -> {
+            try {
+                write(file, entry);
+            } finally {
+                PENDING.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * 追加写入一条记录（在写入线程中执行）
+     */
+    private static void write(File file, Entry entry) {
+        try {
+            if (!file.equals(writingFile) || !file.exists()) {
+                // 路径变化或文件被删除（如清空重录）时重新打开
+                closeOutput();
+                boolean exists = file.length() > 0;
+                output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+                writingFile = file;
+                if (!exists) {
+                    output.writeInt(FILE_MAGIC);
+                    output.writeInt(FILE_VERSION);
+                }
+            }
+            if (file.length() > MAX_FILE_BYTES) {
+                RECORD_DROPPED.increment();
+                return;
+            }
+
+            byte[] compressed = deflate(entry.response);
+            output.writeLong(entry.startedAtMillis);
+            output.writeInt(entry.latencyMicros);
+            output.writeByte(entry.status);
+            output.writeUTF(entry.target);
+            output.writeUTF(entry.responseType);
+            output.writeInt(entry.request.length);
+            output.write(entry.request);
+            output.writeInt(entry.response.length);
+            output.writeInt(compressed.length);
+            output.write(compressed);
+            // 每条记录写完即刷新，进程被杀时最多丢失正在写入的一条
+            output.flush();
+            RECORDED.increment();
+        } catch (IOException e) {
+            RECORD_DROPPED.increment();
+            LogUtils.logE("[RpcCapture.write] 写入捕获文件失败：" + file, e);
+            closeOutput();
+        }
+    }
+
+    private static void closeOutput() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException ignored) {
+                // 关闭失败不影响后续写入
+            }
+            output = null;
+            writingFile = null;
+        }
+    }
+
+    // ============================= 回放 =============================
+
+    /**
+     * 从捕获文件回放一次上游调用
+     * 按录制时的耗时乘以缩放比例延迟返回；延迟超过请求截止时间时按上游超时处理，等待期间客户端断开时立即返回
+     * @param target 调用目标（类名#方法名）
+     * @param request 请求对象
+     * @param deadlineNanos 请求截止时间（System.nanoTime()基准）
+     * @param context 请求上下文（用于检查客户端是否断开，可为null）
+     * @return 录制的响应（尽量还原为原响应类型，无法还原时为已序列化的JSON）或录制的错误；未录制过该请求时返回错误对象
+     * @throws InterruptedException 等待期间线程被中断
+     */
+    public static Object replay(String target, Object request, long deadlineNanos, RequestContext context)
+            throws InterruptedException {
+        Config config = config();
+        Replay current = loadReplay(config.file);
+        if (current == null) {
+            REPLAY_MISSES.increment();
+            return ApiError.of(ApiError.Code.UPSTREAM_UNAVAILABLE, "捕获文件不可用：" + config.file);
+        }
+        String key = target + "\u0000" + new String(normalizeRequest(request), StandardCharsets.UTF_8);
+        Recorded entry = current.next(key);
+        if (entry == null) {
+            REPLAY_MISSES.increment();
+            return ApiError.of(ApiError.Code.UPSTREAM_UNAVAILABLE, "捕获文件中没有该请求：" + target);
+        }
+        REPLAY_HITS.increment();
+
+        long delayNanos = (long) (TimeUnit.MICROSECONDS.toNanos(entry.latencyMicros) * config.latencyScale);
+        long startNanos = System.nanoTime();
+        boolean timedOut = delayNanos > deadlineNanos - startNanos;
+        long wakeNanos = timedOut ? deadlineNanos : startNanos + delayNanos;
+        if (!sleepUntil(wakeNanos, context)) {
+            return ApiError.of(ApiError.Code.CLIENT_CLOSED_REQUEST, "客户端已断开（回放）");
+        }
+        if (timedOut) {
+            return ApiError.of(ApiError.Code.UPSTREAM_TIMEOUT, "上游调用超时（回放）");
+        }
+
+        byte[] response;
+        try {
+            response = current.readResponse(entry);
+        } catch (IOException e) {
+            LogUtils.logE("[RpcCapture.replay] 读取录制的响应失败：" + target, e);
+            return ApiError.of(ApiError.Code.UPSTREAM_UNAVAILABLE, "读取捕获文件失败：" + target);
+        }
+        if (entry.status == STATUS_ERROR) {
+            ApiError.Code code;
+            try {
+                code = ApiError.Code.valueOf(entry.responseType);
+            } catch (IllegalArgumentException e) {
+                code = ApiError.Code.UPSTREAM_ERROR;
+            }
+            return ApiError.of(code, new String(response, StandardCharsets.UTF_8));
+        }
+        return decodeResponse(entry.responseType, response);
+    }
+
+    /**
+     * 分段等待到指定时间，每段结束时检查客户端是否断开
+     * @param wakeNanos 结束时间（System.nanoTime()基准）
+     * @param context 请求上下文（可为null）
+     * @return 等待完成返回true，客户端已断开返回false
+     * @throws InterruptedException 等待期间线程被中断
+     */
+    private static boolean sleepUntil(long wakeNanos, RequestContext context) throws InterruptedException {
+        while (true) {
+            if (context != null && context.isClientGone()) {
+                return false;
+            }
+            long remaining = wakeNanos - System.nanoTime();
+            if (remaining <= 0) {
+                return true;
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.min(remaining, DISCONNECT_CHECK_NANOS));
+        }
+    }
+
+    /**
+     * 把录制的响应还原为原响应类型（与上游返回的对象一致，供目录索引、预取等读取字段）；
+     * 宿主中找不到该类型或反序列化失败时返回已序列化的JSON
+     */
+    private static Object decodeResponse(String responseType, byte[] response) {
+        String json = new String(response, StandardCharsets.UTF_8);
+        try {
+            Class<?> type = Class.forName(responseType, true, DragonGlobals.getDragonClassLoader());
+            Object result = GSON.fromJson(json, type);
+            if (result != null) {
+                return result;
+            }
+        } catch (Throwable t) {
+            LogUtils.logE("[RpcCapture.decodeResponse] 还原响应类型失败：" + responseType, t);
+        }
+        return new SerializedJson(response);
+    }
+
+    /**
+     * 加载回放数据（文件未变化时不加锁直接复用已加载的数据）
+     * 只读取记录头建立索引，响应在回放时按位置读取并解压，不把整个捕获文件载入内存
+     * @param file 捕获文件
+     * @return 回放数据（文件不存在或无法读取时返回null）
+     */
+    private static Replay loadReplay(File file) {
+        Replay current = replay;
+        if (current != null && current.file.equals(file) && current.lastModified == file.lastModified()) {
+            return current;
+        }
+        synchronized (RpcCapture.class) {
+            return reloadReplay(file);
+        }
+    }
+
+    private static Replay reloadReplay(File file) {
+        Replay current = replay;
+        if (current != null && current.file.equals(file) && current.lastModified == file.lastModified()) {
+            return current;
+        }
+        if (!file.isFile()) {
+            replay = null;
+            return null;
+        }
+        try {
+            current = Replay.read(file);
+            replay = current;
+            LogUtils.logI("[RpcCapture.loadReplay] 已加载捕获文件：" + file + "，记录数：" + current.size);
+            return current;
+        } catch (IOException e) {
+            LogUtils.logE("[RpcCapture.loadReplay] 读取捕获文件失败：" + file, e);
+            replay = null;
+            return null;
+        }
+    }
+
+    // ============================= 工具方法 =============================
+
+    /**
+     * 规范化请求字段：把请求对象转换为JSON，对象属性按名称排序并去掉null值，使字段相同的请求得到相同的字节序列
+     */
+    static byte[] normalizeRequest(Object request) {
+        if (request == null) {
+            return new byte[0];
+        }
+        return normalize(GSON.toJsonTree(request)).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static JsonElement normalize(JsonElement element) {
+        if (element.isJsonObject()) {
+            TreeMap<String, JsonElement> sorted = new TreeMap<>();
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                if (!entry.getValue().isJsonNull()) {
+                    sorted.put(entry.getKey(), normalize(entry.getValue()));
+                }
+            }
+            JsonObject result = new JsonObject();
+            for (Map.Entry<String, JsonElement> entry : sorted.entrySet()) {
+                result.add(entry.getKey(), entry.getValue());
+            }
+            return result;
+        }
+        if (element.isJsonArray()) {
+            JsonArray result = new JsonArray();
+            for (JsonElement item : element.getAsJsonArray()) {
+                result.add(normalize(item));
+            }
+            return result;
+        }
+        return element;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                buffer.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return buffer.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] result = new byte[length];
+            int offset = 0;
+            while (offset < length && !inflater.finished()) {
+                int read = inflater.inflate(result, offset, length - offset);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += read;
+            }
+            if (offset != length) {
+                throw new IOException("响应数据长度不一致");
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IOException("响应数据损坏", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 获取当前配置（SP最多每{@link #CONFIG_REFRESH_NANOS}读取一次，避免每次上游调用都读取SP）
+     */
+    private static Config config() {
+        Config current = config;
+        long now = System.nanoTime();
+        if (current != null && now - current.readAtNanos < CONFIG_REFRESH_NANOS) {
+            return current;
+        }
+        SPUtils sp = SPUtils.getInstance(DragonGlobals.getDragonApplication(), SPConstants.SP_NAME);
+        String mode = sp.getString(SPConstants.RPC_CAPTURE_MODE, SPConstants.DEFAULT_RPC_CAPTURE_MODE);
+        String path = sp.getString(SPConstants.RPC_CAPTURE_FILE, SPConstants.DEFAULT_RPC_CAPTURE_FILE);
+        String scale = sp.getString(SPConstants.RPC_REPLAY_LATENCY_SCALE, SPConstants.DEFAULT_RPC_REPLAY_LATENCY_SCALE);
+        current = new Config(
+            MODE_RECORD.equals(mode) || MODE_REPLAY.equals(mode) ? mode : MODE_OFF,
+            captureFile(path),
+            latencyScale(scale),
+            now);
+        config = current;
+        return current;
+    }
+
+    /**
+     * 捕获文件路径（SP配置为空时使用应用数据目录下的默认文件）
+     */
+    private static File captureFile(String path) {
+        if (path == null || path.trim().isEmpty()) {
+            return new File(DragonGlobals.getDragonApplication().getDataDir(), DEFAULT_FILE);
+        }
+        return new File(path.trim());
+    }
+
+    /**
+     * 回放延迟缩放比例（0表示不延迟，配置无效时为1）
+     */
+    private static double latencyScale(String value) {
+        try {
+            double scale = Double.parseDouble(value);
+            return scale >= 0 && !Double.isInfinite(scale) ? scale : 1;
+        } catch (NumberFormatException | NullPointerException e) {
+            return 1;
+        }
+    }
+
+    /**
+     * 获取录制与回放统计（用于/stats接口）
+     * @return 统计信息
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("mode", mode());
+        result.put("recorded", RECORDED.sum());
+        result.put("recordDropped", RECORD_DROPPED.sum());
+        result.put("replayHits", REPLAY_HITS.sum());
+        result.put("replayMisses", REPLAY_MISSES.sum());
+        Replay current = replay;
+        result.put("replayEntries", current != null ? current.size : 0);
+        return result;
+    }
+
+    /**
+     * 捕获记录
+     */
+    private static class Entry {
+        final long startedAtMillis;
+        final int latencyMicros;
+        final byte status;
+        final String target;
+        // 成功时为响应类名，失败时为错误码
+        final String responseType;
+        // 规范化的请求JSON
+        final byte[] request;
+        // 成功时为响应JSON，失败时为错误信息
+        final byte[] response;
+
+        Entry(long startedAtMillis, int latencyMicros, byte status, String target, String responseType,
+              byte[] request, byte[] response) {
+            this.startedAtMillis = startedAtMillis;
+            this.latencyMicros = latencyMicros;
+            this.status = status;
+            this.target = target;
+            this.responseType = responseType;
+            this.request = request;
+            this.response = response;
+        }
+    }
+
+    /**
+     * 运行配置（读取自SP）
+     */
+    private static class Config {
+        final String mode;
+        final File file;
+        final double latencyScale;
+        // 读取时间（System.nanoTime()基准）
+        final long readAtNanos;
+
+        Config(String mode, File file, double latencyScale, long readAtNanos) {
+            this.mode = mode;
+            this.file = file;
+            this.latencyScale = latencyScale;
+            this.readAtNanos = readAtNanos;
+        }
+    }
+
+    /**
+     * 回放索引中的一条记录：响应数据只记录在文件中的位置，回放时再读取和解压
+     */
+    private static class Recorded {
+        final int latencyMicros;
+        final byte status;
+        final String responseType;
+        // 压缩数据在文件中的位置及长度、解压后的长度
+        final long dataOffset;
+        final int compressedLength;
+        final int length;
+
+        Recorded(int latencyMicros, byte status, String responseType, long dataOffset, int compressedLength, int length) {
+            this.latencyMicros = latencyMicros;
+            this.status = status;
+            this.responseType = responseType;
+            this.dataOffset = dataOffset;
+            this.compressedLength = compressedLength;
+            this.length = length;
+        }
+    }
+
+    /**
+     * 回放数据：请求键 -> 按录制顺序排列的记录，各键独立轮转
+     */
+    private static class Replay {
+        final File file;
+        final long lastModified;
+        final int size;
+        private final Map<String, List<Recorded>> entries;
+        private final Map<String, Integer> cursors = new HashMap<>();
+
+        private Replay(File file, long lastModified, Map<String, List<Recorded>> entries, int size) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.entries = entries;
+            this.size = size;
+        }
+
+        /**
+         * 扫描捕获文件建立索引（跳过压缩的响应数据）
+         */
+        static Replay read(File file) throws IOException {
+            long lastModified = file.lastModified();
+            long fileLength = file.length();
+            Map<String, List<Recorded>> entries = new HashMap<>();
+            int size = 0;
+            CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try (DataInputStream input = new DataInputStream(counter)) {
+                if (input.readInt() != FILE_MAGIC || input.readInt() != FILE_VERSION) {
+                    throw new IOException("不支持的捕获文件格式");
+                }
+                while (true) {
+                    String key;
+                    Recorded entry;
+                    try {
+                        input.readLong();
+                        int latencyMicros = input.readInt();
+                        byte status = input.readByte();
+                        String target = input.readUTF();
+                        String responseType = input.readUTF();
+                        byte[] request = new byte[input.readInt()];
+                        input.readFully(request);
+                        int length = input.readInt();
+                        int compressedLength = input.readInt();
+                        long dataOffset = counter.position;
+                        if (length < 0 || compressedLength < 0 || dataOffset + compressedLength > fileLength) {
+                            // 末尾记录不完整
+                            break;
+                        }
+                        skipFully(input, compressedLength);
+                        key = target + "\u0000" + new String(request, StandardCharsets.UTF_8);
+                        entry = new Recorded(latencyMicros, status, responseType, dataOffset, compressedLength, length);
+                    } catch (EOFException e) {
+                        // 文件结束或末尾记录不完整
+                        break;
+                    }
+                    entries.computeIfAbsent(key, k -> new ArrayList<>(1)).add(entry);
+                    size++;
+                }
+            }
+            return new Replay(file, lastModified, entries, size);
+        }
+
+        /**
+         * 取出该请求的下一条记录（到末尾后从头开始）
+         */
+        synchronized Recorded next(String key) {
+            List<Recorded> list = entries.get(key);
+            if (list == null) {
+                return null;
+            }
+            int cursor = cursors.getOrDefault(key, 0);
+            cursors.put(key, (cursor + 1) % list.size());
+            return list.get(cursor);
+        }
+
+        /**
+         * 读取并解压记录的响应数据
+         */
+        byte[] readResponse(Recorded entry) throws IOException {
+            byte[] compressed = new byte[entry.compressedLength];
+            try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+                input.seek(entry.dataOffset);
+                input.readFully(compressed);
+            }
+            return inflate(compressed, entry.length);
+        }
+
+        private static void skipFully(DataInputStream input, int length) throws IOException {
+            int remaining = length;
+            while (remaining > 0) {
+                int skipped = input.skipBytes(remaining);
+                if (skipped <= 0) {
+                    throw new EOFException();
+                }
+                remaining -= skipped;
+            }
+        }
+    }
+
+    /**
+     * 记录已读取字节数的输入流（用于得到响应数据在文件中的位置）
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        long position;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            position += skipped;
+            return skipped;
+        }
+    }
+}
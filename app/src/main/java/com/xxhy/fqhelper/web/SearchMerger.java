@@ -0,0 +1,351 @@
+package com.xxhy.fqhelper.web;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.xxhy.fqhelper.utils.LogUtils;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多页搜索合并类
+ * 上游搜索每页固定{@link DragonService#SEARCH_PAGE_SIZE}条，客户端需要更多结果时原本只能按页依次请求；
+ * 这里把所需的各页并行请求（单个请求同时进行的页数有上限），按页码顺序合并为一个结果并按书籍ID去重，
+ * 总耗时约等于最慢一页的耗时，而不是各页耗时之和
+ *
+ * <p>合并规则：以起始页的结果为模板，把各页searchTabs[0].data依次拼接；某页失败或没有更多结果时合并到该页为止，
+ * 后续页的任务取消；起始页失败时返回其错误
+ */
+public class SearchMerger {
+
+    // 单次请求最多合并的页数
+    static final int MAX_PAGES = 5;
+    // 单次请求同时进行的页请求上限
+    private static final int MAX_CONCURRENT_PAGES = 3;
+    // 等待期间检查客户端是否断开的间隔
+    private static final long DISCONNECT_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    // 无请求上下文时的等待时间
+    private static final long DEFAULT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+    // 页请求线程池（各页请求在其中执行，实际并发由每个请求自行限制）
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger index = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "fqhelper-search-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // 统计计数
+    private static final LongAdder REQUESTS = new LongAdder();    // 合并请求数
+    private static final LongAdder PAGES = new LongAdder();       // 完成的页请求数
+    private static final LongAdder CANCELLED = new LongAdder();   // 因无需或来不及而取消的页请求数
+    private static final LongAdder DUPLICATES = new LongAdder();  // 去重移除的结果数
+
+    /**
+     * 私有构造方法，禁止实例化（工具类设计）
+     */
+    private SearchMerger() {}
+
+    /**
+     * 单页加载器（与单页/search的处理流程一致，含磁盘缓存、预取及本地索引更新）
+     */
+    @FunctionalInterface
+    public interface PageLoader {
+        /**
+         * @param page 页码
+         * @param last 是否为本次请求的最后一页（只有最后一页需要预取下一页）
+         * @return 该页的搜索结果或错误对象
+         */
+        Object load(int page, boolean last);
+    }
+
+    /**
+     * 并行请求多页并合并
+     * @param firstPage 起始页码
+     * @param pageCount 页数（1~{@link #MAX_PAGES}）
+     * @param limit 最多返回的结果数（0表示不限制）
+     * @param loader 单页加载器
+     * @return 合并后的搜索结果或错误对象
+     */
+    public static Object search(int firstPage, int pageCount, int limit, PageLoader loader) {
+        REQUESTS.increment();
+        RequestContext context = RequestContext.current();
+        long deadlineNanos = context != null ? context.getDeadlineNanos() : System.nanoTime() + DEFAULT_TIMEOUT_NANOS;
+        int lastPage = firstPage + pageCount - 1;
+
+        CompletionService<PageResult> completion = new ExecutorCompletionService<>(EXECUTOR);
+        @SuppressWarnings("unchecked")
+        Future<PageResult>[] futures = new Future[pageCount];
+        // 各页任务的上下文（取消页任务时通过上下文通知其上游调用放弃等待）
+        RequestContext[] pageContexts = new RequestContext[pageCount];
+        PageResult[] results = new PageResult[pageCount];
+        int submitted = 0;
+        int completed = 0;
+        // 已知的最后一页（没有更多结果或失败的页），之后的页不再需要
+        int stopIndex = pageCount - 1;
+        try {
+            while (submitted < Math.min(MAX_CONCURRENT_PAGES, pageCount)) {
+                submitPage(completion, loader, submitted, firstPage, lastPage, context, futures, pageContexts);
+                submitted++;
+            }
+
+            while (completed < submitted) {
+                Future<PageResult> done = poll(completion, deadlineNanos, context);
+                if (done == null) {
+                    // 超时或客户端断开：返回已连续完成的页
+                    break;
+                }
+                completed++;
+                if (done.isCancelled()) {
+                    continue;
+                }
+                PageResult pageResult = done.get();
+                int index = pageResult.page - firstPage;
+                results[index] = pageResult;
+                PAGES.increment();
+                if (index < stopIndex && !pageResult.hasMore()) {
+                    stopIndex = index;
+                    cancelAfter(futures, pageContexts, stopIndex);
+                }
+                if (submitted <= stopIndex && submitted < pageCount) {
+                    submitPage(completion, loader, submitted, firstPage, lastPage, context, futures, pageContexts);
+                    submitted++;
+                }
+                if (isPrefixComplete(results, stopIndex)) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LogUtils.logE("[SearchMerger.search] 页请求失败", e);
+        } finally {
+            cancelAfter(futures, pageContexts, -1);
+        }
+
+        return merge(results, stopIndex, limit);
+    }
+
+    /**
+     * 提交第index页的任务
+     */
+    private static void submitPage(CompletionService<PageResult> completion, PageLoader loader, int index,
+                                   int firstPage, int lastPage, RequestContext context,
+                                   Future<PageResult>[] futures, RequestContext[] pageContexts) {
+        int page = firstPage + index;
+        RequestContext workerContext = context != null ? context.detach() : null;
+        pageContexts[index] = workerContext;
+        futures[index] = completion.submit(() -> {
+            if (workerContext != null) {
+                workerContext.bind();
+            }
+            try {
+                Object result;
+                try {
+                    result = loader.load(page, page == lastPage);
+                } catch (RuntimeException e) {
+                    LogUtils.logE("[SearchMerger.submitPage] 页请求失败，页码：" + page, e);
+                    result = ApiError.fromThrowable(e);
+                }
+                // 在工作线程中转换为JSON，合并时只需拼接
+                return new PageResult(page, result);
+            } finally {
+                if (workerContext != null) {
+                    workerContext.end();
+                }
+            }
+        });
+    }
+
+    /**
+     * 按请求截止时间等待下一页完成，等待期间定期检查客户端是否已断开
+     * @return 完成的页请求（超时、客户端断开时返回null）
+     */
+    private static Future<PageResult> poll(CompletionService<PageResult> completion, long deadlineNanos,
+                                           RequestContext context) throws InterruptedException {
+        while (true) {
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            Future<PageResult> done = completion.poll(Math.min(remaining, DISCONNECT_CHECK_NANOS), TimeUnit.NANOSECONDS);
+            if (done != null) {
+                return done;
+            }
+            if (context != null && context.isClientGone()) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 取消指定序号之后仍未完成的页请求
+     * 不中断工作线程（其中可能正在读写磁盘缓存，中断会关闭文件通道），而是取消其上下文，由上游调用自行放弃等待
+     */
+    private static void cancelAfter(Future<PageResult>[] futures, RequestContext[] pageContexts, int index) {
+        for (int i = index + 1; i < futures.length; i++) {
+            if (futures[i] != null && !futures[i].isDone()) {
+                if (pageContexts[i] != null) {
+                    pageContexts[i].cancel();
+                }
+                futures[i].cancel(false);
+                CANCELLED.increment();
+            }
+        }
+    }
+
+    /**
+     * 第0页到stopIndex页是否都已完成
+     */
+    private static boolean isPrefixComplete(PageResult[] results, int stopIndex) {
+        for (int i = 0; i <= stopIndex; i++) {
+            if (results[i] == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按页码顺序合并各页结果
+     * @param results 各页结果（未完成的为null）
+     * @param stopIndex 最后一个需要合并的页序号
+     * @param limit 最多返回的结果数（0表示不限制）
+     * @return 合并后的搜索结果；起始页失败时返回其错误
+     */
+    private static Object merge(PageResult[] results, int stopIndex, int limit) {
+        PageResult first = results[0];
+        if (first == null) {
+            return ApiError.of(ApiError.Code.UPSTREAM_TIMEOUT, "上游调用超时");
+        }
+        JsonObject tab = first.tab;
+        if (tab == null) {
+            // 错误对象或无法解析的结果原样返回
+            return first.result;
+        }
+
+        JsonArray cells = new JsonArray();
+        Set<String> bookIds = new HashSet<>();
+        boolean hasMore = false;
+        boolean truncated = false;
+        for (int i = 0; i <= stopIndex && !truncated; i++) {
+            JsonObject pageTab = results[i] != null ? results[i].tab : null;
+            if (pageTab == null) {
+                // 该页失败或未完成：合并到上一页为止，客户端可从该页继续请求
+                hasMore = true;
+                break;
+            }
+            JsonElement data = pageTab.get("data");
+            if (data != null && data.isJsonArray()) {
+                for (JsonElement cell : data.getAsJsonArray()) {
+                    if (limit > 0 && cells.size() >= limit) {
+                        truncated = true;
+                        break;
+                    }
+                    String bookId = bookIdOf(cell);
+                    if (bookId != null && !bookIds.add(bookId)) {
+                        DUPLICATES.increment();
+                        continue;
+                    }
+                    cells.add(cell);
+                }
+            }
+            JsonElement more = pageTab.get("hasMore");
+            hasMore = truncated || more != null && more.isJsonPrimitive() && more.getAsBoolean();
+        }
+
+        tab.add("data", cells);
+        tab.addProperty("hasMore", hasMore);
+        return first.root;
+    }
+
+    private static JsonObject firstTab(JsonObject root) {
+        if (root == null) {
+            return null;
+        }
+        JsonElement tabs = root.get("searchTabs");
+        if (tabs == null || !tabs.isJsonArray() || tabs.getAsJsonArray().size() == 0) {
+            return null;
+        }
+        JsonElement tab = tabs.getAsJsonArray().get(0);
+        return tab.isJsonObject() ? tab.getAsJsonObject() : null;
+    }
+
+    /**
+     * 获取结果单元的书籍ID（单元上的bookId，其次为bookData[0].bookId），合并远程与本地结果时共用
+     * @return 书籍ID（没有时返回null）
+     */
+    static String bookIdOf(JsonElement cell) {
+        if (!cell.isJsonObject()) {
+            return null;
+        }
+        JsonElement bookId = cell.getAsJsonObject().get("bookId");
+        if (bookId == null || !bookId.isJsonPrimitive()) {
+            JsonElement bookData = cell.getAsJsonObject().get("bookData");
+            if (bookData != null && bookData.isJsonArray() && bookData.getAsJsonArray().size() > 0
+                && bookData.getAsJsonArray().get(0).isJsonObject()) {
+                bookId = bookData.getAsJsonArray().get(0).getAsJsonObject().get("bookId");
+            }
+        }
+        return bookId != null && bookId.isJsonPrimitive() && !bookId.getAsString().isEmpty() ? bookId.getAsString() : null;
+    }
+
+    /**
+     * 获取合并统计（用于/stats接口）
+     * @return 统计信息
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("requests", REQUESTS.sum());
+        result.put("pages", PAGES.sum());
+        result.put("cancelled", CANCELLED.sum());
+        result.put("duplicates", DUPLICATES.sum());
+        return result;
+    }
+
+    /**
+     * 单页结果
+     */
+    private static class PageResult {
+        final int page;
+        // 原始结果（磁盘缓存的已序列化JSON、模型对象或错误对象）
+        final Object result;
+        // 结果的JSON树及其第一个标签页（错误对象或无法解析时为null）
+        final JsonObject root;
+        final JsonObject tab;
+
+        PageResult(int page, Object result) {
+            this.page = page;
+            this.result = result;
+            this.root = LocalSearchIndex.toJsonObject(result);
+            this.tab = firstTab(root);
+        }
+
+        /**
+         * 是否还需要请求下一页（失败或searchTabs[0].hasMore为false时不需要）
+         */
+        boolean hasMore() {
+            if (tab == null) {
+                return false;
+            }
+            JsonElement more = tab.get("hasMore");
+            return more == null || !more.isJsonPrimitive() || more.getAsBoolean();
+        }
+    }
+}
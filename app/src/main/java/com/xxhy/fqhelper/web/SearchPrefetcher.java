@@ -0,0 +1,265 @@
+package com.xxhy.fqhelper.web;
+
+import com.xxhy.fqhelper.utils.LogUtils;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.joor.Reflect;
+
+/**
+ * 搜索预取类
+ * 客户端（如Legado）按页依次请求搜索结果，返回第N页后在后台以低优先级预取第N+1页，
+ * 结果暂存在按“关键词+页码”索引的短期缓冲区中，下一页请求到达时可直接返回。
+ * 预取任务数和缓冲条目数都有上限，并统计命中率以评估预取收益
+ *
+ * <p>预取线程只是在等待上游，线程优先级不影响上游调用的先后；真正的“低优先级”体现在：
+ * 搜索上游方法没有富余并发许可（{@link AdaptiveLimiter}）时不发起预取，把许可留给前台请求
+ */
+public class SearchPrefetcher {
+
+    // 预取结果的有效期（纳秒）
+    private static final long ENTRY_TTL_NANOS = TimeUnit.SECONDS.toNanos(60);
+    // 缓冲区最大条目数
+    private static final int MAX_ENTRIES = 16;
+    // 同时进行的预取任务上限
+    private static final int MAX_IN_FLIGHT = 2;
+    // 发起预取时至少为前台请求保留的空闲并发许可数
+    private static final int FOREGROUND_RESERVE = 1;
+    // 等待进行中的预取最多使用当前请求剩余时间的比例，其余时间留给直接调用
+    private static final double PREFETCH_WAIT_SHARE = 0.5;
+
+    // 预取缓冲区：关键词+页码 -> 预取条目
+    private static final ConcurrentHashMap<String, Entry> BUFFER = new ConcurrentHashMap<>();
+    // 预取线程池（低优先级，任务数超过上限时直接放弃预取）
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+        0, MAX_IN_FLIGHT, 30, TimeUnit.SECONDS, new SynchronousQueue<>(),
+        new ThreadFactory() {
+            private final AtomicInteger index = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "fqhelper-prefetch-" + index.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        },
+        new ThreadPoolExecutor.AbortPolicy());
+
+    // 统计计数
+    private static final LongAdder ISSUED = new LongAdder();   // 发起的预取数
+    private static final LongAdder HITS = new LongAdder();     // 命中预取结果的请求数
+    private static final LongAdder MISSES = new LongAdder();   // 未命中的请求数
+    private static final LongAdder WASTED = new LongAdder();   // 过期未使用的预取数
+    private static final LongAdder DROPPED = new LongAdder();  // 因达到上限而放弃的预取数
+    private static final LongAdder BUSY = new LongAdder();     // 因上游繁忙而放弃的预取数
+    private static final LongAdder LATE = new LongAdder();     // 未能及时完成、被取消后改为直接调用的预取数
+
+    /**
+     * 私有构造方法，禁止实例化（工具类设计）
+     */
+    private SearchPrefetcher() {}
+
+    /**
+     * 搜索书籍（优先使用预取结果），返回后预取下一页
+     * @param keyword 搜索关键词
+     * @param page 页码（从1开始）
+     * @return 搜索结果或错误对象（ApiError）
+     */
+    public static Object search(String keyword, int page) {
+        return search(keyword, page, true);
+    }
+
+    /**
+     * 搜索书籍（优先使用预取结果）
+     * @param keyword 搜索关键词
+     * @param page 页码（从1开始）
+     * @param prefetchNext 是否在返回后预取下一页（并行请求多页时，只有最后一页需要预取）
+     * @return 搜索结果或错误对象（ApiError）
+     */
+    public static Object search(String keyword, int page, boolean prefetchNext) {
+        Object result = takePrefetched(keyword, page);
+        if (result == null) {
+            MISSES.increment();
+            result = DragonService.search(keyword, page);
+        } else {
+            HITS.increment();
+        }
+
+        if (prefetchNext && !(result instanceof ApiError) && hasMore(result)) {
+            prefetch(keyword, page + 1);
+        }
+        return result;
+    }
+
+    /**
+     * 从缓冲区取出预取结果
+     * 预取仍在进行时最多等待当前请求剩余时间的{@link #PREFETCH_WAIT_SHARE}，仍未完成则取消预取，
+     * 由调用方用剩余时间直接调用
+     * @param keyword 搜索关键词
+     * @param page 页码
+     * @return 预取结果（不存在、已过期或预取失败时返回null）
+     */
+    private static Object takePrefetched(String keyword, int page) {
+        Entry entry = BUFFER.remove(key(keyword, page));
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            WASTED.increment();
+            entry.future.cancel(true);
+            return null;
+        }
+
+        RequestContext context = RequestContext.current();
+        long remaining = context != null
+            ? context.getDeadlineNanos() - System.nanoTime()
+            : ENTRY_TTL_NANOS;
+        long wait = (long) (Math.max(remaining, 0) * PREFETCH_WAIT_SHARE);
+        try {
+            Object result = entry.future.get(wait, TimeUnit.NANOSECONDS);
+            return result instanceof ApiError ? null : result;
+        } catch (TimeoutException e) {
+            // 预取未能及时完成：取消预取（释放其上游调用），改为直接调用
+            entry.future.cancel(true);
+            LATE.increment();
+            return null;
+        } catch (InterruptedException e) {
+            entry.future.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            LogUtils.logE("[SearchPrefetcher.takePrefetched] 预取结果不可用，关键词：" + keyword + "，页码：" + page, e);
+            return null;
+        }
+    }
+
+    /**
+     * 在后台预取指定页
+     * 已有相同预取、缓冲区已满、预取任务数达到上限或搜索上游没有富余并发许可时放弃
+     * @param keyword 搜索关键词
+     * @param page 页码
+     */
+    private static void prefetch(String keyword, int page) {
+        evictExpired();
+        String key = key(keyword, page);
+        if (BUFFER.containsKey(key)) {
+            return;
+        }
+        if (BUFFER.size() >= MAX_ENTRIES) {
+            DROPPED.increment();
+            return;
+        }
+        if (!DragonService.searchHasHeadroom(FOREGROUND_RESERVE)) {
+            // 上游接近并发上限，预取会与前台请求争用许可
+            BUSY.increment();
+            return;
+        }
+
+        FutureTask<Object> task = new FutureTask<>(() -> DragonService.search(keyword, page));
+        if (BUFFER.putIfAbsent(key, new Entry(task, System.nanoTime())) != null) {
+            return;
+        }
+        try {
+            EXECUTOR.execute(task);
+            ISSUED.increment();
+        } catch (RejectedExecutionException e) {
+            // 预取任务数达到上限
+            BUFFER.remove(key);
+            DROPPED.increment();
+        }
+    }
+
+    /**
+     * 清理过期的预取条目
+     */
+    private static void evictExpired() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<String, Entry>> iterator = BUFFER.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.isExpired(now)) {
+                iterator.remove();
+                entry.future.cancel(true);
+                WASTED.increment();
+            }
+        }
+    }
+
+    /**
+     * 判断搜索结果是否还有下一页（读取searchTabs[0].hasMore）
+     * @param result 搜索结果对象
+     * @return 是否还有下一页（无法判断时返回true）
+     */
+    private static boolean hasMore(Object result) {
+        try {
+            List<?> searchTabs = Reflect.on(result).field("searchTabs").get();
+            if (searchTabs == null || searchTabs.isEmpty()) {
+                return false;
+            }
+            return Reflect.on(searchTabs.get(0)).field("hasMore").get();
+        } catch (Throwable t) {
+            return true;
+        }
+    }
+
+    /**
+     * 生成缓冲区key
+     */
+    private static String key(String keyword, int page) {
+        return page + "\u0000" + keyword;
+    }
+
+    /**
+     * 获取预取统计（用于/stats接口）
+     * @return 统计信息
+     */
+    public static Map<String, Object> snapshot() {
+        long hits = HITS.sum();
+        long misses = MISSES.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("issued", ISSUED.sum());
+        result.put("hits", hits);
+        result.put("misses", misses);
+        result.put("wasted", WASTED.sum());
+        result.put("dropped", DROPPED.sum());
+        result.put("skippedBusy", BUSY.sum());
+        result.put("late", LATE.sum());
+        result.put("buffered", BUFFER.size());
+        result.put("inFlight", EXECUTOR.getActiveCount());
+        result.put("hitRate", hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+        return result;
+    }
+
+    /**
+     * 预取条目
+     */
+    private static class Entry {
+        // 预取任务
+        final Future<Object> future;
+        // 创建时间（纳秒）
+        final long createdNanos;
+
+        Entry(Future<Object> future, long createdNanos) {
+            this.future = future;
+            this.createdNanos = createdNanos;
+        }
+
+        boolean isExpired(long now) {
+            return now - createdNanos > ENTRY_TTL_NANOS;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.xxhy.fqhelper.web;
+
+/**
+ * 已序列化的JSON响应体
+ * 磁盘缓存命中时直接返回缓存的JSON字节，由{@link ResponseFormat}按协商格式原样输出或转码，无需重新序列化模型对象
+ */
+public class SerializedJson {
+
+    // 非格式化的UTF-8 JSON字节
+    final byte[] bytes;
+
+    SerializedJson(byte[] bytes) {
+        this.bytes = bytes;
+    }
+}
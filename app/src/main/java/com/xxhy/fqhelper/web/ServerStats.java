@@ -0,0 +1,296 @@
+package com.xxhy.fqhelper.web;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * HTTP服务统计类
+ * 使用无锁计数器（LongAdder）记录请求数、限流次数等信息，耗时记录在无锁直方图（{@link LatencyHistogram}）中，
+ * 请求处理路径上只做累加，汇总工作在读取统计（/stats接口、模块设置中的实时面板）时进行
+ */
+public class ServerStats {
+
+    // 服务启动以来的请求总数
+    private static final LongAdder TOTAL_REQUESTS = new LongAdder();
+    // 各路由的请求数：路由路径 -> 计数
+    private static final ConcurrentHashMap<String, LongAdder> ROUTE_REQUESTS = new ConcurrentHashMap<>();
+    // 各路由的错误数：路由路径 -> (错误码 -> 计数)
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<ApiError.Code, LongAdder>> ROUTE_ERRORS = new ConcurrentHashMap<>();
+    // 限流排队次数
+    private static final LongAdder THROTTLE_QUEUED = new LongAdder();
+    // 限流拒绝次数
+    private static final LongAdder THROTTLE_REJECTED = new LongAdder();
+    // 各路由的处理耗时（从匹配路由到响应构建完成，含限流排队、上游调用和序列化）：路由路径 -> 直方图
+    private static final ConcurrentHashMap<String, LatencyHistogram> ROUTE_LATENCY = new ConcurrentHashMap<>();
+    // 响应序列化耗时（含压缩）
+    private static volatile LatencyHistogram serialization = new LatencyHistogram();
+    // 各上游方法的调用统计：上游方法（类名#方法名） -> 统计
+    private static final ConcurrentHashMap<String, UpstreamStats> UPSTREAM = new ConcurrentHashMap<>();
+    // 服务启动时间（毫秒）
+    private static final long START_TIME_MILLIS = System.currentTimeMillis();
+    // 统计开始时间（毫秒，重置统计时更新）
+    private static volatile long statsSinceMillis = START_TIME_MILLIS;
+    // 统计开始时间（System.nanoTime()基准，用于计算速率）
+    private static volatile long statsSinceNanos = System.nanoTime();
+
+    /**
+     * 私有构造方法，禁止实例化（工具类设计）
+     */
+    private ServerStats() {}
+
+    /**
+     * 记录一次路由请求
+     * @param route 匹配到的路由路径
+     */
+    public static void recordRequest(String route) {
+        TOTAL_REQUESTS.increment();
+        ROUTE_REQUESTS.computeIfAbsent(route, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * 记录一次错误响应
+     * @param route 匹配到的路由路径
+     * @param code 错误码
+     */
+    public static void recordError(String route, ApiError.Code code) {
+        ROUTE_ERRORS.computeIfAbsent(route, k -> new ConcurrentHashMap<>())
+            .computeIfAbsent(code, k -> new LongAdder())
+            .increment();
+    }
+
+    /**
+     * 记录一次限流
+     * @param queued true-排队后放行，false-直接拒绝
+     */
+    public static void recordThrottled(boolean queued) {
+        if (queued) {
+            THROTTLE_QUEUED.increment();
+        } else {
+            THROTTLE_REJECTED.increment();
+        }
+    }
+
+    /**
+     * 记录一次路由请求的处理耗时
+     * @param route 匹配到的路由路径
+     * @param nanos 耗时（纳秒）
+     */
+    public static void recordLatency(String route, long nanos) {
+        getOrCreate(ROUTE_LATENCY, route, k -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * 记录一次响应序列化耗时
+     * @param nanos 耗时（纳秒）
+     */
+    public static void recordSerialization(long nanos) {
+        serialization.record(nanos);
+    }
+
+    /**
+     * 记录一次上游调用
+     * @param target 上游方法（类名#方法名）
+     * @param nanos 调用耗时（纳秒）
+     * @param outcome 调用结果：超时或上游失败计为错误；客户端断开等与上游无关的结果只计调用数，不记录耗时
+     */
+    public static void recordUpstream(String target, long nanos, AdaptiveLimiter.Outcome outcome) {
+        UpstreamStats stats = getOrCreate(UPSTREAM, target, k -> new UpstreamStats());
+        stats.calls.increment();
+        if (outcome != AdaptiveLimiter.Outcome.IGNORED) {
+            stats.latency.record(nanos);
+        }
+        if (outcome == AdaptiveLimiter.Outcome.DROPPED) {
+            stats.errors.increment();
+        }
+    }
+
+    /**
+     * 记录一次未发出的上游调用（熔断中或并发已满），计为错误
+     * @param target 上游方法（类名#方法名）
+     */
+    public static void recordUpstreamRejected(String target) {
+        UpstreamStats stats = getOrCreate(UPSTREAM, target, k -> new UpstreamStats());
+        stats.calls.increment();
+        stats.errors.increment();
+    }
+
+    /**
+     * 重置统计：清空请求数、错误数、限流次数及各项耗时，统计开始时间更新为当前时间
+     * 与并发记录之间不加锁，重置瞬间正在记录的少量数据可能计入旧统计而丢失
+     */
+    public static void reset() {
+        TOTAL_REQUESTS.reset();
+        ROUTE_REQUESTS.clear();
+        ROUTE_ERRORS.clear();
+        THROTTLE_QUEUED.reset();
+        THROTTLE_REJECTED.reset();
+        ROUTE_LATENCY.clear();
+        serialization = new LatencyHistogram();
+        UPSTREAM.clear();
+        statsSinceMillis = System.currentTimeMillis();
+        statsSinceNanos = System.nanoTime();
+    }
+
+    /**
+     * 获取统计开始时间（重置统计后更新）
+     * @return System.nanoTime()基准的时间
+     */
+    static long statsSinceNanos() {
+        return statsSinceNanos;
+    }
+
+    /**
+     * 获取请求总数
+     * @return 统计开始以来的请求总数
+     */
+    static long totalRequests() {
+        return TOTAL_REQUESTS.sum();
+    }
+
+    /**
+     * 获取限流次数
+     * @return 依次为排队后放行的次数、直接拒绝的次数
+     */
+    static long[] throttleCounts() {
+        return new long[] {THROTTLE_QUEUED.sum(), THROTTLE_REJECTED.sum()};
+    }
+
+    /**
+     * 复制各路由的处理耗时直方图
+     * @return 路由路径 -> 各桶计数
+     */
+    static Map<String, long[]> routeLatencyCounts() {
+        Map<String, long[]> result = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : ROUTE_LATENCY.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().counts());
+        }
+        return result;
+    }
+
+    /**
+     * 复制响应序列化耗时直方图
+     * @return 各桶计数
+     */
+    static long[] serializationCounts() {
+        return serialization.counts();
+    }
+
+    /**
+     * 复制所有上游方法合计的调用耗时直方图，并统计调用数和错误数
+     * @param callsAndErrors 长度为2的数组，依次写入调用数和错误数
+     * @return 各桶计数
+     */
+    static long[] upstreamCounts(long[] callsAndErrors) {
+        long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+        long calls = 0;
+        long errors = 0;
+        for (UpstreamStats stats : UPSTREAM.values()) {
+            long[] targetCounts = stats.latency.counts();
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += targetCounts[i];
+            }
+            calls += stats.calls.sum();
+            errors += stats.errors.sum();
+        }
+        callsAndErrors[0] = calls;
+        callsAndErrors[1] = errors;
+        return counts;
+    }
+
+    /**
+     * 汇总当前统计信息
+     * @return 统计信息（用于序列化为JSON）
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("uptimeSeconds", (System.currentTimeMillis() - START_TIME_MILLIS) / 1000);
+        result.put("statsSince", statsSinceMillis);
+        result.put("totalRequests", TOTAL_REQUESTS.sum());
+
+        Map<String, Long> routes = new LinkedHashMap<>();
+        for (Map.Entry<String, LongAdder> entry : ROUTE_REQUESTS.entrySet()) {
+            routes.put(entry.getKey(), entry.getValue().sum());
+        }
+        result.put("routes", routes);
+
+        Map<String, Map<String, Long>> errors = new LinkedHashMap<>();
+        for (Map.Entry<String, ConcurrentHashMap<ApiError.Code, LongAdder>> entry : ROUTE_ERRORS.entrySet()) {
+            Map<String, Long> codes = new LinkedHashMap<>();
+            for (Map.Entry<ApiError.Code, LongAdder> codeEntry : entry.getValue().entrySet()) {
+                codes.put(codeEntry.getKey().getDescription(), codeEntry.getValue().sum());
+            }
+            errors.put(entry.getKey(), codes);
+        }
+        result.put("errors", errors);
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : ROUTE_LATENCY.entrySet()) {
+            latency.put(entry.getKey(), latencySummary(entry.getValue().counts()));
+        }
+        result.put("latency", latency);
+        result.put("serialization", latencySummary(serialization.counts()));
+
+        Map<String, Object> upstream = new LinkedHashMap<>();
+        for (Map.Entry<String, UpstreamStats> entry : UPSTREAM.entrySet()) {
+            UpstreamStats stats = entry.getValue();
+            Map<String, Object> item = latencySummary(stats.latency.counts());
+            item.put("calls", stats.calls.sum());
+            item.put("errors", stats.errors.sum());
+            upstream.put(entry.getKey(), item);
+        }
+        result.put("upstream", upstream);
+
+        Map<String, Object> throttle = new LinkedHashMap<>();
+        throttle.put("queued", THROTTLE_QUEUED.sum());
+        throttle.put("rejected", THROTTLE_REJECTED.sum());
+        throttle.put("clients", RateLimiter.getInstance().snapshot());
+        result.put("throttle", throttle);
+        result.put("circuitBreakers", CircuitBreaker.snapshot());
+        result.put("concurrencyLimits", AdaptiveLimiter.snapshot());
+        result.put("searchPrefetch", SearchPrefetcher.snapshot());
+        result.put("bookshelfWatcher", BookshelfWatcher.snapshot());
+        result.put("diskCache", DiskCache.snapshot());
+        result.put("compression", ContentEncoding.snapshot());
+        result.put("localSearch", LocalSearchIndex.snapshot());
+        result.put("multiPageSearch", SearchMerger.snapshot());
+        result.put("rpcCapture", RpcCapture.snapshot());
+        return result;
+    }
+
+    /**
+     * 汇总直方图的样本数和百分位耗时
+     * @param counts 各桶计数
+     * @return 汇总信息
+     */
+    private static Map<String, Object> latencySummary(long[] counts) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", LatencyHistogram.total(counts));
+        summary.put("p50Millis", LatencyHistogram.percentileMillis(counts, 0.50));
+        summary.put("p99Millis", LatencyHistogram.percentileMillis(counts, 0.99));
+        return summary;
+    }
+
+    /**
+     * 获取或创建统计项：已存在时只做一次无锁读取，避免computeIfAbsent在部分版本上对已有键也加锁
+     */
+    private static <V> V getOrCreate(ConcurrentMap<String, V> map, String key, Function<String, V> factory) {
+        V value = map.get(key);
+        return value != null ? value : map.computeIfAbsent(key, factory);
+    }
+
+    /**
+     * 单个上游方法的调用统计
+     */
+    private static class UpstreamStats {
+        // 调用数（含未发出的调用）
+        final LongAdder calls = new LongAdder();
+        // 错误数（超时、上游失败、熔断中或并发已满）
+        final LongAdder errors = new LongAdder();
+        // 调用耗时
+        final LatencyHistogram latency = new LatencyHistogram();
+    }
+}
@@ -0,0 +1,116 @@
+package com.xxhy.fqhelper.web;
+
+import android.net.LocalServerSocket;
+import android.net.LocalSocket;
+import android.net.LocalSocketAddress;
+import com.xxhy.fqhelper.utils.LogUtils;
+import java.io.File;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Unix域套接字监听器
+ * 与TCP端口并行运行，接受同一设备上的本地客户端连接并交给HttpServer处理，路由与TCP完全一致；
+ * 本地客户端无需经过回环TCP协议栈，节省建立连接和收发数据的系统调用开销
+ *
+ * <p>地址格式：以@开头表示抽象命名空间（如@fqhelper），其余视为文件系统路径（如/data/data/包名/files/fqhelper.sock）
+ */
+class UnixSocketListener implements Runnable {
+
+    // 抽象命名空间地址前缀
+    private static final String ABSTRACT_PREFIX = "@";
+
+    // 监听地址（配置原文）
+    private final String address;
+    // 套接字地址
+    private final LocalSocketAddress socketAddress;
+    // 连接处理回调
+    private final Consumer<LocalSocket> clientHandler;
+    // 服务端套接字
+    private LocalServerSocket serverSocket;
+    // 文件系统命名空间下绑定的套接字（抽象命名空间为null）
+    private LocalSocket boundSocket;
+    // 是否已停止
+    private volatile boolean stopped;
+
+    /**
+     * 构造方法
+     * @param address 监听地址（@开头为抽象命名空间，否则为文件系统路径）
+     * @param clientHandler 连接处理回调（在监听线程中调用，需自行切换到处理线程）
+     */
+    UnixSocketListener(String address, Consumer<LocalSocket> clientHandler) {
+        this.address = address;
+        this.socketAddress = address.startsWith(ABSTRACT_PREFIX)
+            ? new LocalSocketAddress(address.substring(ABSTRACT_PREFIX.length()), LocalSocketAddress.Namespace.ABSTRACT)
+            : new LocalSocketAddress(address, LocalSocketAddress.Namespace.FILESYSTEM);
+        this.clientHandler = clientHandler;
+    }
+
+    /**
+     * 绑定地址并启动监听线程
+     * @throws IOException 地址已被占用或无权限
+     */
+    void start() throws IOException {
+        if (socketAddress.getNamespace() == LocalSocketAddress.Namespace.ABSTRACT) {
+            serverSocket = new LocalServerSocket(socketAddress.getName());
+        } else {
+            // 删除上次进程遗留的套接字文件，否则绑定失败
+            File socketFile = new File(address);
+            if (socketFile.exists() && !socketFile.delete()) {
+                throw new IOException("无法删除已存在的套接字文件：" + address);
+            }
+            boundSocket = new LocalSocket(LocalSocket.SOCKET_STREAM);
+            boundSocket.bind(socketAddress);
+            serverSocket = new LocalServerSocket(boundSocket.getFileDescriptor());
+        }
+
+        Thread thread = new Thread(this, "fqhelper-uds-listener");
+        thread.setDaemon(true);
+        thread.start();
+        LogUtils.logI("[UnixSocketListener.start] 已监听Unix域套接字：" + address);
+    }
+
+    /**
+     * 接受连接循环
+     */
+    @Override
+    public void run() {
+        while (!stopped) {
+            try {
+                LocalSocket client = serverSocket.accept();
+                if (stopped) {
+                    client.close();
+                    break;
+                }
+                clientHandler.accept(client);
+            } catch (IOException e) {
+                if (!stopped) {
+                    LogUtils.logE("[UnixSocketListener.run] 接受连接失败", e);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * 停止监听并释放地址
+     * LocalServerSocket关闭后不会唤醒阻塞中的accept，因此先连接一次自身使监听线程退出
+     */
+    void stop() {
+        stopped = true;
+        try (LocalSocket wakeUp = new LocalSocket()) {
+            wakeUp.connect(socketAddress);
+        } catch (IOException ignored) {
+            // 监听线程已退出
+        }
+        try {
+            serverSocket.close();
+            if (boundSocket != null) {
+                boundSocket.close();
+                new File(address).delete();
+            }
+        } catch (IOException e) {
+            LogUtils.logE("[UnixSocketListener.stop] 关闭Unix域套接字失败", e);
+        }
+    }
+}
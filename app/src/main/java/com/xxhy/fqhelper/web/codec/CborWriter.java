@@ -0,0 +1,295 @@
+package com.xxhy.fqhelper.web.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CBOR（RFC 8949）流式写入器
+ * 继承Gson的JsonWriter，Gson的各类TypeAdapter可以直接把模型对象写成CBOR，与JSON共用同一套序列化逻辑；
+ * 数组和对象使用不定长编码，无需预先知道元素个数，边遍历模型边输出
+ *
+ * <p>注意：不依赖Android API，可在JVM上直接用于基准测试
+ */
+public class CborWriter extends JsonWriter {
+
+    // CBOR主类型
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_TEXT = 3;
+
+    // 特殊值
+    private static final int BEGIN_INDEFINITE_ARRAY = 0x9f;
+    private static final int BEGIN_INDEFINITE_MAP = 0xbf;
+    private static final int BREAK = 0xff;
+    private static final int FALSE = 0xf4;
+    private static final int TRUE = 0xf5;
+    private static final int NULL = 0xf6;
+    private static final int FLOAT32 = 0xfa;
+    private static final int FLOAT64 = 0xfb;
+
+    // 父类要求非空Writer，但所有输出都由本类直接写入OutputStream
+    private static final Writer UNUSED_WRITER = new Writer() {
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    };
+
+    // 输出流
+    private final OutputStream out;
+    // 暂存的字段名（值为null且不序列化null时需要连同字段名一起丢弃）
+    private String deferredName;
+    // 当前嵌套深度
+    private int depth;
+
+    /**
+     * 构造方法
+     * @param out CBOR输出流（建议使用带缓冲的流）
+     */
+    public CborWriter(OutputStream out) {
+        super(UNUSED_WRITER);
+        this.out = out;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        writeDeferredName();
+        out.write(BEGIN_INDEFINITE_ARRAY);
+        depth++;
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        return endContainer();
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        writeDeferredName();
+        out.write(BEGIN_INDEFINITE_MAP);
+        depth++;
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        return endContainer();
+    }
+
+    /**
+     * 结束当前数组或对象
+     */
+    private JsonWriter endContainer() throws IOException {
+        if (depth == 0 || deferredName != null) {
+            throw new IllegalStateException("CBOR嵌套结构不匹配");
+        }
+        out.write(BREAK);
+        depth--;
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        if (deferredName != null || depth == 0) {
+            throw new IllegalStateException("字段名位置错误：" + name);
+        }
+        deferredName = name;
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        writeDeferredName();
+        writeText(value);
+        return this;
+    }
+
+    /**
+     * 写入原始JSON：解析后逐个记号转写为CBOR
+     * @param value JSON文本（为null时写入null）
+     */
+    @Override
+    public JsonWriter jsonValue(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        JsonTranscoder.transcode(new JsonReader(new StringReader(value)), this);
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        if (deferredName != null) {
+            if (!getSerializeNulls()) {
+                // 与JsonWriter行为一致：不序列化null时连同字段名一起丢弃
+                deferredName = null;
+                return this;
+            }
+            writeDeferredName();
+        }
+        out.write(NULL);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        writeDeferredName();
+        out.write(value ? TRUE : FALSE);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Boolean value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        return value(value.booleanValue());
+    }
+
+    @Override
+    public JsonWriter value(float value) throws IOException {
+        writeDeferredName();
+        out.write(FLOAT32);
+        writeInt(Float.floatToIntBits(value));
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        float narrowed = (float) value;
+        if (narrowed == value || Double.isNaN(value)) {
+            // 可无损表示为单精度时使用4字节编码
+            return value(narrowed);
+        }
+        writeDeferredName();
+        out.write(FLOAT64);
+        writeLong(Double.doubleToLongBits(value));
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        writeDeferredName();
+        if (value >= 0) {
+            writeHeader(MAJOR_UNSIGNED, value);
+        } else {
+            // 负整数编码为 -1 - n
+            writeHeader(MAJOR_NEGATIVE, -1 - value);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            return value(value.longValue());
+        }
+        if (value instanceof Float) {
+            return value(value.floatValue());
+        }
+        if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64) {
+            return value(value.longValue());
+        }
+        if (!(value instanceof Double) && !(value instanceof BigDecimal)) {
+            // LazilyParsedNumber等：整数按整数编码，其余按浮点数编码
+            String text = value.toString();
+            try {
+                return value(Long.parseLong(text));
+            } catch (NumberFormatException e) {
+                // 非整数
+            }
+        }
+        return value(value.doubleValue());
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+        if (depth != 0) {
+            throw new IOException("CBOR文档不完整");
+        }
+    }
+
+    /**
+     * 写出暂存的字段名
+     */
+    private void writeDeferredName() throws IOException {
+        if (deferredName != null) {
+            writeText(deferredName);
+            deferredName = null;
+        }
+    }
+
+    /**
+     * 写入UTF-8文本
+     */
+    private void writeText(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeHeader(MAJOR_TEXT, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 写入数据项头部（主类型 + 长度/数值），按数值大小选择最短编码
+     */
+    private void writeHeader(int majorType, long value) throws IOException {
+        int major = majorType << 5;
+        if (value < 24) {
+            out.write(major | (int) value);
+        } else if (value < 0x100) {
+            out.write(major | 24);
+            out.write((int) value);
+        } else if (value < 0x10000) {
+            out.write(major | 25);
+            out.write((int) (value >>> 8));
+            out.write((int) value);
+        } else if (value < 0x100000000L) {
+            out.write(major | 26);
+            writeInt((int) value);
+        } else {
+            out.write(major | 27);
+            writeLong(value);
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private void writeLong(long value) throws IOException {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+}
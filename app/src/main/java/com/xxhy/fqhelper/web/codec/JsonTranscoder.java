@@ -0,0 +1,84 @@
+package com.xxhy.fqhelper.web.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * JSON记号转写工具
+ * 从JsonReader逐个读取记号并写入任意JsonWriter（如{@link CborWriter}），不构建JSON树，
+ * 用于把已序列化的JSON转为其他格式
+ *
+ * <p>注意：不依赖Android API，可在JVM上直接用于基准测试
+ */
+public final class JsonTranscoder {
+
+    /**
+     * 私有构造方法，禁止实例化（工具类设计）
+     */
+    private JsonTranscoder() {}
+
+    /**
+     * 转写一个完整的JSON值（对象、数组或单个基本值）
+     * @param reader JSON读取器
+     * @param writer 目标写入器
+     * @throws IOException 读写失败或JSON格式错误
+     */
+    public static void transcode(JsonReader reader, JsonWriter writer) throws IOException {
+        int depth = 0;
+        do {
+            switch (reader.peek()) {
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    writer.beginArray();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    reader.endArray();
+                    writer.endArray();
+                    depth--;
+                    break;
+                case BEGIN_OBJECT:
+                    reader.beginObject();
+                    writer.beginObject();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    reader.endObject();
+                    writer.endObject();
+                    depth--;
+                    break;
+                case NAME:
+                    writer.name(reader.nextName());
+                    break;
+                case STRING:
+                    writer.value(reader.nextString());
+                    break;
+                case NUMBER:
+                    writer.value(parseNumber(reader.nextString()));
+                    break;
+                case BOOLEAN:
+                    writer.value(reader.nextBoolean());
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    writer.nullValue();
+                    break;
+                default:
+                    return;
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * 解析JSON数字：整数保持为long，其余使用BigDecimal以保留原始精度
+     */
+    private static Number parseNumber(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return new BigDecimal(text);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.xxhy.fqhelper.web.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 原生流式压缩器（zstd / brotli）
+ * 压缩由native-lib中静态链接的zstd和brotli完成，Java层与原生层之间通过直接缓冲区（DirectByteBuffer）传递数据，
+ * 原生层直接读写缓冲区内存，不复制Java数组
+ *
+ * <p>注意：实例非线程安全，同一时间只能由一个线程使用；不依赖Android API，可在JVM上直接用于基准测试
+ */
+public final class NativeCompressor implements Closeable {
+
+    /**
+     * 压缩算法（序号与原生层一致）
+     */
+    public enum Algorithm {
+        ZSTD,
+        BROTLI
+    }
+
+    // 原生库名称
+    private static final String LIBRARY_NAME = "native-lib";
+    // nativeCompress返回值中的完成标记位
+    private static final long FINISHED_FLAG = 1L << 31;
+    // nativeCompress返回值中输出字节数的掩码
+    private static final long PRODUCED_MASK = FINISHED_FLAG - 1;
+    // 一次性压缩时使用的缓冲区大小
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // 原生库是否加载成功且包含压缩器
+    private static final boolean AVAILABLE = loadLibrary();
+
+    // 压缩算法
+    private final Algorithm algorithm;
+    // 原生压缩器句柄（关闭后为0）
+    private long handle;
+    // 一次性压缩使用的输入、输出缓冲区（首次使用时创建）
+    private ByteBuffer inBuffer;
+    private ByteBuffer outBuffer;
+    private byte[] chunk;
+
+    /**
+     * 创建压缩器
+     * @param algorithm 压缩算法
+     * @param level 压缩级别（zstd：1~22，brotli：0~11）
+     * @throws IOException 原生库不可用或创建失败
+     */
+    public NativeCompressor(Algorithm algorithm, int level) throws IOException {
+        if (!AVAILABLE) {
+            throw new IOException("原生库" + LIBRARY_NAME + "不可用");
+        }
+        this.algorithm = algorithm;
+        this.handle = nativeCreate(algorithm.ordinal(), level);
+        if (handle == 0) {
+            throw new IOException("创建" + algorithm + "压缩器失败");
+        }
+    }
+
+    /**
+     * 原生库是否可用（已加载且包含压缩器的JNI方法）
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * 获取压缩算法
+     */
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 流式压缩
+     * 消耗输入缓冲区position~limit之间的数据，向输出缓冲区position~limit之间写入压缩数据，并推进两个缓冲区的position。
+     * 输出缓冲区写满时可能只消耗部分输入，调用方需要清空输出后继续调用
+     * @param in 输入（直接缓冲区）
+     * @param out 输出（直接缓冲区）
+     * @param finish 输入是否已全部提供（为true时结束压缩流）
+     * @return 压缩流是否已全部输出（仅finish为true时可能返回true）
+     * @throws IOException 压缩失败
+     */
+    public boolean compress(ByteBuffer in, ByteBuffer out, boolean finish) throws IOException {
+        if (!in.isDirect() || !out.isDirect()) {
+            throw new IllegalArgumentException("只支持直接缓冲区");
+        }
+        ensureOpen();
+        long result = nativeCompress(handle, in, in.position(), in.remaining(), out, out.position(), out.remaining(), finish);
+        if (result < 0) {
+            throw new IOException(algorithm + "压缩失败");
+        }
+        in.position(in.position() + (int) (result >>> 32));
+        out.position(out.position() + (int) (result & PRODUCED_MASK));
+        return (result & FINISHED_FLAG) != 0;
+    }
+
+    /**
+     * 一次性压缩整段数据，完成后重置压缩器以便复用
+     * @param data 原始数据
+     * @return 压缩后的数据
+     * @throws IOException 压缩失败
+     */
+    public byte[] compress(byte[] data) throws IOException {
+        if (inBuffer == null) {
+            inBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            outBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            chunk = new byte[BUFFER_SIZE];
+        }
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        int offset = 0;
+        inBuffer.clear();
+        inBuffer.limit(0);
+        boolean finished = false;
+        while (!finished) {
+            // 上一批输入消耗完后再补充
+            if (!inBuffer.hasRemaining() && offset < data.length) {
+                int length = Math.min(BUFFER_SIZE, data.length - offset);
+                inBuffer.clear();
+                inBuffer.put(data, offset, length);
+                inBuffer.flip();
+                offset += length;
+            }
+            outBuffer.clear();
+            finished = compress(inBuffer, outBuffer, offset == data.length);
+            outBuffer.flip();
+            int produced = outBuffer.remaining();
+            outBuffer.get(chunk, 0, produced);
+            result.write(chunk, 0, produced);
+        }
+        reset();
+        return result.toByteArray();
+    }
+
+    /**
+     * 重置压缩器，丢弃未完成的压缩流，保留已分配的上下文
+     * @throws IOException 重置失败
+     */
+    public void reset() throws IOException {
+        ensureOpen();
+        if (!nativeReset(handle)) {
+            throw new IOException("重置" + algorithm + "压缩器失败");
+        }
+    }
+
+    /**
+     * 释放原生压缩器
+     */
+    @Override
+    public void close() {
+        if (handle != 0) {
+            nativeDestroy(handle);
+            handle = 0;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (handle == 0) {
+            throw new IOException("压缩器已关闭");
+        }
+    }
+
+    /**
+     * 加载原生库，并创建、释放一个压缩器确认JNI方法存在
+     * （构建时缺少zstd/brotli源码的native-lib不包含压缩器，此时调用原生方法会抛出UnsatisfiedLinkError）
+     */
+    private static boolean loadLibrary() {
+        try {
+            System.loadLibrary(LIBRARY_NAME);
+            long probe = nativeCreate(Algorithm.ZSTD.ordinal(), 1);
+            if (probe == 0) {
+                return false;
+            }
+            nativeDestroy(probe);
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
+
+    private static native long nativeCreate(int algorithm, int level);
+
+    private static native long nativeCompress(long handle, ByteBuffer in, int inOffset, int inLength,
+                                              ByteBuffer out, int outOffset, int outLength, boolean finish);
+
+    private static native boolean nativeReset(long handle);
+
+    private static native void nativeDestroy(long handle);
+}
@@ -57,9 +57,8 @@ public class DragonServiceHooker implements XposedInterface.Hooker {
         SPUtils sp = SPUtils.getInstance(DragonGlobals.getDragonApplication(), SPConstants.SP_NAME);
         if (sp.getBoolean(SPConstants.START_WITH_SERVICE, SPConstants.DEFAULT_START_WITH_SERVICE)) {
             try {
-                // 获取HTTP服务单例并重启（确保服务状态正确）
-                HttpServer httpServer = HttpServer.getInstance();
-                httpServer.restart();
+                // 按当前配置平滑重启HTTP服务（已在运行且配置未变化时不做任何操作）
+                HttpServer.restart();
 
                 // 显示服务启动成功提示，包含本地IP和端口
                 String ipAddress = NetworkUtils.getIPAddress(true); // 获取本地IPv4地址
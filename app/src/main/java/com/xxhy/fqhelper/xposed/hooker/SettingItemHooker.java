@@ -10,6 +10,8 @@ import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.GradientDrawable;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.PowerManager;
 import android.provider.Settings;
 import android.text.TextUtils;
@@ -22,8 +24,10 @@ import android.view.Window;
 import android.view.WindowInsetsController;
 import android.view.WindowManager;
 import android.view.inputmethod.EditorInfo;
+import android.widget.Button;
 import android.widget.EditText;
 import android.widget.LinearLayout;
+import android.widget.ScrollView;
 import android.widget.Switch;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -34,6 +38,8 @@ import com.xxhy.fqhelper.utils.LogUtils;
 import com.xxhy.fqhelper.utils.SPUtils;
 import com.xxhy.fqhelper.utils.ToastUtils;
 import com.xxhy.fqhelper.web.HttpServer;
+import com.xxhy.fqhelper.web.LiveStats;
+import com.xxhy.fqhelper.web.ServerStats;
 import com.xxhy.fqhelper.xposed.global.DragonGlobals;
 
 import io.github.libxposed.api.XposedInterface;
@@ -41,12 +47,17 @@ import io.github.libxposed.api.annotations.AfterInvocation;
 import io.github.libxposed.api.annotations.BeforeInvocation;
 import io.github.libxposed.api.annotations.XposedHooker;
 
+import java.io.IOException;
+
 import org.joor.Reflect;
 
 /** Xposed钩子类 - 用于拦截"FQ Helper"设置项的点击事件，显示模块配置对话框 主要功能：通过Hook目标应用的设置项，注入自定义点击事件，展示配置界面供用户修改模块参数 */
 @XposedHooker
 public class SettingItemHooker implements XposedInterface.Hooker {
 
+  // 服务状态面板的刷新间隔（毫秒）
+  private static final long STATS_REFRESH_MILLIS = 1000;
+
   /**
    * 钩子前置处理方法 拦截设置项的点击事件，当匹配到"FQ Helper"项时，替换为自定义点击事件（显示配置对话框）
    *
@@ -162,11 +173,23 @@ public class SettingItemHooker implements XposedInterface.Hooker {
     // 隐藏调试模式开关
     mainContainer.addView(debugModeSwitch);
 
-    // 4. 构建对话框
+    // 4. 添加服务状态区域（放在所有开关之后，saveConfig按位置查找开关）
+    // 区域标题
+    mainContainer.addView(createSectionTitle(context, "服务状态"));
+
+    // 实时统计面板
+    TextView statsView = createStatsView(context);
+    mainContainer.addView(statsView);
+
+    // 重置统计按钮
+    Button resetStatsButton = createResetStatsButton(context);
+    mainContainer.addView(resetStatsButton);
+
+    // 5. 构建对话框
     AlertDialog configDialog =
         buildConfigDialog(context, mainContainer, sp, portEditText);
 
-    // 5. 显示对话框并设置样式
+    // 6. 显示对话框并设置样式
     Window window = configDialog.getWindow();
     if (window != null) {
       WindowManager.LayoutParams params = window.getAttributes();
@@ -179,6 +202,8 @@ public class SettingItemHooker implements XposedInterface.Hooker {
       window.setSoftInputMode(WindowManager.LayoutParams.SOFT_INPUT_ADJUST_RESIZE);
     }
     configDialog.show();
+    // 对话框显示期间定时刷新服务状态，关闭后停止
+    bindStatsPanel(configDialog, statsView, resetStatsButton);
 
     // 显示对话框前设置模糊效果
     // Window window = configDialog.getWindow();
@@ -299,6 +324,83 @@ public class SettingItemHooker implements XposedInterface.Hooker {
     return switchView;
   }
 
+  /**
+   * 创建服务状态面板 等宽字体显示请求速率、各路由耗时、连接及排队情况等实时统计
+   *
+   * @param context 上下文
+   * @return 配置好的TextView
+   */
+  private static TextView createStatsView(Context context) {
+    TextView statsView = new TextView(context);
+    LinearLayout.LayoutParams params =
+        getLinearLayoutParams(
+            ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT, dpToPx(context, 8));
+    statsView.setLayoutParams(params);
+    statsView.setTypeface(android.graphics.Typeface.MONOSPACE);
+    statsView.setTextSize(10);
+    statsView.setTextColor(Color.parseColor("#333333"));
+    statsView.setTextIsSelectable(true); // 便于复制统计结果
+    return statsView;
+  }
+
+  /**
+   * 创建重置统计按钮（点击事件在{@link #bindStatsPanel}中设置）
+   *
+   * @param context 上下文
+   * @return 配置好的Button
+   */
+  private static Button createResetStatsButton(Context context) {
+    Button button = new Button(context);
+    LinearLayout.LayoutParams params =
+        getLinearLayoutParams(
+            ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT, 0);
+    params.gravity = Gravity.END;
+    button.setLayoutParams(params);
+    button.setText("重置统计");
+    button.setTextSize(13);
+    button.setAllCaps(false);
+    return button;
+  }
+
+  /**
+   * 绑定服务状态面板 对话框显示期间在主线程定时采样统计并刷新面板，对话框关闭后停止刷新
+   *
+   * <p>统计由HttpServer在请求处理时以无锁计数累加，速率和百分位在采样时计算，刷新不影响请求处理
+   *
+   * @param dialog 配置对话框
+   * @param statsView 服务状态面板
+   * @param resetButton 重置统计按钮
+   */
+  private static void bindStatsPanel(AlertDialog dialog, TextView statsView, Button resetButton) {
+    Handler handler = new Handler(Looper.getMainLooper());
+    LiveStats liveStats = new LiveStats();
+    Runnable refresh =
+        new Runnable() {
+          @Override
+          public void run() {
+            handler.removeCallbacks(this);
+            try {
+              statsView.setText(liveStats.sample());
+            } catch (Throwable t) {
+              // 读取统计失败时停止刷新，避免每秒重复输出错误
+              LogUtils.logE("[SettingItemHooker.bindStatsPanel] 读取服务统计失败", t);
+              statsView.setText("读取服务统计失败：" + t.getMessage());
+              return;
+            }
+            handler.postDelayed(this, STATS_REFRESH_MILLIS);
+          }
+        };
+
+    resetButton.setOnClickListener(
+        v -> {
+          ServerStats.reset();
+          refresh.run();
+          ToastUtils.show("统计已重置");
+        });
+    dialog.setOnDismissListener(d -> handler.removeCallbacks(refresh));
+    refresh.run();
+  }
+
   /**
    * 创建忽略电池优化开关 特殊开关，带点击事件处理（跳转到系统电池优化设置页面）
    *
@@ -357,10 +459,14 @@ public class SettingItemHooker implements XposedInterface.Hooker {
       LinearLayout mainContainer,
       SPUtils sp,
       EditText portEditText) {
+    // 内容较多时可滚动（服务状态面板在底部）
+    ScrollView scrollView = new ScrollView(context);
+    scrollView.addView(mainContainer);
+
     AlertDialog.Builder dialogBuilder = new AlertDialog.Builder(context);
     dialogBuilder
         .setTitle("FQ Helper 配置")
-        .setView(mainContainer)
+        .setView(scrollView)
         // 确定按钮 - 保存配置
         .setPositiveButton("确定", (dialog, which) -> saveConfig(context, sp, portEditText))
         // 取消按钮 - 关闭对话框
@@ -413,6 +519,16 @@ public class SettingItemHooker implements XposedInterface.Hooker {
 
     ToastUtils.show("配置已保存");
 
+    // 服务运行中时按新配置平滑重启（端口变化时在新端口启动，旧端口处理完进行中的请求后关闭）
+    if (HttpServer.getInstance().isAlive()) {
+      try {
+        HttpServer.restart();
+      } catch (IOException e) {
+        LogUtils.logE("[SettingItemHooker.saveConfig] 重启服务失败", e);
+        ToastUtils.show("重启服务失败：" + e.getMessage());
+      }
+    }
+
     if (debugModeSwitch.isChecked()) {
       ToastUtils.show("⚠️警告：启用模块调试后，将输出更详细的日志，且响应会以格式化 JSON 返回，可能导致传输速度变慢。");
     }
@@ -425,16 +541,13 @@ public class SettingItemHooker implements XposedInterface.Hooker {
    * @param sp SP存储工具
    */
   private static void handleImportBookSource(Context context, SPUtils sp) {
-    // 启动HTTP服务器（如未启动）
-    HttpServer httpServer = HttpServer.getInstance();
-    if (!httpServer.isAlive()) {
-      try {
-        httpServer.start();
-      } catch (Throwable t) {
-        LogUtils.logE("启动服务失败：", t);
-        Toast.makeText(context, "启动服务失败：" + t.getMessage(), Toast.LENGTH_SHORT).show();
-        return;
-      }
+    // 启动HTTP服务器（如未启动；已启动且配置未变化时不做任何操作）
+    try {
+      HttpServer.restart();
+    } catch (Throwable t) {
+      LogUtils.logE("启动服务失败：", t);
+      Toast.makeText(context, "启动服务失败：" + t.getMessage(), Toast.LENGTH_SHORT).show();
+      return;
     }
 
     // 生成书源导入链接
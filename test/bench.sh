@@ -0,0 +1,8 @@
+# 编译并运行响应格式基准测试（JSON / CBOR），样本为test目录下的*.json
+# 需要Gson jar：GSON_JAR=/path/to/gson.jar sh bench.sh
+cd "$(dirname "$0")"
+SRC=../app/src/main/java/com/xxhy/fqhelper/web/codec
+OUT=$(mktemp -d)
+javac -encoding UTF-8 -cp "$GSON_JAR" -d "$OUT" $SRC/*.java bench/*.java && \
+java -cp "$GSON_JAR:$OUT" FormatBenchmark .
+rm -rf "$OUT"
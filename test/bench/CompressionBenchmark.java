@@ -0,0 +1,117 @@
+import com.xxhy.fqhelper.web.codec.NativeCompressor;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 响应压缩基准测试
+ * 以test目录下的JSON样本作为响应体，比较java.util.zip（gzip，NanoHTTPD使用的默认级别）与native-lib中zstd、brotli的
+ * 压缩率和压缩速度；zstd、brotli的级别与ContentEncoding一致
+ *
+ * <p>用法：java -Djava.library.path=原生库目录 CompressionBenchmark [样本目录]（由compress_bench.sh编译运行）
+ */
+public class CompressionBenchmark {
+
+    // 预热轮数
+    private static final int WARMUP_ROUNDS = 10;
+    // 计时轮数
+    private static final int MEASURE_ROUNDS = 30;
+    // 与ContentEncoding一致的压缩级别
+    private static final int ZSTD_LEVEL = 3;
+    private static final int BROTLI_LEVEL = 5;
+    // zstd帧头魔数
+    private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd};
+
+    public static void main(String[] args) throws IOException {
+        if (!NativeCompressor.isAvailable()) {
+            System.err.println("未加载native-lib，请通过-Djava.library.path指定主机构建的库目录");
+            System.exit(1);
+        }
+        File dir = new File(args.length > 0 ? args[0] : ".");
+        File[] fixtures = dir.listFiles((d, name) -> name.endsWith(".json"));
+        if (fixtures == null || fixtures.length == 0) {
+            System.err.println("未找到JSON样本：" + dir.getAbsolutePath());
+            return;
+        }
+        Arrays.sort(fixtures);
+
+        try (NativeCompressor zstd = new NativeCompressor(NativeCompressor.Algorithm.ZSTD, ZSTD_LEVEL);
+             NativeCompressor brotli = new NativeCompressor(NativeCompressor.Algorithm.BROTLI, BROTLI_LEVEL)) {
+            System.out.printf("%-20s %-6s %10s %10s %8s %12s %10s%n",
+                "fixture", "codec", "raw", "encoded", "ratio", "encode(us)", "MB/s");
+            for (File fixture : fixtures) {
+                byte[] raw = Files.readAllBytes(fixture.toPath());
+
+                byte[] gzip = gzip(raw);
+                if (!Arrays.equals(raw, gunzip(gzip))) {
+                    throw new IllegalStateException("gzip往返结果不一致：" + fixture.getName());
+                }
+                byte[] zstdEncoded = zstd.compress(raw);
+                if (!Arrays.equals(ZSTD_MAGIC, Arrays.copyOf(zstdEncoded, ZSTD_MAGIC.length))) {
+                    throw new IllegalStateException("zstd帧头错误：" + fixture.getName());
+                }
+                byte[] brotliEncoded = brotli.compress(raw);
+                // 重置后再次压缩结果应完全一致
+                if (!Arrays.equals(brotliEncoded, brotli.compress(raw))) {
+                    throw new IllegalStateException("brotli重置后结果不一致：" + fixture.getName());
+                }
+
+                String name = fixture.getName();
+                print(name, "gzip", raw.length, gzip.length, measure(() -> gzip(raw)));
+                print(name, "zstd", raw.length, zstdEncoded.length, measure(() -> zstd.compress(raw)));
+                print(name, "br", raw.length, brotliEncoded.length, measure(() -> brotli.compress(raw)));
+            }
+        }
+    }
+
+    private static void print(String name, String codec, int raw, int encoded, long micros) {
+        double ratio = (double) raw / encoded;
+        double throughput = micros == 0 ? 0 : raw / (double) micros;
+        System.out.printf("%-20s %-6s %10d %10d %8.2f %12d %10.1f%n", name, codec, raw, encoded, ratio, micros, throughput);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream output = new GZIPOutputStream(buffer)) {
+            output.write(data);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length * 4);
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = input.read(chunk)) != -1) {
+                buffer.write(chunk, 0, read);
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 测量单次操作的平均耗时（微秒）
+     */
+    private static long measure(Task task) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / MEASURE_ROUNDS / 1000;
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        Object run() throws IOException;
+    }
+}
@@ -0,0 +1,196 @@
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonWriter;
+import com.xxhy.fqhelper.web.codec.CborWriter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * 响应格式基准测试
+ * 以test目录下的JSON样本作为模型数据，分别测量JSON与CBOR的编码耗时、解码耗时和体积
+ * 编码路径与HttpServer一致：Gson流式写入器直接从对象序列化
+ *
+ * <p>用法：java FormatBenchmark [样本目录]（由bench.sh编译运行）
+ */
+public class FormatBenchmark {
+
+    private static final Gson GSON = new Gson();
+    // 预热轮数
+    private static final int WARMUP_ROUNDS = 20;
+    // 计时轮数
+    private static final int MEASURE_ROUNDS = 50;
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : ".");
+        File[] fixtures = dir.listFiles((d, name) -> name.endsWith(".json"));
+        if (fixtures == null || fixtures.length == 0) {
+            System.err.println("未找到JSON样本：" + dir.getAbsolutePath());
+            return;
+        }
+        Arrays.sort(fixtures);
+
+        System.out.printf("%-20s %-6s %10s %12s %12s%n", "fixture", "format", "bytes", "encode(us)", "decode(us)");
+        for (File fixture : fixtures) {
+            String text = new String(Files.readAllBytes(fixture.toPath()), StandardCharsets.UTF_8);
+            JsonElement model;
+            try {
+                model = JsonParser.parseString(text);
+            } catch (RuntimeException e) {
+                continue;
+            }
+
+            byte[] json = encodeJson(model);
+            byte[] cbor = encodeCbor(model);
+            if (!model.equals(new CborReader(cbor).read())) {
+                throw new IllegalStateException("CBOR往返结果不一致：" + fixture.getName());
+            }
+
+            long jsonEncode = measure(() -> encodeJson(model));
+            long jsonDecode = measure(() -> JsonParser.parseString(new String(json, StandardCharsets.UTF_8)));
+            long cborEncode = measure(() -> encodeCbor(model));
+            long cborDecode = measure(() -> new CborReader(cbor).read());
+
+            String name = fixture.getName();
+            System.out.printf("%-20s %-6s %10d %12d %12d%n", name, "json", json.length, jsonEncode, jsonDecode);
+            System.out.printf("%-20s %-6s %10d %12d %12d%n", name, "cbor", cbor.length, cborEncode, cborDecode);
+        }
+    }
+
+    private static byte[] encodeJson(JsonElement model) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(8 * 1024);
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8))) {
+            GSON.toJson(model, writer);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static byte[] encodeCbor(JsonElement model) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(8 * 1024);
+        try (CborWriter writer = new CborWriter(new BufferedOutputStream(buffer))) {
+            GSON.toJson(model, writer);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 测量单次操作的平均耗时（微秒）
+     */
+    private static long measure(Task task) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / MEASURE_ROUNDS / 1000;
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        Object run() throws IOException;
+    }
+
+    /**
+     * 最小CBOR解码器（仅支持CborWriter输出的数据项），解码为Gson树以便与JSON解析对比
+     */
+    private static class CborReader {
+        private final byte[] data;
+        private int position;
+
+        CborReader(byte[] data) {
+            this.data = data;
+        }
+
+        JsonElement read() {
+            int initial = data[position++] & 0xff;
+            int major = initial >>> 5;
+            int info = initial & 0x1f;
+            switch (major) {
+                case 0:
+                    return new JsonPrimitive(new LazilyParsedNumber(Long.toString(readLength(info))));
+                case 1:
+                    return new JsonPrimitive(new LazilyParsedNumber(Long.toString(-1 - readLength(info))));
+                case 3: {
+                    int length = (int) readLength(info);
+                    String text = new String(data, position, length, StandardCharsets.UTF_8);
+                    position += length;
+                    return new JsonPrimitive(text);
+                }
+                case 4: {
+                    JsonArray array = new JsonArray();
+                    while ((data[position] & 0xff) != 0xff) {
+                        array.add(read());
+                    }
+                    position++;
+                    return array;
+                }
+                case 5: {
+                    JsonObject object = new JsonObject();
+                    while ((data[position] & 0xff) != 0xff) {
+                        String name = read().getAsString();
+                        object.add(name, read());
+                    }
+                    position++;
+                    return object;
+                }
+                case 7:
+                    return readSimple(info);
+                default:
+                    throw new IllegalStateException("不支持的CBOR主类型：" + major);
+            }
+        }
+
+        private JsonElement readSimple(int info) {
+            switch (info) {
+                case 20:
+                    return new JsonPrimitive(false);
+                case 21:
+                    return new JsonPrimitive(true);
+                case 22:
+                    return JsonNull.INSTANCE;
+                case 26:
+                    return number(Float.intBitsToFloat((int) readBytes(4)));
+                case 27:
+                    return number(Double.longBitsToDouble(readBytes(8)));
+                default:
+                    throw new IllegalStateException("不支持的CBOR简单值：" + info);
+            }
+        }
+
+        private JsonElement number(double value) {
+            // 与JSON解析结果保持同样的数值表示，便于往返校验
+            if (value == Math.rint(value) && !Double.isInfinite(value)) {
+                return new JsonPrimitive(new LazilyParsedNumber(Long.toString((long) value)));
+            }
+            return new JsonPrimitive(new LazilyParsedNumber(Double.toString(value)));
+        }
+
+        private long readLength(int info) {
+            if (info < 24) {
+                return info;
+            }
+            return readBytes(1 << (info - 24));
+        }
+
+        private long readBytes(int count) {
+            long value = 0;
+            for (int i = 0; i < count; i++) {
+                value = (value << 8) | (data[position++] & 0xff);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 上游RPC捕获文件分析
+ * 读取RpcCapture录制的捕获文件（格式见RpcCapture），按调用目标汇总调用次数、错误数、耗时分布和响应大小，
+ * 并给出整体的录制时长和请求速率；耗时可按比例缩放，用于预估回放时（rpc_replay_latency_scale）的延迟分布
+ *
+ * <p>用法：java RpcCaptureReport 捕获文件 [耗时缩放比例]（由rpc_capture.sh编译运行）
+ */
+public class RpcCaptureReport {
+
+    // 与RpcCapture一致的文件魔数、版本及记录状态
+    private static final int FILE_MAGIC = 0x46515243;
+    private static final int FILE_VERSION = 1;
+    private static final byte STATUS_ERROR = 1;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("用法：java RpcCaptureReport 捕获文件 [耗时缩放比例]");
+            System.exit(1);
+        }
+        double scale = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+
+        Map<String, Stats> targets = new TreeMap<>();
+        long firstMillis = Long.MAX_VALUE;
+        long lastMillis = Long.MIN_VALUE;
+        int total = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(args[0])))) {
+            if (input.readInt() != FILE_MAGIC || input.readInt() != FILE_VERSION) {
+                throw new IOException("不支持的捕获文件格式");
+            }
+            while (true) {
+                long startedAtMillis;
+                int latencyMicros;
+                byte status;
+                String target;
+                int rawLength;
+                int compressedLength;
+                try {
+                    startedAtMillis = input.readLong();
+                    latencyMicros = input.readInt();
+                    status = input.readByte();
+                    target = input.readUTF();
+                    input.readUTF();
+                    input.readFully(new byte[input.readInt()]);
+                    rawLength = input.readInt();
+                    compressedLength = input.readInt();
+                    input.readFully(new byte[compressedLength]);
+                } catch (EOFException e) {
+                    break;
+                }
+                Stats stats = targets.computeIfAbsent(target, k -> new Stats());
+                stats.add((long) (latencyMicros * scale), status == STATUS_ERROR, rawLength, compressedLength);
+                firstMillis = Math.min(firstMillis, startedAtMillis);
+                lastMillis = Math.max(lastMillis, startedAtMillis);
+                total++;
+            }
+        }
+        if (total == 0) {
+            System.out.println("捕获文件中没有记录");
+            return;
+        }
+
+        double seconds = Math.max(1, lastMillis - firstMillis) / 1000.0;
+        System.out.printf(Locale.ROOT, "records: %d, span: %.1fs, rate: %.2f/s, latency scale: %.2f%n",
+            total, seconds, total / seconds, scale);
+        System.out.printf("%-16s %7s %7s %9s %9s %9s %9s %10s %10s%n",
+            "target", "calls", "errors", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)", "avgRaw", "avgStored");
+        for (Map.Entry<String, Stats> entry : targets.entrySet()) {
+            Stats stats = entry.getValue();
+            long[] latencies = stats.sortedLatencies();
+            System.out.printf(Locale.ROOT, "%-16s %7d %7d %9.1f %9.1f %9.1f %9.1f %10d %10d%n",
+                shortName(entry.getKey()), latencies.length, stats.errors,
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                latencies[latencies.length - 1] / 1000.0,
+                stats.rawBytes / latencies.length, stats.storedBytes / latencies.length);
+        }
+    }
+
+    /**
+     * 过长的目标只保留末尾16个字符（用于对齐输出）
+     */
+    private static String shortName(String target) {
+        return target.length() <= 16 ? target : target.substring(target.length() - 16);
+    }
+
+    /**
+     * 计算百分位耗时（毫秒，最近秩法）
+     */
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1000.0;
+    }
+
+    /**
+     * 单个调用目标的统计
+     */
+    private static class Stats {
+        final List<Long> latencies = new ArrayList<>();
+        int errors;
+        long rawBytes;
+        long storedBytes;
+
+        void add(long latencyMicros, boolean error, int raw, int stored) {
+            latencies.add(latencyMicros);
+            if (error) {
+                errors++;
+            }
+            rawBytes += raw;
+            storedBytes += stored;
+        }
+
+        long[] sortedLatencies() {
+            long[] result = new long[latencies.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = latencies.get(i);
+            }
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
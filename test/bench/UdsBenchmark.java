@@ -0,0 +1,179 @@
+import android.net.LocalSocket;
+import android.net.LocalSocketAddress;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Unix域套接字基准测试
+ * 在设备上（由app_process启动）分别通过LocalSocket与回环TCP向HttpServer发送相同请求，比较每次新建连接和复用连接（keep-alive）的平均耗时，
+ * 并校验两种方式返回的状态行一致；客户端与服务在同一设备上，测得的是两种本地传输本身的差异，不经过adb转发
+ *
+ * <p>用法：app_process -Djava.class.path=uds.dex /system/bin UdsBenchmark 套接字地址 TCP端口 [请求路径] [轮数]（由uds.sh编译推送运行）
+ * 套接字地址与SP中的unix_socket一致：以@开头表示抽象命名空间，其余为文件系统路径
+ */
+public class UdsBenchmark {
+
+    // 预热轮数
+    private static final int WARMUP_ROUNDS = 20;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法：UdsBenchmark 套接字地址 TCP端口 [请求路径] [轮数]");
+            System.exit(1);
+        }
+        LocalSocketAddress unixAddress = args[0].startsWith("@")
+            ? new LocalSocketAddress(args[0].substring(1), LocalSocketAddress.Namespace.ABSTRACT)
+            : new LocalSocketAddress(args[0], LocalSocketAddress.Namespace.FILESYSTEM);
+        InetSocketAddress tcpAddress = new InetSocketAddress("127.0.0.1", Integer.parseInt(args[1]));
+        String path = args.length > 2 ? args[2] : "/hello";
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+
+        String unixStatus = statusLine(request(open(unixAddress), path, true));
+        String tcpStatus = statusLine(request(open(tcpAddress), path, true));
+        System.out.println("uds: " + unixStatus);
+        System.out.println("tcp: " + tcpStatus);
+        if (!unixStatus.equals(tcpStatus)) {
+            throw new IllegalStateException("两种连接方式的响应状态不一致");
+        }
+
+        System.out.printf("%-6s %-12s %12s%n", "socket", "mode", "avg(us)");
+        print("uds", "connect", measureConnect(unixAddress, path, rounds));
+        print("tcp", "connect", measureConnect(tcpAddress, path, rounds));
+        print("uds", "keep-alive", measureKeepAlive(unixAddress, path, rounds));
+        print("tcp", "keep-alive", measureKeepAlive(tcpAddress, path, rounds));
+    }
+
+    private static void print(String socket, String mode, long micros) {
+        System.out.printf(Locale.ROOT, "%-6s %-12s %12d%n", socket, mode, micros);
+    }
+
+    /**
+     * 建立连接（地址为LocalSocketAddress时使用Unix域套接字，否则使用TCP）
+     */
+    private static Connection open(Object address) throws IOException {
+        if (address instanceof LocalSocketAddress) {
+            LocalSocket socket = new LocalSocket();
+            socket.connect((LocalSocketAddress) address);
+            return new Connection(socket.getInputStream(), socket.getOutputStream(), socket);
+        }
+        Socket socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect((InetSocketAddress) address);
+        return new Connection(socket.getInputStream(), socket.getOutputStream(), socket);
+    }
+
+    /**
+     * 每个请求新建连接的平均耗时（微秒）
+     */
+    private static long measureConnect(Object address, String path, int rounds) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            request(open(address), path, true);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            request(open(address), path, true);
+        }
+        return (System.nanoTime() - start) / rounds / 1000;
+    }
+
+    /**
+     * 在同一连接上连续请求的平均耗时（微秒）
+     */
+    private static long measureKeepAlive(Object address, String path, int rounds) throws IOException {
+        try (Connection connection = open(address)) {
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                request(connection, path, false);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                request(connection, path, false);
+            }
+            return (System.nanoTime() - start) / rounds / 1000;
+        }
+    }
+
+    /**
+     * 发送GET请求并读取完整响应（要求响应带Content-Length）
+     * @param connection 连接
+     * @param path 请求路径
+     * @param close 是否在响应后关闭连接
+     * @return 响应头和响应体
+     */
+    private static byte[] request(Connection connection, String path, boolean close) throws IOException {
+        try {
+            String request = "GET " + path + " HTTP/1.1\r\nHost: localhost\r\n"
+                + (close ? "Connection: close\r\n" : "") + "\r\n";
+            connection.output.write(request.getBytes(StandardCharsets.US_ASCII));
+            connection.output.flush();
+
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buffer = new byte[16 * 1024];
+            int headerEnd = -1;
+            long expected = -1;
+            while (expected < 0 || response.size() < expected) {
+                int read = connection.input.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                response.write(buffer, 0, read);
+                if (headerEnd < 0) {
+                    String head = new String(response.toByteArray(), StandardCharsets.ISO_8859_1);
+                    headerEnd = head.indexOf("\r\n\r\n");
+                    if (headerEnd >= 0) {
+                        expected = headerEnd + 4 + contentLength(head.substring(0, headerEnd));
+                    }
+                }
+            }
+            if (expected < 0 || response.size() < expected) {
+                throw new IOException("响应不完整");
+            }
+            return response.toByteArray();
+        } finally {
+            if (close) {
+                connection.close();
+            }
+        }
+    }
+
+    private static long contentLength(String headers) throws IOException {
+        for (String line : headers.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+                return Long.parseLong(line.substring(colon + 1).trim());
+            }
+        }
+        throw new IOException("响应缺少Content-Length");
+    }
+
+    private static String statusLine(byte[] response) {
+        String text = new String(response, StandardCharsets.ISO_8859_1);
+        return text.substring(0, text.indexOf("\r\n"));
+    }
+
+    /**
+     * 连接的输入输出流（LocalSocket与Socket没有共同的父类）
+     */
+    private static class Connection implements Closeable {
+        final InputStream input;
+        final OutputStream output;
+        private final Closeable socket;
+
+        Connection(InputStream input, OutputStream output, Closeable socket) {
+            this.input = input;
+            this.output = output;
+            this.socket = socket;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
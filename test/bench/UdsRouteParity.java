@@ -0,0 +1,202 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Unix域套接字路由一致性冒烟测试
+ * 在主机上通过JDK的UnixDomainSocketAddress（经adb forward localfilesystem:转发到设备的抽象命名空间套接字）和TCP（经adb forward tcp:转发）
+ * 依次请求每个路由，校验两种方式返回的状态行和响应体一致；两种传输的耗时差异由设备上的UdsBenchmark测量
+ *
+ * <p>用法：java UdsRouteParity 本地套接字文件 TCP端口 [请求路径...]（需要JDK 16及以上，由uds_parity.sh转发端口并运行）
+ * 未指定请求路径时使用test目录下各脚本请求的路由；/stats的计数随请求变化，只比较状态行；错误响应体中的requestId不参与比较
+ */
+public class UdsRouteParity {
+
+    // 默认检查的路由（与test目录下各脚本一致，/bookshelf/events为长连接事件流，不在此检查）
+    private static final List<String> DEFAULT_PATHS = Arrays.asList(
+        "/",
+        "/hello",
+        "/stats",
+        "/not_found",
+        "/bookshelf",
+        "/detail?book_id=7338034838672247833",
+        "/catalog?book_id=7281195245084691518",
+        "/content?item_id=7520270157499859518",
+        "/audio?book_id=7281195245084691518&item_id=7295592952154328116",
+        "/search?query=十日终焉&page=1",
+        "/search?query=十日终焉&local=only",
+        "/reading/bookapi/new_category/landing/v/?parent_enterfrom=novel_channel_category.tab.&aid=1967&offset=0&limit=100&category_id=1&gender=1"
+    );
+
+    // 只比较状态行的路由（响应体随请求变化）
+    private static final List<String> STATUS_ONLY_PATHS = Arrays.asList("/stats");
+
+    // 错误响应体中的请求ID
+    private static final Pattern REQUEST_ID = Pattern.compile("\"requestId\"\\s*:\\s*\"[^\"]*\"");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法：UdsRouteParity 本地套接字文件 TCP端口 [请求路径...]");
+            System.exit(1);
+        }
+        SocketAddress unixAddress = UnixDomainSocketAddress.of(args[0]);
+        SocketAddress tcpAddress = new InetSocketAddress("127.0.0.1", Integer.parseInt(args[1]));
+        List<String> paths = args.length > 2 ? Arrays.asList(args).subList(2, args.length) : DEFAULT_PATHS;
+
+        int mismatches = 0;
+        System.out.printf("%-6s %-8s %s%n", "result", "status", "path");
+        for (String path : paths) {
+            // 先经Unix域套接字请求，使两次请求命中相同的缓存状态
+            Response unix = request(unixAddress, path);
+            Response tcp = request(tcpAddress, path);
+            boolean same = unix.status.equals(tcp.status)
+                && (STATUS_ONLY_PATHS.contains(routeOf(path)) || withoutRequestId(unix.body).equals(withoutRequestId(tcp.body)));
+            if (!same) {
+                mismatches++;
+                System.out.println("uds: " + unix.status + " " + abbreviate(unix.body));
+                System.out.println("tcp: " + tcp.status + " " + abbreviate(tcp.body));
+            }
+            System.out.printf(Locale.ROOT, "%-6s %-8s %s%n", same ? "ok" : "DIFF", statusCode(unix.status), path);
+        }
+        if (mismatches > 0) {
+            System.err.println(mismatches + "个路由经两种连接方式的响应不一致");
+            System.exit(2);
+        }
+    }
+
+    /**
+     * 发送GET请求并读取完整响应（Connection: close，读到连接关闭为止，支持分块传输）
+     * @param address Unix域套接字或TCP地址
+     * @param path 请求路径（非ASCII字符按UTF-8百分号编码）
+     * @return 状态行和响应体
+     */
+    private static Response request(SocketAddress address, String path) throws IOException {
+        SocketChannel channel = address instanceof UnixDomainSocketAddress
+            ? SocketChannel.open(StandardProtocolFamily.UNIX)
+            : SocketChannel.open();
+        try (SocketChannel ignored = channel) {
+            channel.connect(address);
+            OutputStream output = Channels.newOutputStream(channel);
+            String request = "GET " + encodeTarget(path) + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n";
+            output.write(request.getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+
+            InputStream input = Channels.newInputStream(channel);
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                response.write(buffer, 0, read);
+            }
+            return parse(response.toByteArray());
+        }
+    }
+
+    private static Response parse(byte[] raw) throws IOException {
+        String text = new String(raw, StandardCharsets.ISO_8859_1);
+        int headerEnd = text.indexOf("\r\n\r\n");
+        if (headerEnd < 0) {
+            throw new IOException("响应不完整");
+        }
+        String[] headers = text.substring(0, headerEnd).split("\r\n");
+        byte[] body = Arrays.copyOfRange(raw, headerEnd + 4, raw.length);
+        for (String line : headers) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Transfer-Encoding")
+                && line.substring(colon + 1).trim().equalsIgnoreCase("chunked")) {
+                body = dechunk(body);
+            }
+        }
+        return new Response(headers[0], new String(body, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] dechunk(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int position = 0;
+        while (true) {
+            int lineEnd = indexOfCrlf(body, position);
+            if (lineEnd < 0) {
+                throw new IOException("分块响应不完整");
+            }
+            String sizeLine = new String(body, position, lineEnd - position, StandardCharsets.US_ASCII);
+            int semicolon = sizeLine.indexOf(';');
+            int size = Integer.parseInt((semicolon >= 0 ? sizeLine.substring(0, semicolon) : sizeLine).trim(), 16);
+            if (size == 0) {
+                return out.toByteArray();
+            }
+            position = lineEnd + 2;
+            if (position + size > body.length) {
+                throw new IOException("分块响应不完整");
+            }
+            out.write(body, position, size);
+            position += size + 2;
+        }
+    }
+
+    private static int indexOfCrlf(byte[] data, int from) {
+        for (int i = from; i + 1 < data.length; i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String encodeTarget(String path) {
+        StringBuilder target = new StringBuilder();
+        for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            if (b < 0x21) {
+                target.append('%').append(String.format(Locale.ROOT, "%02X", b & 0xFF));
+            } else {
+                target.append((char) b);
+            }
+        }
+        return target.toString();
+    }
+
+    /**
+     * 去掉错误响应体中每个请求各不相同的requestId
+     */
+    private static String withoutRequestId(String body) {
+        return REQUEST_ID.matcher(body).replaceAll("\"requestId\":\"\"");
+    }
+
+    private static String routeOf(String path) {
+        int query = path.indexOf('?');
+        return query >= 0 ? path.substring(0, query) : path;
+    }
+
+    private static String statusCode(String statusLine) {
+        String[] parts = statusLine.split(" ");
+        return parts.length > 1 ? parts[1] : statusLine;
+    }
+
+    private static String abbreviate(String body) {
+        return body.length() > 200 ? body.substring(0, 200) + "..." : body;
+    }
+
+    /**
+     * 状态行和解码后的响应体
+     */
+    private static class Response {
+        final String status;
+        final String body;
+
+        Response(String status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1 @@
+curl -N "http://localhost:9999/bookshelf/events"
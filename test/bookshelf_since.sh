@@ -0,0 +1,2 @@
+curl "http://localhost:9999/bookshelf?since=$1" > bookshelf.json
+cat bookshelf.json
\ No newline at end of file
@@ -0,0 +1,12 @@
+# 在主机（Linux x86_64）上构建native-lib并运行响应压缩基准测试（gzip / zstd / brotli），样本为test目录下的*.json
+# 需要cmake（3.18+）、C/C++编译器、JDK，以及app/src/main/cpp/third_party下的zstd和brotli源码（见CMakeLists.txt）
+# 源码不在本地时可允许构建时下载：CMAKE_ARGS=-DFQHELPER_FETCH_DEPS=ON sh compress_bench.sh
+cd "$(dirname "$0")"
+SRC=../app/src/main/java/com/xxhy/fqhelper/web/codec
+BUILD=$(mktemp -d)
+OUT=$(mktemp -d)
+cmake -S ../app/src/main/cpp -B "$BUILD" -DCMAKE_BUILD_TYPE=Release $CMAKE_ARGS >/dev/null && \
+cmake --build "$BUILD" --target native-lib -j >/dev/null && \
+javac -encoding UTF-8 -d "$OUT" $SRC/NativeCompressor.java bench/CompressionBenchmark.java && \
+java -Djava.library.path="$BUILD" -cp "$OUT" CompressionBenchmark .
+rm -rf "$BUILD" "$OUT"
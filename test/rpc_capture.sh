@@ -0,0 +1,13 @@
+# 从设备取出上游RPC捕获文件并在主机上生成离线报告（各目标的调用数、错误数、耗时分布）；需要adb（设备已root）和JDK
+# 录制与回放都在设备上的模块内进行：回放的响应要还原为宿主的模型类，服务的其余部分也依赖宿主进程，主机上不能回放：
+# 录制：在SP中配置rpc_capture_mode为record并正常使用一段时间；回放：配置为replay，rpc_replay_latency_scale调整延迟比例
+# 本脚本只负责取出捕获文件和汇总报告，缩放比例参数只影响报告中预估的回放耗时
+# 用法：sh rpc_capture.sh [耗时缩放比例]
+cd "$(dirname "$0")"
+CAPTURE=fqhelper_rpc.cap
+OUT=$(mktemp -d)
+adb exec-out su -c "cat /data/data/com.dragon.read/$CAPTURE" > "$CAPTURE" && \
+curl -s "http://localhost:9999/stats" && echo && \
+javac -encoding UTF-8 -d "$OUT" bench/RpcCaptureReport.java && \
+java -cp "$OUT" RpcCaptureReport "$CAPTURE" "${1:-1}"
+rm -rf "$OUT"
@@ -0,0 +1,3 @@
+curl "http://localhost:9999/search?query=十日终焉&page=1&local=1" > search_local.json
+cat search_local.json
+curl "http://localhost:9999/search?query=十日终焉&local=only"
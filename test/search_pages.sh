@@ -0,0 +1,5 @@
+# 多页合并搜索：页码范围与结果数两种方式，比较与逐页请求的耗时
+time curl -s "http://localhost:9999/search?query=十日终焉&pages=1-3" > search_pages.json
+time curl -s "http://localhost:9999/search?query=十日终焉&count=50" > /dev/null
+time (for p in 1 2 3; do curl -s "http://localhost:9999/search?query=十日终焉&page=$p" > /dev/null; done)
+curl -s "http://localhost:9999/stats"
@@ -0,0 +1,2 @@
+curl "http://localhost:9999/stats" > stats.json
+cat stats.json
\ No newline at end of file
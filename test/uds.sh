@@ -0,0 +1,15 @@
+# 在设备上比较Unix域套接字与回环TCP访问HttpServer的耗时（客户端由app_process在设备上运行，不经过adb转发；路由一致性在主机上由uds_parity.sh检查）
+# 需先在SP中配置unix_socket为@fqhelper（抽象命名空间）并启动服务；需要adb（设备已root）、JDK和Android SDK（android.jar、d8）
+# 用法：sh uds.sh [套接字地址] [请求路径] [轮数]
+cd "$(dirname "$0")"
+SDK=${ANDROID_HOME:-$ANDROID_SDK_ROOT}
+ANDROID_JAR=$(ls -d "$SDK"/platforms/android-*/android.jar | sort -V | tail -n 1)
+D8=$(ls -d "$SDK"/build-tools/*/d8 | sort -V | tail -n 1)
+DEVICE_DEX=/data/local/tmp/fqhelper-uds.dex
+OUT=$(mktemp -d)
+javac -encoding UTF-8 --release 8 -cp "$ANDROID_JAR" -d "$OUT" bench/UdsBenchmark.java && \
+"$D8" --min-api 26 --lib "$ANDROID_JAR" --output "$OUT" "$OUT"/*.class && \
+adb push "$OUT/classes.dex" "$DEVICE_DEX" && \
+adb shell su -c "app_process -Djava.class.path=$DEVICE_DEX /system/bin UdsBenchmark ${1:-@fqhelper} 9999 ${2:-/hello} ${3:-200}"
+adb shell rm -f "$DEVICE_DEX"
+rm -rf "$OUT"
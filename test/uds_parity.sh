@@ -0,0 +1,12 @@
+# 在主机上检查经Unix域套接字和TCP访问HttpServer的每个路由返回相同的状态和响应体（耗时比较见uds.sh，在设备上进行）
+# 需先在SP中配置unix_socket为@fqhelper（抽象命名空间）并启动服务；需要adb（设备已root）和JDK 16及以上（UnixDomainSocketAddress）
+# 用法：sh uds_parity.sh [请求路径...]（不指定时检查test目录下各脚本请求的路由）
+cd "$(dirname "$0")"
+OUT=$(mktemp -d)
+SOCK="$OUT/fqhelper.sock"
+adb forward "localfilesystem:$SOCK" localabstract:fqhelper && \
+adb forward tcp:9999 tcp:9999 && \
+javac -encoding UTF-8 -d "$OUT" bench/UdsRouteParity.java && \
+java -cp "$OUT" UdsRouteParity "$SOCK" 9999 "$@"
+adb forward --remove "localfilesystem:$SOCK"
+rm -rf "$OUT"